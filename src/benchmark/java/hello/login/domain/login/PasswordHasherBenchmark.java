@@ -0,0 +1,63 @@
+package hello.login.domain.login;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 로그인 처리량 측정
+ * //요청 스레드 여러 개가 동시에 verify 를 부르고, 초당 로그인 수와 코어당 로그인 수를 출력
+ * //인자: [반복 횟수(100000)] [요청 스레드 수(64)] [측정 시간 초(10)]
+ */
+public class PasswordHasherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int callers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        //대기열을 요청 스레드 수만큼 두어 거절 없이 처리량만 잰다
+        PasswordHasher passwordHasher = new PasswordHasher(iterations, 0, callers, 60000);
+        String hash = passwordHasher.hash("test!");
+
+        //워밍업
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < warmupEnd) {
+            passwordHasher.verify("test!", hash);
+        }
+
+        LongAdder logins = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    try {
+                        passwordHasher.verify("test!", hash);
+                        logins.increment();
+                    } catch (PasswordHasherBusyException e) {
+                        rejected.increment();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        passwordHasher.shutdown();
+
+        double perSecond = logins.sum() / elapsed;
+        System.out.printf("iterations=%d, cores=%d, callers=%d%n", iterations, cores, callers);
+        System.out.printf("logins/sec=%.1f, logins/sec/core=%.1f, rejected=%d%n", perSecond, perSecond / cores, rejected.sum());
+    }
+}
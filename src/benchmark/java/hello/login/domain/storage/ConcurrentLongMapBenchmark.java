@@ -0,0 +1,101 @@
+package hello.login.domain.storage;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * ConcurrentLongMap 과 ConcurrentHashMap<Long, V> 비교
+ * //항목당 힙 사용량(B/entry), id 순서 조회, 무작위 순서 조회(ns/op)를 출력
+ * //값은 모두 같은 객체 하나를 넣어서 맵 자체의 크기만 잰다
+ * //인자: [항목 수(1000000)] [라운드 수(10)]
+ */
+public class ConcurrentLongMapBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        //findById 는 보통 최근 id 쪽이 많지만 순서는 정해져 있지 않다
+        long[] randomKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            randomKeys[i] = i + 1;
+        }
+        Random random = new Random(42);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = randomKeys[i];
+            randomKeys[i] = randomKeys[j];
+            randomKeys[j] = swap;
+        }
+
+        long before = usedHeap();
+        Map<Long, Object> hashMap = new ConcurrentHashMap<>();
+        for (long key = 1; key <= size; key++) {
+            hashMap.put(key, VALUE);
+        }
+        long hashMapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        ConcurrentLongMap<Object> longMap = new ConcurrentLongMap<>();
+        for (long key = 1; key <= size; key++) {
+            longMap.put(key, VALUE);
+        }
+        long longMapBytes = usedHeap() - before;
+
+        System.out.printf("entries=%d%n", size);
+        System.out.printf("footprint: ConcurrentHashMap %.1f B/entry, ConcurrentLongMap %.1f B/entry%n",
+                (double) hashMapBytes / size, (double) longMapBytes / size);
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.printf("round %d ordered get: ConcurrentHashMap %.1f ns/op, ConcurrentLongMap %.1f ns/op%n", round,
+                    orderedGet(hashMap::get, size), orderedGet(longMap::get, size));
+            System.out.printf("round %d random get:  ConcurrentHashMap %.1f ns/op, ConcurrentLongMap %.1f ns/op%n", round,
+                    randomGet(hashMap::get, randomKeys), randomGet(longMap::get, randomKeys));
+        }
+    }
+
+    private static double orderedGet(LongFunction<Object> get, int size) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (long key = 1; key <= size; key++) {
+            if (get.apply(key) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found, size);
+        return (double) elapsed / size;
+    }
+
+    private static double randomGet(LongFunction<Object> get, long[] keys) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (long key : keys) {
+            if (get.apply(key) != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        check(found, keys.length);
+        return (double) elapsed / keys.length;
+    }
+
+    private static void check(int found, int expected) {
+        if (found != expected) {
+            throw new IllegalStateException("found " + found + " of " + expected);
+        }
+    }
+
+    //GC 를 몇 번 돌려서 남은 것만
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,47 @@
+package hello.login.web.argumentresolver;
+
+import hello.login.ItemServiceApplication;
+import hello.login.domain.member.LoginMember;
+import hello.login.web.SessionConst;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * 로그인한 홈 화면(GET /) 처리 시간 측정
+ * //애플리케이션을 띄우고 MockMvc 로 같은 세션의 GET / 를 반복, 라운드마다 요청당 µs 를 출력
+ * //인터셉터, @Login 파라미터 처리, 뷰 렌더링까지 DispatcherServlet 한 번을 잰다 (서블릿 필터와 소켓은 빼고)
+ * //인자: [라운드 수(10)] [라운드당 요청 수(20000)]
+ */
+public class LoginHomeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ItemServiceApplication.class)
+                .properties("server.port=0")
+                .run();
+        try {
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+            MockHttpSession session = new MockHttpSession();
+            session.setAttribute(SessionConst.LOGIN_MEMBER, new LoginMember(1L, "test", "tester"));
+
+            for (int round = 1; round <= rounds; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++) {
+                    mvc.perform(get("/").session(session));
+                }
+                double micros = (System.nanoTime() - start) / 1000.0 / requests;
+                System.out.printf("round %d: %.1f us/req%n", round, micros);
+            }
+        } finally {
+            context.close();
+        }
+    }
+}
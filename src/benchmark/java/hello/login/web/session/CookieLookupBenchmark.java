@@ -0,0 +1,83 @@
+package hello.login.web.session;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.Rfc6265CookieProcessor;
+import org.apache.tomcat.util.http.ServerCookie;
+import org.apache.tomcat.util.http.ServerCookies;
+
+import javax.servlet.http.Cookie;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * 세션 쿠키 찾기 비용 측정
+ * //before: 톰캣이 Cookie 헤더를 파싱해서 Cookie[] 를 만들고(request.getCookies()) 스트림으로 찾던 방식
+ * //after: 헤더 문자열을 받아(request.getHeaders) SessionManager.findCookieValue 로 바로 찾는 방식
+ * //둘 다 요청마다 한 번씩 하는 일(바이트 -> 문자열)까지 넣어서 호출당 ns 와 할당 바이트를 출력
+ * //인자: [라운드 수(10)] [라운드당 호출 수(1000000)]
+ */
+public class CookieLookupBenchmark {
+
+    //분석 도구, 광고 쿠키 사이에 세션 쿠키가 끼어 있는 흔한 헤더
+    private static final byte[] HEADER = ("_ga=GA1.1.1234567890.1617000000; _gid=GA1.1.987654321.1617000000; "
+            + "theme=dark; lang=ko; " + SessionManager.SESSION_COOKIE_NAME + "=0f8fad5b-d9cb-469f-a165-70867728950e; "
+            + "ab_test=variant-b; consent=\"yes\"").getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final Rfc6265CookieProcessor COOKIE_PROCESSOR = new Rfc6265CookieProcessor();
+    //톰캣은 요청 객체와 함께 재사용한다
+    private static final MimeHeaders HEADERS = new MimeHeaders();
+    private static final ServerCookies SERVER_COOKIES = new ServerCookies(8);
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int round = 1; round <= rounds; round++) {
+            measure("before", round, calls, threads, CookieLookupBenchmark::viaCookieArray);
+            measure("after ", round, calls, threads, CookieLookupBenchmark::viaHeader);
+        }
+    }
+
+    private static void measure(String name, int round, int calls,
+                                com.sun.management.ThreadMXBean threads, IntSupplier lookup) {
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += lookup.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.printf("round %d %s: %.1f ns/op, %d B/op (%d)%n",
+                round, name, (double) elapsed / calls, allocated / calls, sink);
+    }
+
+    private static int viaCookieArray() {
+        HEADERS.recycle();
+        HEADERS.addValue("Cookie").setBytes(HEADER, 0, HEADER.length);
+        SERVER_COOKIES.recycle();
+        COOKIE_PROCESSOR.parseCookieHeader(HEADERS, SERVER_COOKIES);
+
+        //Request.getCookies() 가 하는 것처럼 ServerCookie 마다 Cookie 를 만든다
+        Cookie[] cookies = new Cookie[SERVER_COOKIES.getCookieCount()];
+        for (int i = 0; i < cookies.length; i++) {
+            ServerCookie serverCookie = SERVER_COOKIES.getCookie(i);
+            cookies[i] = new Cookie(serverCookie.getName().toString(), serverCookie.getValue().toString());
+        }
+        return Arrays.stream(cookies)
+                .filter(cookie -> cookie.getName().equals(SessionManager.SESSION_COOKIE_NAME))
+                .findAny()
+                .map(cookie -> cookie.getValue().length())
+                .orElse(0);
+    }
+
+    private static int viaHeader() {
+        String header = new String(HEADER, StandardCharsets.ISO_8859_1);
+        String sessionId = SessionManager.findCookieValue(header, SessionManager.SESSION_COOKIE_NAME);
+        return sessionId == null ? 0 : sessionId.length();
+    }
+}
@@ -0,0 +1,42 @@
+package hello.login;
+
+import hello.login.domain.item.Item;
+import hello.login.domain.item.ItemCodec;
+import hello.login.domain.member.Member;
+import hello.login.domain.member.MemberCodec;
+import hello.login.domain.storage.DurableTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 상품, 회원 저장소를 파일에 남기는 설정
+ * //storage.enabled=true 일 때만, 없으면 지금처럼 메모리에만 (재시작하면 초기화)
+ */
+@Configuration
+@ConditionalOnProperty(name = "storage.enabled", havingValue = "true")
+public class StorageConfig {
+
+    private final Path dir;
+    private final Duration snapshotInterval;
+
+    public StorageConfig(@Value("${storage.dir:data}") String dir,
+                         @Value("${storage.snapshot-interval:300}") long snapshotIntervalSeconds) {
+        this.dir = Path.of(dir);
+        this.snapshotInterval = Duration.ofSeconds(snapshotIntervalSeconds);
+    }
+
+    @Bean(destroyMethod = "close")
+    public DurableTable<Item> itemTable() {
+        return new DurableTable<>(dir, "items", new ItemCodec(), snapshotInterval);
+    }
+
+    @Bean(destroyMethod = "close")
+    public DurableTable<Member> memberTable() {
+        return new DurableTable<>(dir, "members", new MemberCodec(), snapshotInterval);
+    }
+}
@@ -2,6 +2,7 @@ package hello.login;
 
 import hello.login.domain.item.Item;
 import hello.login.domain.item.ItemRepository;
+import hello.login.domain.login.PasswordHasher;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
 import lombok.RequiredArgsConstructor;
@@ -15,21 +16,29 @@ public class TestDataInit {
 
     private final ItemRepository itemRepository;
     private final MemberRepository memberRepository;
+    private final PasswordHasher passwordHasher;
 
     /**
      * 테스트용 데이터 추가
      */
     //서버를 띄울때 밑에 코드 실행
+    //파일 저장소에서 복구한 데이터가 있으면 다시 넣지 않는다, 스냅샷을 다 꺼내지 않게 isEmpty로 확인
     @PostConstruct
     public void init() {
         //테스트로 상품 넣기
-        itemRepository.save(new Item("itemA", 10000, 10));
-        itemRepository.save(new Item("itemB", 20000, 20));
+        if (itemRepository.isEmpty()) {
+            itemRepository.save(new Item("itemA", 10000, 10));
+            itemRepository.save(new Item("itemB", 20000, 20));
+        }
+
+        if (!memberRepository.isEmpty()) {
+            return;
+        }
 
         //테스트로 회원 생성
         Member member = new Member();
         member.setLoginId("test");
-        member.setPassword("test!");
+        member.setPassword(passwordHasher.hash("test!"));
         member.setName("테스터");
 
         memberRepository.save(member);
@@ -1,10 +1,16 @@
 package hello.login;
 
+import hello.login.web.IdGenerator;
+import hello.login.web.PublicPaths;
+import hello.login.web.accesslog.AccessLog;
 import hello.login.web.argumentresolver.LoginMemberArgumentResolver;
 import hello.login.web.filter.LogFilter;
 import hello.login.web.filter.LoginCheckFilter;
 import hello.login.web.interceptor.LogInterceptor;
 import hello.login.web.interceptor.LoginCheckInterceptor;
+import hello.login.web.metrics.HandlerMetrics;
+import hello.login.web.token.LoginTokenService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -19,20 +25,32 @@ import java.util.List;
 //logfilter쓸 수 있게 등록해주는 클래스
 //LogInterceptor를 등록하려면 WebMvcConfigurer 상속받아 오버라이딩 해야함
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    //요청 로그 id 생성
+    private final IdGenerator idGenerator;
+    //접근 로그
+    private final AccessLog accessLog;
+    //컨트롤러 응답 시간 통계
+    private final HandlerMetrics handlerMetrics;
+    //로그인 체크를 하지 않는 경로, 필터와 인터셉터가 같이 쓴다
+    private final PublicPaths publicPaths;
+    //login.token.enabled 면 세션 대신 서명한 토큰으로 로그인 확인
+    private final LoginTokenService loginTokenService;
+
     //LoginMemberArgumentResolver 등록,
     //이렇게 등록해야 HomeController homeLoginV3ArgumentResolver @login 쓸 수 있음
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
-        resolvers.add(new LoginMemberArgumentResolver());
+        resolvers.add(new LoginMemberArgumentResolver(loginTokenService));
     }
 
     //LogInterceptor 등록
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
 
-        registry.addInterceptor(new LogInterceptor())
+        registry.addInterceptor(new LogInterceptor(idGenerator, accessLog, handlerMetrics))
                 //1순위, 인터셉터의 호출 순서를 지정한다. 낮을 수록 먼저 호출
 
                 .order(1)
@@ -46,11 +64,10 @@ public class WebConfig implements WebMvcConfigurer {
                 .excludePathPatterns("/css/**", "/*.ico", "/error");
 
         //LoginCheckInterceptor() 등록
-        registry.addInterceptor(new LoginCheckInterceptor())
+        //제외할 경로는 excludePathPatterns 대신 PublicPaths(login.public-paths)로 인터셉터 안에서 스프링이 찾은 경로로 판단
+        registry.addInterceptor(new LoginCheckInterceptor(publicPaths, loginTokenService))
                 .order(2)
-                .addPathPatterns("/**")
-                .excludePathPatterns("/", "/members/add", "/login", "/logout",
-                        "/css/**", "/*.ico", "/error");
+                .addPathPatterns("/**");
     }
 
     //스프링부트로 사용할때 필터 등록할때 이렇게
@@ -66,7 +83,7 @@ public class WebConfig implements WebMvcConfigurer {
     public FilterRegistrationBean logFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
         //등록할 필터 지정, 만든 필터인 LogFilter 넣어주기
-        filterRegistrationBean.setFilter(new LogFilter());
+        filterRegistrationBean.setFilter(new LogFilter(idGenerator, accessLog));
         //필터체인으로 여러 개 들어갈 수 있으므로 순서 정해주기
         filterRegistrationBean.setOrder(1);
         //필터를 적용할 URL 패턴을 지정, 모든 url에 다 적용되게,
@@ -80,7 +97,7 @@ public class WebConfig implements WebMvcConfigurer {
     public FilterRegistrationBean loginCheckFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
         //등록할 필터 지정, 만든 필터인  LoginCheckFilter 넣어주기
-        filterRegistrationBean.setFilter(new LoginCheckFilter());
+        filterRegistrationBean.setFilter(new LoginCheckFilter(publicPaths, loginTokenService));
         //필터체인으로 여러 개 들어갈 수 있으므로 순서 정해주기, 순서 2번
         filterRegistrationBean.setOrder(2);
         //필터를 적용할 URL 패턴을 지정, 모든 url에 다 적용되게,
@@ -0,0 +1,251 @@
+package hello.login.domain.item;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * 열(column) 단위 상품 저장소
+ * //Item 하나는 Item, Long, Integer 두 개, 맵 엔트리까지 객체가 네다섯 개다
+ * //여기서는 상품 id를 행 번호로 그대로 쓰고 가격, 수량, 이름을 필드별 배열에 나눠 담는다, 상품당 17바이트 정도
+ * //이름은 같은 문자열을 하나만 두고(이름 풀) 참조만 배열에 넣는다
+ * //풀은 이름마다 쓰는 행 수를 세고, 마지막 행이 다른 이름으로 바뀌면 뺀다, 이름을 바꿔가며 수정해도 풀이 늘기만 하지 않게
+ * //읽을 때마다 새 Item을 만들어 주므로 돌려받은 Item을 고쳐도 저장소는 바뀌지 않는다
+ *
+ * //배열은 4096행 묶음(chunk)으로 늘린다, 늘릴 때 기존 행을 복사하지 않게
+ * //행마다 버전(seqlock): 쓰는 동안 홀수, 읽는 쪽은 앞뒤 버전이 같은 짝수일 때만 믿는다, 수정 중인 행을 반쯤 읽지 않게
+ */
+class ColumnarItemStore implements ItemStore {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final byte PRESENT = 1;
+    private static final byte NO_PRICE = 2;
+    private static final byte NO_QUANTITY = 4;
+
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    //청크를 추가할 때는 새 배열로 바꿔 끼운다, 읽는 쪽은 락 없이 volatile 로만
+    private volatile Chunk[] chunks = new Chunk[16];
+    private final Map<String, PooledName> namePool = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public Item get(long id) {
+        Chunk chunk = chunkFor(id);
+        if (chunk == null) {
+            return null;
+        }
+        int row = (int) (id & CHUNK_MASK);
+        while (true) {
+            int before = (int) VERSIONS.getAcquire(chunk.versions, row);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            byte flags = chunk.flags[row];
+            int price = chunk.prices[row];
+            int quantity = chunk.quantities[row];
+            String name = chunk.names[row];
+            VarHandle.acquireFence();
+            if ((int) VERSIONS.getOpaque(chunk.versions, row) == before) {
+                return (flags & PRESENT) == 0 ? null : toItem(id, flags, price, quantity, name);
+            }
+        }
+    }
+
+    @Override
+    public void put(Item item) {
+        long id = item.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("item id must be positive: " + id);
+        }
+        Chunk chunk = chunkForWrite(id);
+        int row = (int) (id & CHUNK_MASK);
+        String name = acquireName(item.getItemName());
+
+        int version = lockRow(chunk, row);
+        boolean added = (chunk.flags[row] & PRESENT) == 0;
+        String previousName = chunk.names[row];
+        chunk.flags[row] = (byte) (PRESENT
+                | (item.getPrice() == null ? NO_PRICE : 0)
+                | (item.getQuantity() == null ? NO_QUANTITY : 0));
+        chunk.prices[row] = item.getPrice() == null ? 0 : item.getPrice();
+        chunk.quantities[row] = item.getQuantity() == null ? 0 : item.getQuantity();
+        chunk.names[row] = name;
+        VERSIONS.setRelease(chunk.versions, row, version + 2);
+
+        //행 락 안에서 읽은 이전 이름이라 같은 이름을 두 번 빼지 않는다
+        releaseName(previousName);
+        if (added) {
+            size.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean containsKey(long id) {
+        Chunk chunk = chunkFor(id);
+        return chunk != null && (chunk.flags[(int) (id & CHUNK_MASK)] & PRESENT) != 0;
+    }
+
+    @Override
+    public List<Item> values() {
+        Chunk[] current = chunks;
+        List<Item> items = new ArrayList<>(size.get());
+        for (int c = 0; c < current.length; c++) {
+            Chunk chunk = current[c];
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                if ((chunk.flags[row] & PRESENT) != 0) {
+                    Item item = get(((long) c << CHUNK_BITS) | row);
+                    if (item != null) {
+                        items.add(item);
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    //가격 배열만 훑는다, 행마다 get 처럼 버전을 확인해서 수정 중인 행은 끝난 뒤의 값으로
+    @Override
+    public void forEachPrice(IntConsumer action) {
+        Chunk[] current = chunks;
+        for (Chunk chunk : current) {
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                int before;
+                byte flags;
+                int price;
+                do {
+                    before = (int) VERSIONS.getAcquire(chunk.versions, row);
+                    flags = chunk.flags[row];
+                    price = chunk.prices[row];
+                    VarHandle.acquireFence();
+                } while ((before & 1) != 0 || (int) VERSIONS.getOpaque(chunk.versions, row) != before);
+
+                if ((flags & PRESENT) != 0 && (flags & NO_PRICE) == 0) {
+                    action.accept(price);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    @Override
+    public synchronized void clear() {
+        chunks = new Chunk[16];
+        namePool.clear();
+        size.set(0);
+    }
+
+    //풀에 있는 이름 수
+    int namePoolSize() {
+        return namePool.size();
+    }
+
+    //compute 는 같은 키에 대해 한 번에 하나씩 실행되므로 행 수는 그 안에서만 바꾼다
+    private String acquireName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return namePool.compute(name, (key, pooled) -> {
+            if (pooled == null) {
+                return new PooledName(key);
+            }
+            pooled.rows++;
+            return pooled;
+        }).name;
+    }
+
+    private void releaseName(String name) {
+        if (name != null) {
+            namePool.computeIfPresent(name, (key, pooled) -> --pooled.rows == 0 ? null : pooled);
+        }
+    }
+
+    //짝수 -> 홀수로 바꾼 쪽만 쓴다, 같은 행을 동시에 쓰면 한쪽은 기다린다
+    private static int lockRow(Chunk chunk, int row) {
+        while (true) {
+            int version = (int) VERSIONS.getVolatile(chunk.versions, row);
+            if ((version & 1) == 0 && VERSIONS.compareAndSet(chunk.versions, row, version, version + 1)) {
+                //필드 쓰기가 홀수 버전보다 먼저 보이지 않게
+                VarHandle.storeStoreFence();
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private Chunk chunkFor(long id) {
+        long index = id >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        return id <= 0 || index >= current.length ? null : current[(int) index];
+    }
+
+    private Chunk chunkForWrite(long id) {
+        Chunk chunk = chunkFor(id);
+        return chunk != null ? chunk : addChunk(id >>> CHUNK_BITS);
+    }
+
+    private synchronized Chunk addChunk(long index) {
+        if (index >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("item id too large: " + (index << CHUNK_BITS));
+        }
+        Chunk[] current = chunks;
+        if (index < current.length && current[(int) index] != null) {
+            return current[(int) index];
+        }
+        Chunk[] grown = new Chunk[(int) Math.max(current.length, Math.min(Integer.MAX_VALUE, Long.highestOneBit(index) << 1))];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        Chunk chunk = new Chunk();
+        grown[(int) index] = chunk;
+        chunks = grown;
+        return chunk;
+    }
+
+    private static Item toItem(long id, byte flags, int price, int quantity, String name) {
+        Item item = new Item(name, (flags & NO_PRICE) != 0 ? null : price, (flags & NO_QUANTITY) != 0 ? null : quantity);
+        item.setId(id);
+        return item;
+    }
+
+    private static final class PooledName {
+
+        private final String name;
+        private int rows = 1;
+
+        private PooledName(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final int[] versions = new int[CHUNK_SIZE];
+        private final byte[] flags = new byte[CHUNK_SIZE];
+        private final int[] prices = new int[CHUNK_SIZE];
+        private final int[] quantities = new int[CHUNK_SIZE];
+        private final String[] names = new String[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,21 @@
+package hello.login.domain.item;
+
+import lombok.Data;
+
+//재고 집계, 가격 통계는 가격이 있는 상품만 (없으면 null)
+@Data
+public class InventoryReport {
+
+    private int itemCount;
+    //가격 * 수량의 합
+    private long totalValue;
+    private long totalQuantity;
+
+    private int pricedCount;
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Double averagePrice;
+    private Integer p50Price;
+    private Integer p90Price;
+    private Integer p99Price;
+}
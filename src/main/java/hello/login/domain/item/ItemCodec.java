@@ -0,0 +1,34 @@
+package hello.login.domain.item;
+
+import hello.login.domain.storage.EntityCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static hello.login.domain.storage.EntityCodec.*;
+
+//[id(long)][상품명][가격][수량]
+public class ItemCodec implements EntityCodec<Item> {
+
+    @Override
+    public long idOf(Item item) {
+        return item.getId();
+    }
+
+    @Override
+    public void write(Item item, DataOutput out) throws IOException {
+        out.writeLong(item.getId());
+        writeString(out, item.getItemName());
+        writeInteger(out, item.getPrice());
+        writeInteger(out, item.getQuantity());
+    }
+
+    @Override
+    public Item read(DataInput in) throws IOException {
+        long id = in.readLong();
+        Item item = new Item(readString(in), readInteger(in), readInteger(in));
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,141 @@
+package hello.login.domain.item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 상품명 역색인
+ * //상품명을 단어로 나눠서 단어 -> 상품 id 목록으로 들고 있는다
+ * //단어를 정렬된 맵에 두니까 접두어 검색은 subMap 한 번이면 된다 ("상" -> "상품a", "상품b")
+ * //검색어 단어가 여러 개면 모두 들어 있는 상품만 (AND)
+ * //검색은 후보를 미리 모으지 않고 필요한 만큼만 꺼낸다, 한 글자 검색어가 상품 전체를 복사하지 않게
+ */
+class ItemNameIndex {
+
+    //단어 구분, 글자와 숫자가 아닌 것은 모두 구분자
+    private static final String DELIMITER = "[^\\p{L}\\p{N}]+";
+
+    //단어를 지워도 빈 목록은 남겨 둔다, 지우는 순간 다른 스레드가 같은 단어를 넣으면 빠질 수 있어서
+    //단어 종류만큼만 늘어나므로 상품 수만큼 커지지는 않는다
+    //단어마다 id 순서
+    private final NavigableMap<String, NavigableSet<Long>> index = new ConcurrentSkipListMap<>();
+
+    void add(long itemId, String itemName) {
+        for (String token : tokenize(itemName)) {
+            index.computeIfAbsent(token, key -> new ConcurrentSkipListSet<>()).add(itemId);
+        }
+    }
+
+    void remove(long itemId, String itemName) {
+        for (String token : tokenize(itemName)) {
+            NavigableSet<Long> ids = index.get(token);
+            if (ids != null) {
+                ids.remove(itemId);
+            }
+        }
+    }
+
+    /**
+     * 검색어 단어로 시작하는 상품명 단어가 있는 상품 id 후보, 꺼내는 만큼만 색인을 읽는다
+     * //가장 긴 검색어 단어(보통 가장 적게 걸린다) 하나로만 꺼낸다, 나머지 단어는 꺼낸 상품으로 확인한다 (matches)
+     * //순서는 상품명 단어 순서, 같은 단어 안에서는 id 순서, 여러 단어에 걸린 상품도 한 번만
+     * //검색어에 단어가 없으면 null (이름 조건 없음)
+     */
+    Iterator<Long> search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        String longest = tokens.get(0);
+        for (String token : tokens) {
+            if (token.length() > longest.length()) {
+                longest = token;
+            }
+        }
+        return new PrefixIterator(withPrefix(longest).values().iterator());
+    }
+
+    //색인이 잠깐 어긋나 있을 수 있어서 (수정 중) 꺼낸 상품을 다시 확인할 때 쓴다
+    static boolean matches(String query, String itemName) {
+        List<String> names = tokenize(itemName);
+        for (String token : tokenize(query)) {
+            if (names.stream().noneMatch(name -> name.startsWith(token))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        index.clear();
+    }
+
+    private NavigableMap<String, NavigableSet<Long>> withPrefix(String prefix) {
+        //prefix 로 시작하는 단어는 [prefix, prefix + 가장 큰 문자) 범위에 모여 있다
+        return index.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    //단어마다 id 목록을 차례로 이어서, 이미 꺼낸 id 는 건너뛴다
+    private static final class PrefixIterator implements Iterator<Long> {
+
+        private final Iterator<NavigableSet<Long>> words;
+        private Iterator<Long> ids = Collections.emptyIterator();
+        private final Set<Long> returned = new HashSet<>();
+        private Long next;
+
+        private PrefixIterator(Iterator<NavigableSet<Long>> words) {
+            this.words = words;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                while (!ids.hasNext()) {
+                    if (!words.hasNext()) {
+                        return false;
+                    }
+                    ids = words.next().iterator();
+                }
+                Long id = ids.next();
+                if (returned.add(id)) {
+                    next = id;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Long id = next;
+            next = null;
+            return id;
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split(DELIMITER)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
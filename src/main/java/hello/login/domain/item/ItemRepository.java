@@ -1,41 +1,515 @@
 package hello.login.domain.item;
 
+import hello.login.domain.storage.DurableTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 @Repository
 public class ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    //동시에 여러 요청이 상품을 등록, 수정해도 맵이 깨지지 않게 ConcurrentHashMap
+    //ConcurrentHashMap은 상품마다 Long 키와 Node를 따로 만들어서 상품보다 맵이 더 커진다, long 키를 그대로 쓰는 맵으로 (ObjectItemStore)
+    //item.store.type=columnar 면 필드별 배열에 나눠 담는다 (ColumnarItemStore)
+    private static volatile ItemStore store = new ObjectItemStore(); //static
+    //++sequence는 원자적이지 않아서 동시에 등록하면 같은 id가 나올 수 있다
+    private static final AtomicLong sequence = new AtomicLong(); //static
+
+    //목록 화면용 정렬 인덱스, 한 페이지를 볼 때 전체를 복사하고 정렬하지 않도록
+    //id 순서, (가격, id) 순서로 상품 id를 정렬해서 들고 있고 실제 상품은 store에서 꺼낸다
+    private static final NavigableSet<Long> idIndex = new ConcurrentSkipListSet<>(); //static
+    private static final NavigableSet<ValueKey> priceIndex = new ConcurrentSkipListSet<>(); //static
+
+    //검색용 색인, 상품명 단어와 (수량, id) 순서
+    //가격 범위는 priceIndex 를 같이 쓴다
+    private static final ItemNameIndex nameIndex = new ItemNameIndex(); //static
+    private static final NavigableSet<ValueKey> quantityIndex = new ConcurrentSkipListSet<>(); //static
+
+    //재고 총액, 총 수량, 저장, 수정할 때마다 차이만큼 더해둔다, 집계할 때 전체를 돌지 않게
+    private static final LongAdder inventoryValue = new LongAdder(); //static
+    private static final LongAdder inventoryQuantity = new LongAdder(); //static
+
+    //수정은 상품 id 단위로 잠근다, 전체 락을 쓰면 서로 다른 상품 수정도 줄을 서게 되므로
+    //락 개수는 2의 제곱수로 해서 id & (개수 - 1)로 바로 고른다
+    private static final int LOCK_STRIPES = 64;
+    private static final Object[] locks = new Object[LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    //파일 저장소, storage.enabled=true 일 때만 있다
+    private final DurableTable<Item> table;
+
+    public ItemRepository() {
+        this.table = null;
+    }
+
+    //파일 저장소가 있으면 스냅샷 이후 로그만 바로 채우고, 스냅샷은 매핑만 해둔다
+    //스냅샷의 상품은 findById 하면 그 상품만, 목록, 검색처럼 전체가 필요하면 그때 전부 꺼낸다
+    //storeType: object(기본) | columnar, 바꾸면 기존 상품은 비워진다
+    @Autowired
+    public ItemRepository(Optional<DurableTable<Item>> table,
+                          @Value("${item.store.type:object}") String storeType) {
+        this.table = table.orElse(null);
+        useStore(storeType);
+        if (this.table != null) {
+            clearStore();
+            this.table.open(() -> {
+                ensureLoaded();
+                return store.values();
+            }, ItemRepository::load).values().forEach(ItemRepository::add);
+            sequence.set(this.table.lastId());
+        }
+    }
 
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
+        item.setId(sequence.incrementAndGet());
+        persist(item, () -> add(item));
         return item;
     }
 
+    /**
+     * 여러 상품 한 번에 저장
+     * //id는 개수만큼 한 번에 받아오고, 파일 저장소가 있으면 로그도 한 번에 (fsync 한 번)
+     */
+    public List<Item> saveAll(List<Item> items) {
+        if (items.isEmpty()) {
+            return items;
+        }
+        long firstId = sequence.getAndAdd(items.size()) + 1;
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).setId(firstId + i);
+        }
+        persistAll(items, () -> items.forEach(ItemRepository::add));
+        return items;
+    }
+
     public Item findById(Long id) {
-        return store.get(id);
+        Item item = store.get(id);
+        if (item == null && table != null && table.hasUnloaded()) {
+            //스냅샷에서 한 건만 꺼내서 메모리에 올린다
+            Item snapshotItem = table.find(id);
+            if (snapshotItem != null) {
+                load(snapshotItem);
+                item = store.get(id);
+            }
+        }
+        return item;
     }
 
     public List<Item> findAll() {
+        ensureLoaded();
         return new ArrayList<>(store.values());
     }
 
-    public void update(Long itemId, Item updateParam) {
-        Item findItem = findById(itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+    /**
+     * 전체 상품을 id 순서로 하나씩
+     * //findAll 처럼 목록을 복사하지 않고 id 인덱스를 따라가며 그때그때 꺼낸다, 상품 수와 상관없이 메모리가 같다
+     * //도는 중에 추가, 수정된 상품은 나올 수도 안 나올 수도 있다
+     */
+    public Iterator<Item> iterator() {
+        ensureLoaded();
+        Iterator<Long> ids = idIndex.iterator();
+        return new Iterator<Item>() {
+            private Item next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Item next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Item item = next;
+                next = advance();
+                return item;
+            }
+
+            //인덱스와 store 사이에 잠깐 어긋나 있는 상품(저장 중)은 건너뛴다
+            private Item advance() {
+                while (ids.hasNext()) {
+                    Item item = store.get(ids.next());
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    public int count() {
+        ensureLoaded();
+        return store.size();
+    }
+
+    //재고 총액 (가격 * 수량의 합), 미리 더해둔 값이라 상품 수와 상관없이 바로
+    public long totalInventoryValue() {
+        ensureLoaded();
+        return inventoryValue.sum();
+    }
+
+    /**
+     * 재고 집계
+     * //개수, 총액, 총 수량은 미리 더해둔 값
+     * //가격 최소, 최대, 평균, 백분위는 전체 상품 가격을 fork/join 으로 나눠 정렬해서 구한다
+     */
+    public InventoryReport report() {
+        ensureLoaded();
+        InventoryReport report = new InventoryReport();
+        report.setItemCount(store.size());
+        report.setTotalValue(inventoryValue.sum());
+        report.setTotalQuantity(inventoryQuantity.sum());
+
+        //가격만 int 배열로 모은다, 상품마다 Item 을 만들거나 Integer 로 꺼내지 않게
+        IntStream.Builder collected = IntStream.builder();
+        store.forEachPrice(collected);
+        PriceStatistics.Result prices = PriceStatistics.compute(collected.build().toArray(), ForkJoinPool.commonPool());
+        report.setPricedCount(prices.count());
+        report.setMinPrice(prices.min());
+        report.setMaxPrice(prices.max());
+        report.setAveragePrice(prices.average());
+        report.setP50Price(prices.percentile(50));
+        report.setP90Price(prices.percentile(90));
+        report.setP99Price(prices.percentile(99));
+        return report;
+    }
+
+    //스냅샷을 다 꺼내지 않고 확인
+    public boolean isEmpty() {
+        return store.isEmpty() && (table == null || !table.hasUnloaded());
+    }
+
+    /**
+     * 페이지 조회
+     * //정렬 인덱스에서 offset만큼 건너뛰고 limit개만 꺼낸다, 전체 목록을 복사하지 않음
+     * //깊은 페이지는 건너뛰는 비용이 드므로 계속 넘겨보는 경우는 findAfter
+     */
+    public List<Item> findPage(ItemSort sort, int offset, int limit) {
+        ensureLoaded();
+        Iterator<Long> ids = sortedIds(sort);
+        for (int i = 0; i < offset && ids.hasNext(); i++) {
+            ids.next();
+        }
+        return collect(ids, limit);
+    }
+
+    /**
+     * 키셋 페이지 조회
+     * //afterId 다음 id부터 limit개, afterId가 null이면 처음부터
+     * //skip list에서 afterId 위치를 바로 찾으므로 얼마나 뒤쪽이든 비용이 같다
+     */
+    public List<Item> findAfter(Long afterId, int limit) {
+        ensureLoaded();
+        NavigableSet<Long> ids = afterId == null ? idIndex : idIndex.tailSet(afterId, false);
+        return collect(ids.iterator(), limit);
+    }
+
+    /**
+     * 상품 검색
+     * //상품명 조건이 있으면 이름 색인에서 후보를 limit 개 찾을 때까지만 꺼낸다 (상품명 단어 순서)
+     * //없으면 가격 범위, 그것도 없으면 수량 범위 구간만 훑는다 (그 값 순서)
+     * //나머지 조건은 후보 상품에서 바로 확인, 조건이 하나도 없으면 id 순서로 전체
+     */
+    public List<Item> search(ItemSearchCond cond, int limit) {
+        ensureLoaded();
+        String itemName = cond.getItemName();
+        Iterator<Long> nameIds = nameIndex.search(itemName);
+
+        Iterator<Long> ids;
+        if (nameIds != null) {
+            ids = nameIds;
+        } else if (cond.getMinPrice() != null || cond.getMaxPrice() != null) {
+            ids = valueIds(range(priceIndex, cond.getMinPrice(), cond.getMaxPrice()).iterator());
+        } else if (cond.getMinQuantity() != null || cond.getMaxQuantity() != null) {
+            ids = valueIds(range(quantityIndex, cond.getMinQuantity(), cond.getMaxQuantity()).iterator());
+        } else {
+            ids = idIndex.iterator();
+        }
+
+        List<Item> items = new ArrayList<>(Math.min(limit, 100));
+        while (items.size() < limit && ids.hasNext()) {
+            Item item = store.get(ids.next());
+            //색인은 수정 중에 잠깐 어긋날 수 있어서 꺼낸 상품으로 모든 조건을 다시 확인
+            if (item != null && matches(item, cond)) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    //같은 상품을 동시에 수정하면 이름, 가격, 수량이 섞일 수 있으므로 상품 단위 락 안에서 처리
+    //기존 객체를 고치지 않고 새 객체로 바꿔 끼워서, 락 없이 읽는 쪽도 항상 한 번의 수정 결과만 보게 한다
+    //없는 상품이면 false, updateAll 이 없는 id 를 돌려주는 것과 같이 호출한 쪽이 알 수 있게
+    public boolean update(Long itemId, Item updateParam) {
+        synchronized (lockFor(itemId)) {
+            Item findItem = findById(itemId);
+            if (findItem == null) {
+                return false;
+            }
+
+            Item updateItem = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            updateItem.setId(findItem.getId());
+            //락 안에서 로그를 써야 같은 상품의 수정이 반영 순서대로 로그에 남는다
+            persist(updateItem, () -> replace(findItem, updateItem));
+            return true;
+        }
+    }
+
+    /**
+     * 여러 상품 한 번에 수정
+     * //필요한 락을 번호 순서로 한 번씩만 잡고 로그도 한 번에 쓴다
+     * //락을 항상 같은 순서로 잡아야 두 일괄 수정이 서로의 락을 기다리며 멈추지 않는다
+     * //같은 상품이 여러 번 있으면 마지막 값으로
+     * @return 없는 상품 id
+     */
+    public List<Long> updateAll(List<Item> updateParams) {
+        Map<Long, Item> params = new LinkedHashMap<>();
+        for (Item updateParam : updateParams) {
+            params.put(updateParam.getId(), updateParam);
+        }
+        int[] stripes = params.keySet().stream().mapToInt(ItemRepository::stripeOf).distinct().sorted().toArray();
+
+        List<Long> missing = new ArrayList<>();
+        withLocks(stripes, 0, () -> {
+            List<Item> findItems = new ArrayList<>(params.size());
+            List<Item> updateItems = new ArrayList<>(params.size());
+            for (Item updateParam : params.values()) {
+                Item findItem = findById(updateParam.getId());
+                if (findItem == null) {
+                    missing.add(updateParam.getId());
+                    continue;
+                }
+                Item updateItem = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+                updateItem.setId(findItem.getId());
+                findItems.add(findItem);
+                updateItems.add(updateItem);
+            }
+            persistAll(updateItems, () -> {
+                for (int i = 0; i < updateItems.size(); i++) {
+                    replace(findItems.get(i), updateItems.get(i));
+                }
+            });
+        });
+        return missing;
     }
 
     public void clearStore() {
         store.clear();
+        inventoryValue.reset();
+        inventoryQuantity.reset();
+        idIndex.clear();
+        priceIndex.clear();
+        quantityIndex.clear();
+        nameIndex.clear();
+    }
+
+    //가격, 수량, 이름이 바뀌면 인덱스 위치도 바뀐다
+    private static void replace(Item findItem, Item updateItem) {
+        long itemId = updateItem.getId();
+        store.put(updateItem);
+
+        priceIndex.remove(new ValueKey(findItem.getPrice(), itemId));
+        priceIndex.add(new ValueKey(updateItem.getPrice(), itemId));
+        quantityIndex.remove(new ValueKey(findItem.getQuantity(), itemId));
+        quantityIndex.add(new ValueKey(updateItem.getQuantity(), itemId));
+        nameIndex.remove(itemId, findItem.getItemName());
+        nameIndex.add(itemId, updateItem.getItemName());
+
+        inventoryValue.add(valueOf(updateItem) - valueOf(findItem));
+        inventoryQuantity.add(quantityOf(updateItem) - quantityOf(findItem));
+    }
+
+    private static void add(Item item) {
+        store.put(item);
+        idIndex.add(item.getId());
+        priceIndex.add(new ValueKey(item.getPrice(), item.getId()));
+        quantityIndex.add(new ValueKey(item.getQuantity(), item.getId()));
+        nameIndex.add(item.getId(), item.getItemName());
+        inventoryValue.add(valueOf(item));
+        inventoryQuantity.add(quantityOf(item));
+    }
+
+    //가격이나 수량이 없으면 0
+    private static long valueOf(Item item) {
+        return item.getPrice() == null || item.getQuantity() == null ? 0 : (long) item.getPrice() * item.getQuantity();
+    }
+
+    private static long quantityOf(Item item) {
+        return item.getQuantity() == null ? 0 : item.getQuantity();
+    }
+
+    private static synchronized void useStore(String storeType) {
+        boolean columnar;
+        if ("columnar".equalsIgnoreCase(storeType)) {
+            columnar = true;
+        } else if ("object".equalsIgnoreCase(storeType)) {
+            columnar = false;
+        } else {
+            throw new IllegalArgumentException("unknown item.store.type: " + storeType);
+        }
+        if (columnar != store instanceof ColumnarItemStore) {
+            store = columnar ? new ColumnarItemStore() : new ObjectItemStore();
+            idIndex.clear();
+            priceIndex.clear();
+            quantityIndex.clear();
+            nameIndex.clear();
+            inventoryValue.reset();
+            inventoryQuantity.reset();
+        }
+    }
+
+    //스냅샷에서 꺼낸 상품, 그 사이에 로그로 복구됐거나 수정된 상품이면 건너뛴다
+    private static void load(Item item) {
+        synchronized (lockFor(item.getId())) {
+            if (!store.containsKey(item.getId())) {
+                add(item);
+            }
+        }
+    }
+
+    //정렬, 검색 인덱스는 전체 상품이 있어야 맞으므로 스냅샷에 남은 상품을 다 올린다 (처음 한 번만)
+    private void ensureLoaded() {
+        if (table != null) {
+            table.loadRemaining();
+        }
+    }
+
+    //파일 저장소가 있으면 로그가 디스크에 내려간 다음에 반영
+    private void persist(Item item, Runnable apply) {
+        if (table == null) {
+            apply.run();
+        } else {
+            table.write(item, apply);
+        }
+    }
+
+    private void persistAll(List<Item> items, Runnable apply) {
+        if (table == null || items.isEmpty()) {
+            apply.run();
+        } else {
+            table.writeAll(items, apply);
+        }
+    }
+
+    private Iterator<Long> sortedIds(ItemSort sort) {
+        switch (sort) {
+            case ID_DESC:
+                return idIndex.descendingIterator();
+            case PRICE_ASC:
+                return valueIds(priceIndex.iterator());
+            case PRICE_DESC:
+                return valueIds(priceIndex.descendingIterator());
+            default:
+                return idIndex.iterator();
+        }
+    }
+
+    private static Iterator<Long> valueIds(Iterator<ValueKey> keys) {
+        return new Iterator<Long>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                return keys.next().itemId;
+            }
+        };
+    }
+
+    //[min, max] 구간, 값이 없는 상품(null)은 범위 조건에 걸리지 않는다
+    private static NavigableSet<ValueKey> range(NavigableSet<ValueKey> index, Integer min, Integer max) {
+        ValueKey from = new ValueKey(min == null ? Integer.MIN_VALUE : min, Long.MIN_VALUE);
+        ValueKey to = new ValueKey(max == null ? Integer.MAX_VALUE : max, Long.MAX_VALUE);
+        return index.subSet(from, true, to, true);
+    }
+
+    private static boolean matches(Item item, ItemSearchCond cond) {
+        return (cond.getItemName() == null || ItemNameIndex.matches(cond.getItemName(), item.getItemName()))
+                && inRange(item.getPrice(), cond.getMinPrice(), cond.getMaxPrice())
+                && inRange(item.getQuantity(), cond.getMinQuantity(), cond.getMaxQuantity());
+    }
+
+    private static boolean inRange(Integer value, Integer min, Integer max) {
+        if (min == null && max == null) {
+            return true;
+        }
+        return value != null && (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    //인덱스와 store 사이에 잠깐 어긋나 있는 상품(저장 중)은 건너뛴다
+    private static List<Item> collect(Iterator<Long> ids, int limit) {
+        List<Item> items = new ArrayList<>(limit);
+        while (items.size() < limit && ids.hasNext()) {
+            Item item = store.get(ids.next());
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static Object lockFor(long itemId) {
+        return locks[stripeOf(itemId)];
+    }
+
+    private static int stripeOf(long itemId) {
+        return (int) (itemId & (LOCK_STRIPES - 1));
+    }
+
+    //stripes[index..] 락을 차례로 잡고 action 실행
+    private static void withLocks(int[] stripes, int index, Runnable action) {
+        if (index == stripes.length) {
+            action.run();
+            return;
+        }
+        synchronized (locks[stripes[index]]) {
+            withLocks(stripes, index + 1, action);
+        }
+    }
+
+    //가격, 수량 인덱스 키, 값이 같으면 id 순서, 값이 없는 상품은 맨 앞
+    private static final class ValueKey implements Comparable<ValueKey> {
+
+        private static final Comparator<ValueKey> ORDER = Comparator
+                .comparing((ValueKey key) -> key.value, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingLong(key -> key.itemId);
+
+        private final Integer value;
+        private final long itemId;
+
+        private ValueKey(Integer value, long itemId) {
+            this.value = value;
+            this.itemId = itemId;
+        }
+
+        @Override
+        public int compareTo(ValueKey other) {
+            return ORDER.compare(this, other);
+        }
     }
 
 }
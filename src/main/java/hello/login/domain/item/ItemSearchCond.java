@@ -0,0 +1,25 @@
+package hello.login.domain.item;
+
+import lombok.Data;
+
+//상품 검색 조건, 비어 있는 값은 조건에서 뺀다
+@Data
+public class ItemSearchCond {
+
+    private String itemName;
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Integer minQuantity;
+    private Integer maxQuantity;
+
+    public ItemSearchCond() {
+    }
+
+    public ItemSearchCond(String itemName, Integer minPrice, Integer maxPrice, Integer minQuantity, Integer maxQuantity) {
+        this.itemName = itemName;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+    }
+}
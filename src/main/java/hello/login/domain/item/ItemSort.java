@@ -0,0 +1,15 @@
+package hello.login.domain.item;
+
+//상품 목록 정렬 기준
+public enum ItemSort {
+    ID_ASC, ID_DESC, PRICE_ASC, PRICE_DESC;
+
+    //sort=id|price, direction=asc|desc, 모르는 값이면 id 오름차순
+    public static ItemSort of(String sort, String direction) {
+        boolean desc = "desc".equalsIgnoreCase(direction);
+        if ("price".equalsIgnoreCase(sort)) {
+            return desc ? PRICE_DESC : PRICE_ASC;
+        }
+        return desc ? ID_DESC : ID_ASC;
+    }
+}
@@ -0,0 +1,30 @@
+package hello.login.domain.item;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 상품 주 저장소
+ * //ObjectItemStore: Item 객체를 그대로 보관 (기본)
+ * //ColumnarItemStore: 필드별 배열에 나눠서 보관하고 읽을 때 Item을 만들어 준다 (item.store.type=columnar)
+ * //인덱스, 락, 로그는 ItemRepository가 맡고 여기는 id -> 상품만
+ */
+interface ItemStore {
+
+    Item get(long id);
+
+    void put(Item item);
+
+    boolean containsKey(long id);
+
+    List<Item> values();
+
+    //가격이 있는 상품의 가격만, Item 을 만들지 않고 (재고 리포트용)
+    void forEachPrice(IntConsumer action);
+
+    int size();
+
+    boolean isEmpty();
+
+    void clear();
+}
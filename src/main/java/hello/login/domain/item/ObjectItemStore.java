@@ -0,0 +1,57 @@
+package hello.login.domain.item;
+
+import hello.login.domain.storage.ConcurrentLongMap;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+//Item 객체를 그대로 보관, 저장한 객체를 그대로 돌려준다
+class ObjectItemStore implements ItemStore {
+
+    private final ConcurrentLongMap<Item> items = new ConcurrentLongMap<>();
+
+    @Override
+    public Item get(long id) {
+        return items.get(id);
+    }
+
+    @Override
+    public void put(Item item) {
+        items.put(item.getId(), item);
+    }
+
+    @Override
+    public boolean containsKey(long id) {
+        return items.containsKey(id);
+    }
+
+    @Override
+    public List<Item> values() {
+        return items.values();
+    }
+
+    @Override
+    public void forEachPrice(IntConsumer action) {
+        for (Item item : items.values()) {
+            Integer price = item.getPrice();
+            if (price != null) {
+                action.accept(price);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+    }
+}
@@ -0,0 +1,109 @@
+package hello.login.domain.item;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 가격 분포 (fork/join)
+ * //가격 배열을 반씩 나눠 각 조각을 정렬하고, 돌아오면서 정렬된 두 배열을 합친다 (병합 정렬)
+ * //조각이 THRESHOLD 이하면 한 스레드에서 바로 처리
+ */
+class PriceStatistics extends RecursiveTask<PriceStatistics.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int THRESHOLD = 4096;
+
+    private final int[] prices;
+    private final int from;
+    private final int to;
+
+    private PriceStatistics(int[] prices, int from, int to) {
+        this.prices = prices;
+        this.from = from;
+        this.to = to;
+    }
+
+    //prices 는 바꾸지 않는다
+    static Result compute(int[] prices, ForkJoinPool pool) {
+        return pool.invoke(new PriceStatistics(prices, 0, prices.length));
+    }
+
+    @Override
+    protected Result compute() {
+        if (to - from <= THRESHOLD) {
+            return computeDirectly();
+        }
+        int mid = (from + to) >>> 1;
+        PriceStatistics left = new PriceStatistics(prices, from, mid);
+        left.fork();
+        Result right = new PriceStatistics(prices, mid, to).compute();
+        return merge(left.join(), right);
+    }
+
+    private Result computeDirectly() {
+        int[] sorted = Arrays.copyOfRange(prices, from, to);
+        long sum = 0;
+        for (int price : sorted) {
+            sum += price;
+        }
+        Arrays.sort(sorted);
+        return new Result(sorted, sum);
+    }
+
+    private static Result merge(Result left, Result right) {
+        int[] a = left.sortedPrices;
+        int[] b = right.sortedPrices;
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            merged[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) {
+            merged[k++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[k++] = b[j++];
+        }
+        return new Result(merged, left.sum + right.sum);
+    }
+
+    static final class Result {
+
+        private final int[] sortedPrices;
+        private final long sum;
+
+        private Result(int[] sortedPrices, long sum) {
+            this.sortedPrices = sortedPrices;
+            this.sum = sum;
+        }
+
+        int count() {
+            return sortedPrices.length;
+        }
+
+        Integer min() {
+            return sortedPrices.length == 0 ? null : sortedPrices[0];
+        }
+
+        Integer max() {
+            return sortedPrices.length == 0 ? null : sortedPrices[sortedPrices.length - 1];
+        }
+
+        Double average() {
+            return sortedPrices.length == 0 ? null : (double) sum / sortedPrices.length;
+        }
+
+        //nearest-rank, 가격의 percentile% 가 이 값 이하
+        Integer percentile(double percentile) {
+            if (sortedPrices.length == 0) {
+                return null;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedPrices.length);
+            return sortedPrices[Math.max(rank, 1) - 1];
+        }
+    }
+}
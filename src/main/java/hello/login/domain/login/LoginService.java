@@ -3,21 +3,25 @@ package hello.login.domain.login;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 
 //로그인 판단 로직
 //아이디 비번이 맞는지
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class LoginService {
 
     //자동 의존 주입
     private final MemberRepository memberRepository;
+    private final PasswordHasher passwordHasher;
 
     /**
      * @return null 로그인 실패
+     * @throws PasswordHasherBusyException 비밀번호 확인 대기열이 찼을 때
      */
     public Member login(String loginId, String password) {
 
@@ -32,8 +36,35 @@ public class LoginService {
 //            return null;
 //        }
 
-        return memberRepository.findByLoginId(loginId)
-                .filter(m -> m.getPassword().equals(password))
-                .orElse(null);
+//        return memberRepository.findByLoginId(loginId)
+//                .filter(m -> m.getPassword().equals(password))
+//                .orElse(null);
+
+        //비밀번호는 해시로 저장되므로 해시 스레드에서 확인
+        //아이디가 없어도 같은 만큼 계산한다, 응답이 빨리 오는지로 가입된 아이디를 알아낼 수 없게
+        Optional<Member> findMember = memberRepository.findByLoginId(loginId);
+        if (findMember.isEmpty()) {
+            passwordHasher.verifyMissing(password);
+            return null;
+        }
+        Member member = findMember.get();
+        if (!passwordHasher.verify(password, member.getPassword())) {
+            return null;
+        }
+
+        //평문이나 예전 반복 횟수로 남은 비밀번호는 맞았을 때 지금 설정으로 다시 해시해서 바꿔 둔다
+        if (passwordHasher.needsRehash(member.getPassword())) {
+            rehash(member, password);
+        }
+        return member;
+    }
+
+    //다시 해시하지 못해도 로그인은 그대로 성공, 다음 로그인에서 다시 한다
+    private void rehash(Member member, String password) {
+        try {
+            memberRepository.updatePassword(member.getId(), passwordHasher.hash(password));
+        } catch (PasswordHasherBusyException e) {
+            log.warn("password rehash skipped: memberId={}", member.getId());
+        }
     }
 }
@@ -0,0 +1,175 @@
+package hello.login.domain.login;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 비밀번호 해시 (PBKDF2-HMAC-SHA256)
+ * //저장 형식: pbkdf2$반복횟수$salt(base64)$해시(base64), 반복 횟수가 바뀌어도 예전 해시는 그 횟수로 확인한다
+ *
+ * //해시 한 번에 수십 ms 씩 CPU를 쓰므로 톰캣 요청 스레드가 아니라 전용 스레드(기본 CPU 수만큼)에서 계산한다
+ * //로그인이 몰리면 대기열(queue-capacity)까지만 받고 넘치면 바로 PasswordHasherBusyException
+ * //요청 스레드가 해시를 기다리며 줄줄이 묶여서 다른 화면까지 느려지는 것보다 로그인만 바로 거절하는 게 낫다
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private final int iterations;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    //없는 아이디도 같은 시간이 걸리게 이 해시와 비교한다, 응답 시간으로 아이디가 있는지 알 수 없게
+    private final String dummyHash;
+
+    //threads 가 0이면 CPU 수
+    @Autowired
+    public PasswordHasher(@Value("${password.hash.iterations:100000}") int iterations,
+                          @Value("${password.hash.threads:0}") int threads,
+                          @Value("${password.hash.queue-capacity:64}") int queueCapacity,
+                          @Value("${password.hash.timeout-ms:5000}") long timeoutMillis) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+        this.timeoutMillis = timeoutMillis;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        //대기열이 차면 AbortPolicy 로 바로 RejectedExecutionException
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dummyHash = encode(iterations, newSalt(), new byte[HASH_LENGTH]);
+    }
+
+    //새 salt 로 해시
+    public String hash(String password) {
+        byte[] salt = newSalt();
+        return submit(() -> encode(iterations, salt, derive(password, salt, iterations)));
+    }
+
+    /**
+     * 확인
+     * //해시끼리 비교는 MessageDigest.isEqual (끝까지 다 비교해서 몇 번째 바이트에서 틀렸는지 시간으로 알 수 없다)
+     * //pbkdf2$ 로 시작하지 않으면 해시를 붙이기 전에 저장된 평문 비밀번호로 보고 그대로 비교한다
+     * //평문도 더미 해시를 한 번 계산한다, 응답 시간으로 아직 평문으로 남은 계정인지 알 수 없게
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            verify(password, dummyHash);
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            log.warn("invalid password hash format");
+            return false;
+        }
+        return submit(() -> MessageDigest.isEqual(expected, derive(password, salt, storedIterations)));
+    }
+
+    //회원이 없을 때, 있는 회원과 같은 만큼 계산하고 false
+    public boolean verifyMissing(String password) {
+        verify(password == null ? "" : password, dummyHash);
+        return false;
+    }
+
+    //평문이거나 지금과 다른 반복 횟수로 만든 해시면 true, 로그인에 성공했을 때 다시 해시해서 바꿔 둔다
+    public boolean needsRehash(String stored) {
+        return stored == null || !stored.startsWith(PREFIX + iterations + "$");
+    }
+
+    //지금 대기 중인 계산 수
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //해시 스레드에서 계산하고 기다린다, 대기열이 찼거나 timeout 안에 끝나지 않으면 PasswordHasherBusyException
+    <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHasherBusyException("password hash queue is full", e);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHasherBusyException("password hash timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHasherBusyException("interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("password hash failed", e.getCause());
+        }
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static String encode(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
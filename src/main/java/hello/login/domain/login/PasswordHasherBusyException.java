@@ -0,0 +1,11 @@
+package hello.login.domain.login;
+
+//비밀번호 해시 스레드가 모두 바쁘고 대기열도 찼을 때, 잠시 후 다시 시도
+public class PasswordHasherBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHasherBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
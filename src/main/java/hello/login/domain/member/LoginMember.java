@@ -0,0 +1,25 @@
+package hello.login.domain.member;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * 로그인한 회원, 세션에 넣는 값
+ * //Member 를 그대로 넣으면 비밀번호 해시까지 세션에 남고, 꺼내 쓴 쪽에서 고치면 세션에 있는 회원이 바뀐다
+ * //화면에 필요한 값만 복사한 불변 객체라 여러 요청이 같이 꺼내 써도 된다
+ */
+@Value
+public class LoginMember implements Serializable {
+
+    //처음 넣은 클래스에서 계산된 값 그대로, 이미 저장된(mapped 저장소, 다른 노드) 세션을 계속 읽을 수 있게
+    private static final long serialVersionUID = -5795955647451899555L;
+
+    Long id;
+    String loginId;
+    String name;
+
+    public static LoginMember of(Member member) {
+        return new LoginMember(member.getId(), member.getLoginId(), member.getName());
+    }
+}
@@ -3,9 +3,14 @@ package hello.login.domain.member;
 import lombok.Data;
 
 import javax.validation.constraints.NotEmpty;
+import java.io.Serializable;
 
+//세션 값으로 직렬화해서 보관할 수 있게 Serializable
 @Data
-public class Member {
+public class Member implements Serializable {
+
+    //처음 넣은 클래스에서 계산된 값 그대로, 이미 저장된(mapped 저장소) 세션을 계속 읽을 수 있게
+    private static final long serialVersionUID = -5387433671914843748L;
 
     //db에서 저장되고 관리되는
     private Long id;
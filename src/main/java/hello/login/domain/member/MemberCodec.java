@@ -0,0 +1,36 @@
+package hello.login.domain.member;
+
+import hello.login.domain.storage.EntityCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static hello.login.domain.storage.EntityCodec.*;
+
+//[id(long)][로그인 ID][이름][비밀번호]
+public class MemberCodec implements EntityCodec<Member> {
+
+    @Override
+    public long idOf(Member member) {
+        return member.getId();
+    }
+
+    @Override
+    public void write(Member member, DataOutput out) throws IOException {
+        out.writeLong(member.getId());
+        writeString(out, member.getLoginId());
+        writeString(out, member.getName());
+        writeString(out, member.getPassword());
+    }
+
+    @Override
+    public Member read(DataInput in) throws IOException {
+        Member member = new Member();
+        member.setId(in.readLong());
+        member.setLoginId(readString(in));
+        member.setName(readString(in));
+        member.setPassword(readString(in));
+        return member;
+    }
+}
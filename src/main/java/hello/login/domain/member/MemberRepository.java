@@ -1,24 +1,63 @@
 package hello.login.domain.member;
 
+import hello.login.domain.storage.ConcurrentLongMap;
+import hello.login.domain.storage.DurableTable;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 //저장하고 관리하는 저장소
 @Slf4j
 @Repository
 public class MemberRepository {
 
-    private static Map<Long, Member> store = new HashMap<>(); //static 사용
-    private static long sequence = 0L;//static 사용
+    //long 키를 그대로 쓰는 맵, 회원마다 Long 키와 Node를 따로 만들지 않게
+    private static ConcurrentLongMap<Member> store = new ConcurrentLongMap<>(); //static 사용
+    private static AtomicLong sequence = new AtomicLong();//static 사용
+
+    //loginId -> 회원 보조 인덱스, 로그인할 때마다 전체를 뒤지지 않고 바로 꺼내기 위해
+    //store와 항상 같이 바뀌어야 하므로 저장, 수정, 삭제하는 곳에서 인덱스도 같이 고쳐줘야 한다
+    private static Map<String, Member> loginIdIndex = new ConcurrentHashMap<>(); //static 사용
+
+    //파일 저장소, storage.enabled=true 일 때만 있다
+    private final DurableTable<Member> table;
+
+    public MemberRepository() {
+        this.table = null;
+    }
+
+    //파일 저장소가 있으면 스냅샷 이후 로그만 바로 채우고, 스냅샷은 매핑만 해둔다
+    //스냅샷의 회원은 findById 하면 그 회원만, loginId로 찾거나 전체가 필요하면 그때 전부 꺼낸다
+    @Autowired
+    public MemberRepository(Optional<DurableTable<Member>> table) {
+        this.table = table.orElse(null);
+        if (this.table != null) {
+            clearStore();
+            this.table.open(() -> {
+                ensureLoaded();
+                return store.values();
+            }, this::load).values().forEach(this::add);
+            sequence.set(this.table.lastId());
+        }
+    }
 
     //저장
     public Member save(Member member) {
-        member.setId(++sequence);
+        //같은 loginId면 먼저 저장된 회원이 남아야 하므로 스냅샷에 남은 회원을 먼저 올린다
+        ensureLoaded();
+        member.setId(sequence.incrementAndGet());
         //회원가입하면 로그 남기기
         log.info("save: member={}", member);
-        store.put(member.getId(), member);
+        //파일 저장소가 있으면 로그가 디스크에 내려간 다음에 반영
+        if (table == null) {
+            add(member);
+        } else {
+            table.write(member, () -> add(member));
+        }
 
         return member;
     }
@@ -26,7 +65,16 @@ public class MemberRepository {
     //회원 찾기
     public Member findById(Long id) {
 
-        return store.get(id);
+        Member member = store.get(id);
+        if (member == null && table != null && table.hasUnloaded()) {
+            //스냅샷에서 한 건만 꺼내서 메모리에 올린다
+            Member snapshotMember = table.find(id);
+            if (snapshotMember != null) {
+                load(snapshotMember);
+                member = store.get(id);
+            }
+        }
+        return member;
     }
 
 //    public Member findByLoginId(String loginId) {
@@ -57,21 +105,97 @@ public class MemberRepository {
     //값을 null로 반환해야 하는 상황에서는 Optional.empty로 찾을 수 있도록
     //람다로 리스트를 stream()하면 루프를 돈다, .filter db where절 치는거처럼 조건에 만족하는 값만 다음 단계로 넘어감
     //.findFirst() 먼저 나오는 애를 반환
+//    public Optional<Member> findByLoginId(String loginId) {
+//
+//        return findAll().stream()
+//                .filter(m -> m.getLoginId().equals(loginId))
+//                .findFirst();
+//    }
+
+    //위 방식은 로그인할 때마다 전체 회원을 리스트로 복사해서 루프를 돈다, 회원 수에 비례해서 느려짐
+    //loginIdIndex에서 바로 꺼내므로 회원 수와 상관없이 O(1)
     public Optional<Member> findByLoginId(String loginId) {
 
-        return findAll().stream()
-                .filter(m -> m.getLoginId().equals(loginId))
-                .findFirst();
+        //ConcurrentHashMap은 null 키를 허용하지 않으므로
+        if (loginId == null) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+        return Optional.ofNullable(loginIdIndex.get(loginId));
     }
 
     //회원 전체 찾기
     public List<Member> findAll() {
 
         //map객체에 있는 값들을 리스트로 변환해 반환, 키 빼고 값만 갖고오는
+        ensureLoaded();
         return new ArrayList<>(store.values());
     }
 
+    /**
+     * 비밀번호만 바꾸기 (예전 평문 비밀번호를 해시로 바꿀 때)
+     * //저장된 객체를 고치지 않고 새 객체로 바꿔 끼운다, 다른 요청이 들고 있는 회원이 도중에 바뀌지 않게
+     * @return 없는 회원이면 false
+     */
+    public boolean updatePassword(Long id, String password) {
+        Member findMember = findById(id);
+        if (findMember == null) {
+            return false;
+        }
+        Member updateMember = new Member();
+        updateMember.setId(findMember.getId());
+        updateMember.setLoginId(findMember.getLoginId());
+        updateMember.setName(findMember.getName());
+        updateMember.setPassword(password);
+
+        if (table == null) {
+            replace(findMember, updateMember);
+        } else {
+            table.write(updateMember, () -> replace(findMember, updateMember));
+        }
+        return true;
+    }
+
+    //스냅샷을 다 꺼내지 않고 확인
+    public boolean isEmpty() {
+        return store.isEmpty() && (table == null || !table.hasUnloaded());
+    }
+
     public void clearStore() {
         store.clear();
+        loginIdIndex.clear();
+    }
+
+    private void add(Member member) {
+        store.put(member.getId(), member);
+        indexLoginId(member);
+    }
+
+    private void replace(Member findMember, Member updateMember) {
+        store.put(updateMember.getId(), updateMember);
+        if (updateMember.getLoginId() != null) {
+            loginIdIndex.replace(updateMember.getLoginId(), findMember, updateMember);
+        }
+    }
+
+    //스냅샷에서 꺼낸 회원, 이미 올라와 있으면 건너뛴다 (수정은 메모리에 올린 회원에만 하므로 메모리 쪽이 최신)
+    private void load(Member member) {
+        if (store.putIfAbsent(member.getId(), member) == null) {
+            indexLoginId(member);
+        }
+    }
+
+    //loginId 인덱스는 전체 회원이 있어야 맞으므로 스냅샷에 남은 회원을 다 올린다 (처음 한 번만)
+    private void ensureLoaded() {
+        if (table != null) {
+            table.loadRemaining();
+        }
+    }
+
+    //같은 loginId가 이미 있으면 먼저 저장된 회원을 유지한다, 기존 findFirst()와 같은 결과
+    private void indexLoginId(Member member) {
+        if (member.getLoginId() != null) {
+            loginIdIndex.putIfAbsent(member.getLoginId(), member);
+        }
     }
 }
@@ -0,0 +1,250 @@
+package hello.login.domain.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * long 키 전용 동시성 맵
+ * //Map<Long, V> 는 키마다 Long 객체, 엔트리마다 Node 객체를 만든다, 엔트리 하나에 50바이트 가까이
+ * //여기서는 키는 long 배열, 값은 참조 배열에 그대로 넣는다 (개방 주소법, 선형 탐사), 엔트리당 12~16바이트 / 적재율
+ *
+ * //읽기: 락 없이 배열만 본다
+ * //쓰기: 빈 칸은 CAS로 차지해서 여러 스레드가 같이 쓸 수 있다, 한 번 차지한 칸의 키는 바뀌지 않는다
+ * //삭제: 키는 남기고 값만 비운다(묘비), 같은 키를 다시 넣으면 그 칸을 쓴다
+ * //배열을 늘릴 때만 쓰기를 막는다 (읽기는 늘리는 동안 이전 배열을 본다)
+ *
+ * //키 0은 빈 칸 표시로 쓰므로 넣을 수 없다 (id는 1부터)
+ */
+public class ConcurrentLongMap<V> {
+
+    private static final long EMPTY = 0;
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private volatile Table<V> table;
+    private final AtomicInteger size = new AtomicInteger();
+
+    //쓰기는 읽기 락(서로 같이), 배열 늘리기와 비우기는 쓰기 락
+    private final ReadWriteLock resizeLock = new ReentrantReadWriteLock();
+
+    public ConcurrentLongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ConcurrentLongMap(int expectedSize) {
+        table = new Table<>(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        Table<V> t = table;
+        int mask = t.mask;
+        for (int i = indexOf(key, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                return t.values.get(i);
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    //이전 값, 없었으면 null
+    public V put(long key, V value) {
+        return write(key, value, false);
+    }
+
+    //이미 있으면 바꾸지 않고 그 값을 돌려준다
+    public V putIfAbsent(long key, V value) {
+        return write(key, value, true);
+    }
+
+    public V remove(long key) {
+        resizeLock.readLock().lock();
+        try {
+            Table<V> t = table;
+            int slot = find(t, key);
+            if (slot < 0) {
+                return null;
+            }
+            V previous = t.values.getAndSet(slot, null);
+            if (previous != null) {
+                size.decrementAndGet();
+            }
+            return previous;
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    //지금 들어있는 값들의 복사본, 복사하는 중에 바뀐 것은 들어갈 수도 안 들어갈 수도 있다
+    public List<V> values() {
+        Table<V> t = table;
+        List<V> values = new ArrayList<>(Math.max(size.get(), 0));
+        for (int i = 0; i <= t.mask; i++) {
+            V value = t.values.get(i);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    public void clear() {
+        resizeLock.writeLock().lock();
+        try {
+            table = new Table<>(DEFAULT_CAPACITY);
+            size.set(0);
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private V write(long key, V value, boolean onlyIfAbsent) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key 0 is reserved");
+        }
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+
+        while (true) {
+            resizeLock.readLock().lock();
+            try {
+                Table<V> t = table;
+                int slot = claim(t, key);
+                if (slot >= 0) {
+                    V previous = onlyIfAbsent
+                            ? t.values.compareAndExchange(slot, null, value)
+                            : t.values.getAndSet(slot, value);
+                    if (previous == null) {
+                        size.incrementAndGet();
+                    }
+                    return previous;
+                }
+            } finally {
+                resizeLock.readLock().unlock();
+            }
+            resize();
+        }
+    }
+
+    //key 칸을 찾거나 빈 칸을 차지한다, 적재율을 넘으면 -1 (늘린 다음 다시)
+    private int claim(Table<V> t, long key) {
+        int mask = t.mask;
+        for (int i = indexOf(key, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY) {
+                if (t.used.get() >= t.threshold) {
+                    return -1;
+                }
+                if (t.keys.compareAndSet(i, EMPTY, key)) {
+                    t.used.incrementAndGet();
+                    return i;
+                }
+                //다른 스레드가 먼저 차지했다, 같은 키일 수 있으므로 이 칸을 다시 본다
+                if (t.keys.get(i) == key) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int find(Table<V> t, long key) {
+        int mask = t.mask;
+        for (int i = indexOf(key, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    //살아있는 값만 새 배열로 옮긴다, 묘비는 여기서 정리된다
+    private void resize() {
+        resizeLock.writeLock().lock();
+        try {
+            Table<V> old = table;
+            if (old.used.get() < old.threshold) {
+                //다른 스레드가 이미 늘렸다
+                return;
+            }
+            int capacity = old.mask + 1;
+            //묘비가 많아서 찬 거면 크기는 그대로 정리만
+            int newCapacity = size.get() * 2 >= old.threshold ? Math.min(capacity * 2, MAX_CAPACITY) : capacity;
+            if (newCapacity == capacity && size.get() >= old.threshold) {
+                throw new IllegalStateException("ConcurrentLongMap is full: " + size.get());
+            }
+
+            Table<V> resized = new Table<>(newCapacity);
+            for (int i = 0; i < capacity; i++) {
+                V value = old.values.get(i);
+                if (value != null) {
+                    int slot = claim(resized, old.keys.get(i));
+                    resized.values.set(slot, value);
+                }
+            }
+            table = resized;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    //Long.hashCode 와 같은 방식, 일부러 섞지 않는다
+    //id는 1부터 차례로 늘어나므로 그대로 쓰면 충돌 없이 옆 칸에 나란히 들어가고, 이웃한 id를 읽을 때 캐시도 잘 맞는다
+    private static int indexOf(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity * 3L / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static final class Table<V> {
+
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+        //적재율 3/4
+        private final int threshold;
+        //키가 들어간 칸 수 (묘비 포함)
+        private final AtomicInteger used = new AtomicInteger();
+
+        private Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            threshold = capacity / 4 * 3;
+        }
+    }
+}
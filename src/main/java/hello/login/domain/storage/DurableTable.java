@@ -0,0 +1,236 @@
+package hello.login.domain.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 파일에 남는 저장소 한 개 (상품, 회원 각각)
+ * //dir/name/ 아래에 스냅샷(snapshot.dat)과 로그 구간(wal-*.log)을 둔다
+ *
+ * //쓰기: 엔티티 전체를 로그에 쓰고(fsync까지) 그 다음 메모리에 반영한다
+ * //스냅샷: 주기적으로 새 로그 구간으로 넘기고 메모리의 현재 상태를 통째로 파일에 쓴 뒤, 앞 구간들은 지운다
+ * //복구: 스냅샷 이후 구간만 다시 반영한다, 로그는 엔티티 전체라서 여러 번 반영해도 결과가 같다
+ * //스냅샷은 매핑만 해두고(MappedSnapshot) 필요할 때 꺼낸다, find 는 한 건만, loadRemaining 은 남은 것 전부
+ */
+@Slf4j
+public class DurableTable<T> implements Closeable {
+
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    private final String name;
+    private final Path dir;
+    private final EntityCodec<T> codec;
+    private final Duration snapshotInterval;
+
+    //쓰기(로그 + 반영)는 읽기 락, 구간 넘기기는 쓰기 락
+    //구간을 넘기는 순간에 앞 구간에 로그만 쓰고 아직 메모리에 반영하지 않은 변경이 없게 한다
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private final Object loadLock = new Object();
+
+    private WriteAheadLog wal;
+    private Supplier<? extends Collection<T>> source;
+    private Consumer<T> loader;
+    private ScheduledExecutorService snapshotter;
+    private long lastId;
+
+    //아직 메모리로 다 옮기지 않은 스냅샷, 다 옮기면 null
+    private volatile MappedSnapshot<T> mapped;
+
+    public DurableTable(Path dir, String name, EntityCodec<T> codec, Duration snapshotInterval) {
+        this.name = name;
+        this.dir = dir.resolve(name);
+        this.codec = codec;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * 복구하고 쓰기를 받을 준비
+     * //스냅샷은 매핑만 하고 스냅샷 이후 로그만 읽는다, 데이터 양이 아니라 마지막 스냅샷 이후 변경 양에 비례
+     * //source는 메모리의 현재 상태(스냅샷을 뜰 때), loader는 스냅샷에서 꺼낸 엔티티를 메모리에 넣는 방법
+     * //loader는 이미 메모리에 있는 id는 건너뛰어야 한다 (로그로 복구했거나 그 뒤에 바뀐 것)
+     * @return 스냅샷 이후 로그로 복구한 id -> 마지막 상태, 스냅샷에만 있는 것은 find, loadRemaining 으로
+     */
+    public Map<Long, T> open(Supplier<? extends Collection<T>> source, Consumer<T> loader) {
+        this.source = source;
+        this.loader = loader;
+        MappedSnapshot<T> snapshot = MappedSnapshot.open(dir.resolve(SNAPSHOT_FILE), codec);
+        long fromSegment = 0;
+        if (snapshot != null) {
+            fromSegment = snapshot.segment();
+            lastId = snapshot.maxId();
+            mapped = snapshot.size() == 0 ? null : snapshot;
+        }
+
+        Map<Long, T> entities = new LinkedHashMap<>();
+        wal = new WriteAheadLog(dir, name);
+        wal.replay(fromSegment, data -> {
+            T entity = decode(data);
+            entities.put(codec.idOf(entity), entity);
+            lastId = Math.max(lastId, codec.idOf(entity));
+        });
+        log.info("storage recovered: table={}, mapped={}, replayed={}", name,
+                snapshot == null ? 0 : snapshot.size(), entities.size());
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-snapshot-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = snapshotInterval.toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+        return entities;
+    }
+
+    //복구한 것 중 가장 큰 id, 새 id는 그 다음부터
+    public long lastId() {
+        return lastId;
+    }
+
+    //스냅샷에 아직 메모리로 옮기지 않은 엔티티가 있는지
+    public boolean hasUnloaded() {
+        return mapped != null;
+    }
+
+    //스냅샷에서 한 건만 꺼낸다, 메모리에 넣는 건 호출한 쪽에서
+    public T find(long id) {
+        MappedSnapshot<T> snapshot = mapped;
+        return snapshot == null ? null : snapshot.get(id);
+    }
+
+    /**
+     * 스냅샷에 남은 엔티티를 모두 loader로 메모리에 넣는다
+     * //전체 목록, 보조 인덱스가 필요한 곳에서 처음 한 번만 하고 그 뒤로는 바로 돌아온다
+     */
+    public void loadRemaining() {
+        if (mapped == null) {
+            return;
+        }
+        synchronized (loadLock) {
+            MappedSnapshot<T> snapshot = mapped;
+            if (snapshot == null) {
+                return;
+            }
+            snapshot.forEach(loader);
+            mapped = null;
+            log.info("storage snapshot loaded: table={}, entities={}", name, snapshot.size());
+        }
+    }
+
+    /**
+     * 변경 한 건
+     * //로그가 디스크에 내려간 뒤에 apply(메모리 반영)를 실행한다, 로그 쓰기에 실패하면 반영하지 않고 예외
+     * //여러 요청의 로그는 그룹 커밋으로 fsync 한 번에 같이 내려간다
+     */
+    public void write(T entity, Runnable apply) {
+        byte[] data = encode(entity);
+        lock.readLock().lock();
+        try {
+            wal.append(data);
+            apply.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 여러 건을 한 번에
+     * //로그는 fsync 한 번에 같이 내려가고, 모두 내려간 다음 apply를 한 번 실행한다
+     */
+    public void writeAll(Collection<T> entities, Runnable apply) {
+        List<byte[]> records = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            records.add(encode(entity));
+        }
+        lock.readLock().lock();
+        try {
+            wal.appendAll(records);
+            apply.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 스냅샷
+     * //넘기기 전 구간의 변경은 모두 메모리에 반영되어 있으므로 지금 상태를 쓰면 앞 구간은 필요 없다
+     * //쓰는 동안 들어온 변경이 스냅샷에 섞여 들어가도 새 구간에 같은 내용이 있어서 복구 결과는 같다
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            long segment;
+            lock.writeLock().lock();
+            try {
+                segment = wal.rotate();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            //메모리에 다 옮기기 전이면 지금 상태가 전체가 아니다
+            loadRemaining();
+            Collection<T> entities = new ArrayList<>(source.get());
+            MappedSnapshot.write(dir.resolve(SNAPSHOT_FILE), segment, entities, codec);
+            wal.deleteBefore(segment);
+            log.info("storage snapshot: table={}, entities={}, segment={}", name, entities.size(), segment);
+        }
+    }
+
+    //닫기 전에 스냅샷을 한 번 더 떠서 다음 기동 때 다시 반영할 로그를 줄인다
+    @Override
+    public void close() {
+        if (wal == null) {
+            return;
+        }
+        snapshotter.shutdownNow();
+        snapshotQuietly();
+        wal.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            //스냅샷에 실패해도 로그는 남아 있으므로 다음 주기에 다시 시도
+            log.error("storage snapshot error: table={}", name, e);
+        }
+    }
+
+    private byte[] encode(T entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            codec.write(entity, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private T decode(byte[] data) {
+        try {
+            return codec.read(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package hello.login.domain.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 로그, 스냅샷에 엔티티를 쓰고 읽는 방법
+ * //자바 직렬화 대신 필드를 직접 쓴다, 클래스 구조가 바뀌어도 읽는 쪽을 고쳐서 옛 파일을 읽을 수 있게
+ */
+public interface EntityCodec<T> {
+
+    long idOf(T entity);
+
+    void write(T entity, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    //null 이 될 수 있는 필드용
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
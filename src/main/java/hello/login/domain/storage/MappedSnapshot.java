@@ -0,0 +1,190 @@
+package hello.login.domain.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 메모리 맵 스냅샷
+ * //기동할 때 파일을 매핑만 하고 엔티티는 만들지 않는다, 데이터가 많아도 기동 시간이 거의 같다
+ * //findById 처럼 하나만 필요하면 id 색인을 이분 탐색해서 그 레코드만 읽는다
+ *
+ * //파일 구조: [magic(int)][개수(int)][이후 구간 번호(long)][최대 id(long)][색인 위치(long)]
+ * //그 뒤로 레코드 [길이(int)][엔티티], 마지막에 id 순서 색인 [id(long)][레코드 위치(int)] * 개수
+ * //매핑은 2GB까지라서 파일도 그 안이어야 한다
+ */
+final class MappedSnapshot<T> {
+
+    private static final int MAGIC = 0x534e5032;
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final EntityCodec<T> codec;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long segment;
+    private final long maxId;
+    private final int indexOffset;
+
+    private MappedSnapshot(EntityCodec<T> codec, MappedByteBuffer buffer) {
+        this.codec = codec;
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+        this.segment = buffer.getLong(8);
+        this.maxId = buffer.getLong(16);
+        this.indexOffset = (int) buffer.getLong(24);
+    }
+
+    //파일이 없으면 null
+    static <T> MappedSnapshot<T> open(Path file, EntityCodec<T> codec) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        //매핑은 채널을 닫아도 남아 있다
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("스냅샷 파일이 너무 큽니다: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("스냅샷 파일이 아닙니다: " + file);
+            }
+            return new MappedSnapshot<>(codec, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("스냅샷을 읽을 수 없습니다: " + file, e);
+        }
+    }
+
+    /**
+     * 스냅샷 쓰기
+     * //id 순서로 정렬해서 쓰고 끝에 색인을 붙인다, 헤더는 마지막에 채운다
+     * //임시 파일에 다 쓰고 fsync 한 다음 이름을 바꾼다, 쓰다가 죽어도 이전 스냅샷은 그대로
+     */
+    static <T> void write(Path file, long segment, Collection<T> entities, EntityCodec<T> codec) {
+        List<T> sorted = new ArrayList<>(entities);
+        sorted.sort(Comparator.comparingLong(codec::idOf));
+        long[] ids = new long[sorted.size()];
+        int[] offsets = new int[sorted.size()];
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            long position = HEADER_SIZE;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream record = new DataOutputStream(bytes);
+            for (int i = 0; i < sorted.size(); i++) {
+                T entity = sorted.get(i);
+                bytes.reset();
+                codec.write(entity, record);
+
+                ids[i] = codec.idOf(entity);
+                offsets[i] = (int) position;
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+                position += 4 + bytes.size();
+                checkSize(position, file);
+            }
+
+            long indexOffset = position;
+            for (int i = 0; i < ids.length; i++) {
+                out.writeLong(ids[i]);
+                out.writeInt(offsets[i]);
+            }
+            checkSize(indexOffset + (long) ids.length * INDEX_ENTRY_SIZE, file);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(ids.length).putLong(segment)
+                    .putLong(ids.length == 0 ? 0 : ids[ids.length - 1]).putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("스냅샷을 쓸 수 없습니다: " + temp, e);
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("스냅샷을 바꿀 수 없습니다: " + file, e);
+        }
+    }
+
+    //id 색인 이분 탐색, 없으면 null
+    T get(long id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = buffer.getLong(indexOffset + mid * INDEX_ENTRY_SIZE);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return read(buffer.getInt(indexOffset + mid * INDEX_ENTRY_SIZE + 8));
+            }
+        }
+        return null;
+    }
+
+    //id 순서로 전부
+    void forEach(Consumer<T> consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.accept(read(buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 8)));
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    //이 구간부터 로그를 다시 반영하면 된다
+    long segment() {
+        return segment;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    //여러 스레드가 같이 읽으므로 버퍼 위치를 바꾸지 않게 복제본에서 읽는다
+    private T read(int offset) {
+        byte[] data = new byte[buffer.getInt(offset)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(data);
+        try {
+            return codec.read(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void checkSize(long size, Path file) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("스냅샷 파일이 너무 큽니다: " + file);
+        }
+    }
+}
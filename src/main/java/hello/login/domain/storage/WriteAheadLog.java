@@ -0,0 +1,372 @@
+package hello.login.domain.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 로그 선기록 (write-ahead log)
+ * //변경 내용을 먼저 파일 끝에 붙이고 디스크에 내려간(fsync) 다음에 append가 돌아온다
+ *
+ * //그룹 커밋: 파일에 쓰는 건 기록 스레드 하나뿐이다
+ * //요청 스레드는 큐에 넣고 기다리고, 기록 스레드가 쌓인 것을 한 번에 쓰고 fsync 한 번으로 모두 깨운다
+ * //fsync 하는 동안 들어온 요청이 다음 묶음이 되므로, 쓰기가 몰릴수록 fsync 한 번이 처리하는 건수가 늘어난다
+ *
+ * //파일은 구간(segment) 단위: wal-0000000001.log, wal-0000000002.log ...
+ * //스냅샷을 뜰 때 새 구간으로 넘기고(rotate), 스냅샷에 들어간 앞 구간은 지운다
+ * //레코드: [길이(int)][crc32(int)][내용], 끝에 반쯤 쓰다 만 레코드는 crc로 걸러서 버린다
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_BATCH = 1024;
+
+    //닫기 요청, 이 앞까지만 쓰고 기록 스레드를 끝낸다
+    private static final Entry CLOSE = new Entry(null);
+
+    private final Path dir;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    //열 때 새로 만든 구간, 이 앞 구간들이 복구 대상
+    private final long firstSegment;
+    private final Object closeLock = new Object();
+    private boolean closed;
+
+    //기록 스레드만 사용
+    private final List<Entry> batch = new ArrayList<>(MAX_BATCH);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private long segment;
+
+    /**
+     * 로그 열기
+     * //이전 구간에 이어 쓰지 않고 항상 새 구간부터 쓴다, 이전 구간 끝이 깨져 있어도 그 뒤에 새 기록이 묻히지 않게
+     */
+    public WriteAheadLog(Path dir, String name) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+            List<Long> segments = segments();
+            firstSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+            segment = firstSegment;
+            channel = openSegment(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("로그 파일을 열 수 없습니다: " + dir, e);
+        }
+
+        writerThread = new Thread(this::runWriter, "wal-writer-" + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 기록 한 건, 디스크에 내려갈 때까지 기다린다
+     * //쓰기에 실패하면 UncheckedIOException, 이 경우 변경을 반영하면 안 된다
+     * //실패한 묶음은 파일에서 잘라내지만, 잘라내기까지 실패하면(디스크 오류) 재시작할 때 반영될 수 있다
+     */
+    public void append(byte[] data) {
+        await(submit(new Entry(data)));
+    }
+
+    /**
+     * 여러 건을 한 번에, 모두 디스크에 내려갈 때까지 기다린다
+     * //한꺼번에 큐에 넣으므로 보통 같은 묶음(fsync 한 번)으로 쓰인다
+     * //MAX_BATCH 를 넘으면 여러 묶음으로 나뉘고, 중간에 실패하면 앞 묶음은 이미 로그에 남아 복구 때 반영된다
+     */
+    public void appendAll(List<byte[]> records) {
+        List<Entry> entries = new ArrayList<>(records.size());
+        for (byte[] data : records) {
+            entries.add(new Entry(data));
+        }
+        synchronized (closeLock) {
+            if (closed) {
+                throw new IllegalStateException("로그가 닫혔습니다: " + dir);
+            }
+            queue.addAll(entries);
+        }
+        for (Entry entry : entries) {
+            await(entry.done);
+        }
+    }
+
+    /**
+     * 새 구간으로 넘긴다
+     * //그 전에 들어온 기록은 모두 앞 구간에 쓰이고, 이후 기록은 새 구간에 쓰인다
+     * @return 새 구간 번호
+     */
+    public long rotate() {
+        return await(submit(new Entry(null)));
+    }
+
+    /**
+     * fromSegment 구간부터 순서대로 읽기
+     * //열기 전에 남아 있던 구간만 읽는다 (복구용)
+     */
+    public void replay(long fromSegment, Consumer<byte[]> consumer) {
+        try {
+            for (long number : segments()) {
+                if (number >= fromSegment && number < firstSegment) {
+                    replaySegment(number, consumer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("로그 파일을 읽을 수 없습니다: " + dir, e);
+        }
+    }
+
+    //스냅샷에 다 들어간 구간은 지운다
+    public void deleteBefore(long beforeSegment) {
+        try {
+            for (long number : segments()) {
+                if (number < beforeSegment) {
+                    Files.deleteIfExists(segmentFile(number));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("wal segment delete error: dir={}", dir, e);
+        }
+    }
+
+    //남은 기록을 다 쓰고 닫는다
+    //기록 스레드를 interrupt 하면 쓰는 중이던 FileChannel이 닫혀버리므로 닫기 요청을 큐에 넣는다
+    @Override
+    public void close() {
+        synchronized (closeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //닫기 요청 뒤에 들어간 기록은 아무도 쓰지 않으므로 닫기와 넣기가 엇갈리지 않게 한다
+    private CompletableFuture<Long> submit(Entry entry) {
+        synchronized (closeLock) {
+            if (closed) {
+                throw new IllegalStateException("로그가 닫혔습니다: " + dir);
+            }
+            queue.add(entry);
+        }
+        return entry.done;
+    }
+
+    private static long await(CompletableFuture<Long> done) {
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void runWriter() {
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                running = writeBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        closeChannel();
+    }
+
+    //rotate 요청을 만나면 그 앞까지 쓰고 fsync 한 다음 구간을 넘긴다, 닫기 요청을 만나면 false
+    private boolean writeBatch() {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            if (entry.data != null) {
+                continue;
+            }
+            boolean written = flush(from, i);
+            if (entry == CLOSE) {
+                return false;
+            }
+            if (written) {
+                rotateSegment(entry);
+            } else {
+                entry.done.completeExceptionally(new UncheckedIOException(new IOException("로그 구간을 넘길 수 없습니다: " + dir)));
+            }
+            from = i + 1;
+        }
+        flush(from, batch.size());
+        return true;
+    }
+
+    private boolean flush(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        long batchStart = -1;
+        try {
+            batchStart = channel.size();
+            writeBuffer.clear();
+            for (int i = from; i < to; i++) {
+                byte[] data = batch.get(i).data;
+                ensureBuffer(RECORD_HEADER_SIZE + data.length);
+                crc.reset();
+                crc.update(data);
+                writeBuffer.putInt(data.length).putInt((int) crc.getValue()).put(data);
+            }
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            //묶음 전체를 fsync 한 번으로
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("wal write error: dir={}", dir, e);
+            //실패를 알리기 전에 이 묶음을 잘라낸다, 다 쓰고 fsync 만 실패했어도 남아 있으면 재시작할 때 반영되므로
+            truncate(batchStart);
+            UncheckedIOException failure = new UncheckedIOException("로그를 쓸 수 없습니다: " + dir, e);
+            for (int i = from; i < to; i++) {
+                batch.get(i).done.completeExceptionally(failure);
+            }
+            //반쯤 쓴 레코드 뒤에 이어 쓰면 복구할 때 그 뒤가 모두 버려지므로 새 구간으로 넘긴다
+            switchSegment();
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            batch.get(i).done.complete(segment);
+        }
+        return true;
+    }
+
+    private void truncate(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.force(true);
+        } catch (IOException e) {
+            log.error("wal truncate error, failed batch may be replayed: dir={}, segment={}", dir, segment, e);
+        }
+    }
+
+    private void rotateSegment(Entry entry) {
+        if (switchSegment()) {
+            entry.done.complete(segment);
+        } else {
+            entry.done.completeExceptionally(new UncheckedIOException(new IOException("로그 구간을 넘길 수 없습니다: " + dir)));
+        }
+    }
+
+    private boolean switchSegment() {
+        closeChannel();
+        try {
+            segment++;
+            channel = openSegment(segment);
+            return true;
+        } catch (IOException e) {
+            log.error("wal segment open error: dir={}, segment={}", dir, segment, e);
+            return false;
+        }
+    }
+
+    private void ensureBuffer(int length) {
+        if (writeBuffer.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + length));
+            writeBuffer.flip();
+            larger.put(writeBuffer);
+            writeBuffer = larger;
+        }
+    }
+
+    //crc가 맞지 않거나 길이가 모자라는 레코드에서 멈춘다, 그 뒤는 fsync가 끝나지 않은(응답하지 않은) 기록
+    private void replaySegment(long number, Consumer<byte[]> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentFile(number)));
+        CRC32 check = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                log.warn("wal torn record ignored: segment={}, position={}", number, buffer.position() - RECORD_HEADER_SIZE);
+                return;
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            check.reset();
+            check.update(data);
+            if ((int) check.getValue() != checksum) {
+                log.warn("wal corrupt record ignored: segment={}, position={}", number, buffer.position() - length - RECORD_HEADER_SIZE);
+                return;
+            }
+            consumer.accept(data);
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentFile(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentFile(long number) {
+        return dir.resolve(String.format("%s%010d%s", PREFIX, number, SUFFIX));
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("wal close error: dir={}", dir, e);
+        }
+    }
+
+    //data가 null이면 구간 넘기기 또는 닫기 요청
+    private static final class Entry {
+
+        private final byte[] data;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        private Entry(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package hello.login.web;
 
+import hello.login.domain.member.LoginMember;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
 import hello.login.web.argumentresolver.Login;
@@ -87,7 +88,7 @@ public class HomeController {
         }
 
         //세션에 맞는 Member객체 가져옴
-        Member loginMember = (Member)session.getAttribute(SessionConst.LOGIN_MEMBER);
+        LoginMember loginMember = (LoginMember)session.getAttribute(SessionConst.LOGIN_MEMBER);
 
         //세션에 회원 데이터가 없으면 home
         if (loginMember == null) {
@@ -116,7 +117,7 @@ public class HomeController {
             //HttpServletRequest 객체를 써서etSession 할 필요 없이 @SessionAttribute로
             //세션 어트리뷰트 있는지 체크하는 로직이 다 들어있음
             //세션을 한 번에 꺼내는, 세션에 맞는 Member객체 loginMember에 넣음
-            @SessionAttribute(name = SessionConst.LOGIN_MEMBER, required = false) Member loginMember, Model model) {
+            @SessionAttribute(name = SessionConst.LOGIN_MEMBER, required = false) LoginMember loginMember, Model model) {
 
         //세션에 회원 데이터가 없으면 home
         if (loginMember == null) {
@@ -138,7 +139,7 @@ public class HomeController {
     //이렇게 ArgumentResolver 를 활용하면 공통 작업이 필요할 때 컨트롤러를 더욱 편리하게 사용할 수 있다
     //실행하면 HomeController에서 /home으로
     @GetMapping("/")
-    public String homeLoginV3ArgumentResolver(@Login Member loginMember, Model model) {
+    public String homeLoginV3ArgumentResolver(@Login LoginMember loginMember, Model model) {
 
         //세션에 회원 데이터가 없으면 home
         if (loginMember == null) {
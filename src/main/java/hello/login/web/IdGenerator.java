@@ -0,0 +1,129 @@
+package hello.login.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 식별자 생성기
+ * //UUID.randomUUID()는 모든 스레드가 SecureRandom 하나를 같이 쓰므로 요청이 많으면 서로 기다린다
+ * //필요한 강도에 따라 두 가지로 나눔
+ * //세션 id: 추정 불가능해야 하므로 스레드마다 SecureRandom을 두고 난수를 미리 뽑아서 버퍼로 사용
+ * //요청 id: 로그에서 같은 요청을 묶는 용도라 추정 가능해도 된다, 노드 id + 증가하는 숫자
+ */
+@Component
+public class IdGenerator {
+
+    //세션 id 난수 128비트
+    private static final int SESSION_ID_BYTES = 16;
+    //SecureRandom을 한 번 호출할 때 세션 id 32개분을 미리 뽑아둔다
+    private static final int RANDOM_BUFFER_SIZE = SESSION_ID_BYTES * 32;
+
+    //쿠키 값에 그대로 쓸 수 있는 URL-safe Base64 문자
+    private static final char[] BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final int SESSION_ID_LENGTH = (SESSION_ID_BYTES * 8 + 5) / 6;
+
+    private static final ThreadLocal<RandomBuffer> randomBuffers = ThreadLocal.withInitial(RandomBuffer::new);
+
+    private final String requestIdPrefix;
+    private final AtomicLong requestSequence = new AtomicLong();
+
+    public IdGenerator() {
+        this("");
+    }
+
+    //id.node가 없으면 띄울 때마다 임의의 노드 id
+    @Autowired
+    public IdGenerator(@Value("${id.node:}") String node) {
+        if (node.isEmpty()) {
+            node = Integer.toHexString(ThreadLocalRandom.current().nextInt(0x10000) | 0x10000).substring(1);
+        }
+        this.requestIdPrefix = node + "-";
+    }
+
+    /**
+     * 세션 id
+     * //128비트 난수를 Base64(URL-safe, 패딩 없음)로, 22자
+     */
+    public String newSessionId() {
+        return randomBuffers.get().nextId();
+    }
+
+    /**
+     * 세션 id 형식인지
+     * //newSessionId 가 만들 수 있는 값만 true, 쿠키 값으로 다른 노드에 묻기 전에 거른다
+     */
+    public static boolean isSessionId(String value) {
+        if (value == null || value.length() != SESSION_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < SESSION_ID_LENGTH; i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 요청 id
+     * //노드 id-16진수 순번, 예) 3fa2-1b
+     */
+    public String newRequestId() {
+        return requestIdPrefix + Long.toHexString(requestSequence.incrementAndGet());
+    }
+
+    //스레드마다 하나씩, 다른 스레드와 공유하지 않으므로 락이 없다
+    private static final class RandomBuffer {
+
+        private final SecureRandom random = createSecureRandom();
+        private final byte[] buffer = new byte[RANDOM_BUFFER_SIZE];
+        private final char[] chars = new char[SESSION_ID_LENGTH];
+        private int position = RANDOM_BUFFER_SIZE;
+
+        private String nextId() {
+            if (position == RANDOM_BUFFER_SIZE) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+
+            //6비트씩 잘라서 문자로
+            int bits = 0;
+            int bitCount = 0;
+            int charIndex = 0;
+            for (int i = 0; i < SESSION_ID_BYTES; i++) {
+                bits = (bits << 8) | (buffer[position + i] & 0xff);
+                bitCount += 8;
+                while (bitCount >= 6) {
+                    bitCount -= 6;
+                    chars[charIndex++] = BASE64_URL[(bits >>> bitCount) & 0x3f];
+                }
+            }
+            if (bitCount > 0) {
+                chars[charIndex++] = BASE64_URL[(bits << (6 - bitCount)) & 0x3f];
+            }
+
+            //쓴 난수는 지워서 나중에 메모리에서 읽히지 않게
+            for (int i = 0; i < SESSION_ID_BYTES; i++) {
+                buffer[position + i] = 0;
+            }
+            position += SESSION_ID_BYTES;
+            return new String(chars, 0, charIndex);
+        }
+
+        //DRBG는 인스턴스마다 상태를 따로 가진다, 기본 SecureRandom(NativePRNG)은 전역 락을 잡는다
+        private static SecureRandom createSecureRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package hello.login.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 로그인 체크를 하지 않는 경로(화이트 리스트)
+ * //LoginCheckFilter, LoginCheckInterceptor가 같이 쓴다, login.public-paths 로 설정
+ * //요청마다 패턴을 하나씩 비교하지 않도록 띄울 때 한 번 정리해둔다
+ * //정확히 같은 경로는 Set, 와일드카드는 앞부분(마지막 / 까지)을 트라이로 만들어 경로 길이만큼만 본다
+ *
+ * //지원하는 패턴
+ * //  /login       정확히 같은 경로
+ * //  /css/**      /css 와 그 아래 모든 경로
+ * //  /css/*       /css/ 바로 아래 한 단계
+ * //  /*.ico       / 바로 아래 .ico로 끝나는 경로
+ *
+ * //요청은 getRequestURI 가 아니라 스프링이 컨트롤러를 찾을 때 쓰는 경로로 비교한다 (matches(HttpServletRequest))
+ * //getRequestURI 는 ;파라미터, 인코딩, 컨텍스트 경로가 그대로라 /items;.ico 가 /*.ico 로 통과하고 스프링은 /items 로 보낸다
+ */
+@Component
+public class PublicPaths {
+
+    public static final String DEFAULT_PATTERNS = "/,/members/add,/login,/logout,/css/**,/*.ico,/error";
+
+    private final Set<String> exactPaths = new HashSet<>();
+    private final Node root = new Node();
+
+    public PublicPaths() {
+        this(DEFAULT_PATTERNS.split(","));
+    }
+
+    @Autowired
+    public PublicPaths(@Value("${login.public-paths:" + DEFAULT_PATTERNS + "}") String[] patterns) {
+        for (String pattern : patterns) {
+            add(pattern.trim());
+        }
+    }
+
+    /**
+     * 로그인 없이 접근할 수 있는 요청인지
+     * //인터셉터에서는 핸들러 매핑이 찾아둔 경로 그대로, 필터처럼 그 전이면 같은 방식(UrlPathHelper)으로 만든 경로
+     * //둘 다 컨텍스트 경로를 빼고 디코딩하고 ;파라미터를 지운 경로
+     */
+    public boolean matches(HttpServletRequest request) {
+        String path = ServletRequestPathUtils.hasCachedPath(request)
+                ? ServletRequestPathUtils.getCachedPathValue(request)
+                : UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+        return matches(path);
+    }
+
+    /**
+     * 로그인 없이 접근할 수 있는 경로인지
+     * //;파라미터나 . .. 단계가 남아있는 경로는 정리되지 않은 경로라 화이트 리스트로 보지 않는다
+     */
+    public boolean matches(String path) {
+        if (!isNormalized(path)) {
+            return false;
+        }
+        if (exactPaths.contains(path)) {
+            return true;
+        }
+
+        //마지막 / 뒤가 한 단계(세그먼트)
+        int lastSlash = path.lastIndexOf('/');
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.children.get(path.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            //i번째 글자(/)까지 일치, 나머지는 path[i + 1..]
+            if (node.anyDepth) {
+                return true;
+            }
+            if (lastSlash == i && node.matchesSegment(path, i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNormalized(String path) {
+        if (path.indexOf(';') >= 0 || path.indexOf('\\') >= 0) {
+            return false;
+        }
+        //단계마다 . 이나 .. 인지
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            int length = end - start;
+            boolean dot = length >= 1 && length <= 2 && path.charAt(start) == '.';
+            if (dot && (length == 1 || path.charAt(start + 1) == '.')) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    private void add(String pattern) {
+        if (pattern.isEmpty()) {
+            return;
+        }
+        int star = pattern.indexOf('*');
+        if (star < 0) {
+            exactPaths.add(pattern);
+            return;
+        }
+
+        //와일드카드는 마지막 단계에만
+        int lastSlash = pattern.lastIndexOf('/');
+        if (lastSlash < 0 || star <= lastSlash) {
+            throw new IllegalArgumentException("지원하지 않는 경로 패턴입니다: " + pattern);
+        }
+        String prefix = pattern.substring(0, lastSlash + 1);
+        String segment = pattern.substring(lastSlash + 1);
+        Node node = nodeFor(prefix);
+
+        if (segment.equals("**")) {
+            node.anyDepth = true;
+            //스프링 패턴처럼 /css/** 는 /css 도 포함
+            if (lastSlash > 0) {
+                exactPaths.add(pattern.substring(0, lastSlash));
+            }
+        } else if (segment.equals("*")) {
+            node.anySegment = true;
+        } else if (segment.indexOf('*') == 0 && segment.indexOf('*', 1) < 0) {
+            node.segmentSuffixes.add(segment.substring(1));
+        } else {
+            throw new IllegalArgumentException("지원하지 않는 경로 패턴입니다: " + pattern);
+        }
+    }
+
+    private Node nodeFor(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        return node;
+    }
+
+    private static final class Node {
+
+        //ASCII 문자는 Character 캐시를 쓰므로 조회할 때 박싱 객체가 생기지 않는다
+        private final Map<Character, Node> children = new HashMap<>();
+        private boolean anyDepth;
+        private boolean anySegment;
+        private final List<String> segmentSuffixes = new ArrayList<>();
+
+        //path[start..]가 한 단계짜리일 때
+        private boolean matchesSegment(String path, int start) {
+            if (anySegment && start < path.length()) {
+                return true;
+            }
+            for (String suffix : segmentSuffixes) {
+                if (path.length() - start >= suffix.length() && path.endsWith(suffix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package hello.login.web.accesslog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 접근 로그
+ * //요청 스레드는 기록 한 건을 링 버퍼에 넣기만 하고 바로 돌아간다
+ * //기록 스레드가 모아서 한 번에 파일에 쓴다, 파일이 커지면 access.log.1, access.log.2 ... 로 넘긴다
+ * //샘플링: sample-rate 비율만 기록, 오류 응답은 항상 기록
+ * //버퍼가 꽉 차면 overflow 정책에 따라 버리거나(drop) 요청 스레드에서 바로 로그로 남긴다(log)
+ */
+@Slf4j
+@Component
+public class AccessLog {
+
+    public enum OverflowPolicy {
+        DROP, LOG
+    }
+
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxHistory;
+    private final double sampleRate;
+    private final OverflowPolicy overflowPolicy;
+    private final AccessLogRingBuffer buffer;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    //기록 스레드만 사용
+    private final List<AccessLogRecord> batch = new ArrayList<>(BATCH_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+    private Writer writer;
+    private long fileSize;
+
+    @Autowired
+    public AccessLog(@Value("${access-log.file:logs/access.log}") String file,
+                     @Value("${access-log.max-file-size-mb:100}") long maxFileSizeMb,
+                     @Value("${access-log.max-history:10}") int maxHistory,
+                     @Value("${access-log.buffer-size:8192}") int bufferSize,
+                     @Value("${access-log.sample-rate:1.0}") double sampleRate,
+                     @Value("${access-log.overflow:drop}") String overflowPolicy) {
+        this(Path.of(file), maxFileSizeMb * 1024 * 1024, maxHistory, bufferSize, sampleRate,
+                OverflowPolicy.valueOf(overflowPolicy.toUpperCase()));
+    }
+
+    AccessLog(Path file, long maxFileSize, int maxHistory, int bufferSize, double sampleRate, OverflowPolicy overflowPolicy) {
+        if (maxHistory < 1) {
+            throw new IllegalArgumentException("maxHistory must be positive: " + maxHistory);
+        }
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxHistory = maxHistory;
+        this.sampleRate = sampleRate;
+        this.overflowPolicy = overflowPolicy;
+        this.buffer = new AccessLogRingBuffer(bufferSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runWriter, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    //남은 기록을 다 쓰고 종료
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * 요청 기록
+     * //startNanos는 요청 시작 시 System.nanoTime()
+     */
+    public void record(String logId, String method, String requestURI, int status,
+                       long startNanos, Object handler, boolean error) {
+        boolean failed = error || status >= 500;
+        if (!failed && sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        AccessLogRecord record = new AccessLogRecord(System.currentTimeMillis(), logId, method, requestURI,
+                status, elapsedMicros, handler, failed);
+        if (buffer.offer(record)) {
+            return;
+        }
+
+        droppedCount.increment();
+        if (overflowPolicy == OverflowPolicy.LOG) {
+            log.info("RESPONSE [{}][{}][{}][{}us]", logId, requestURI, status, elapsedMicros);
+        }
+    }
+
+    //버퍼가 꽉 차서 파일에 못 쓴 기록 수
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    private void runWriter() {
+        while (running || buffer.size() > 0) {
+            try {
+                if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                    flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                writeBatch();
+            } catch (IOException | RuntimeException e) {
+                //파일 문제로 기록 스레드가 죽지 않게, 이번 묶음은 버린다
+                log.error("access log write error", e);
+                droppedCount.add(batch.size());
+                closeQuietly();
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            log.error("access log flush error", e);
+        }
+        closeQuietly();
+    }
+
+    private void writeBatch() throws IOException {
+        if (writer == null) {
+            open();
+        }
+        for (AccessLogRecord record : batch) {
+            format(record);
+            writer.append(line);
+            fileSize += line.length();
+        }
+        writtenCount.add(batch.size());
+
+        if (fileSize >= maxFileSize) {
+            roll();
+        }
+    }
+
+    //2026-10-17T01:02:03.456Z 3fa2-1b GET /items 200 1234us ItemController#items
+    private void format(AccessLogRecord record) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(record.timestamp)).append(' ')
+                .append(record.logId).append(' ')
+                .append(record.method).append(' ')
+                .append(record.requestURI).append(' ')
+                .append(record.status).append(' ')
+                .append(record.elapsedMicros).append("us ");
+        appendHandler(record.handler);
+        if (record.error) {
+            line.append(" ERROR");
+        }
+        line.append('\n');
+    }
+
+    private void appendHandler(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            line.append(handlerMethod.getBeanType().getSimpleName()).append('#').append(handlerMethod.getMethod().getName());
+        } else if (handler != null) {
+            line.append(handler.getClass().getSimpleName());
+        } else {
+            line.append('-');
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+
+    private void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    //access.log -> access.log.1 -> access.log.2 ..., maxHistory 넘는 건 지운다
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+
+        Files.deleteIfExists(rolledFile(maxHistory));
+        for (int i = maxHistory - 1; i >= 1; i--) {
+            Path rolled = rolledFile(i);
+            if (Files.exists(rolled)) {
+                Files.move(rolled, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolledFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeQuietly() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("access log close error", e);
+        }
+        writer = null;
+    }
+}
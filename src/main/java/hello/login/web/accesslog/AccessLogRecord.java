@@ -0,0 +1,30 @@
+package hello.login.web.accesslog;
+
+/**
+ * 요청 하나의 접근 로그
+ * //요청 스레드에서는 값만 담고, 문자열로 만드는 건 기록 스레드가 한다
+ */
+final class AccessLogRecord {
+
+    final long timestamp;
+    final String logId;
+    final String method;
+    final String requestURI;
+    final int status;
+    final long elapsedMicros;
+    //HandlerMethod 등, 기록할 때 짧은 이름으로 바꾼다
+    final Object handler;
+    final boolean error;
+
+    AccessLogRecord(long timestamp, String logId, String method, String requestURI,
+                    int status, long elapsedMicros, Object handler, boolean error) {
+        this.timestamp = timestamp;
+        this.logId = logId;
+        this.method = method;
+        this.requestURI = requestURI;
+        this.status = status;
+        this.elapsedMicros = elapsedMicros;
+        this.handler = handler;
+        this.error = error;
+    }
+}
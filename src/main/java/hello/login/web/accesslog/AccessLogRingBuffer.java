@@ -0,0 +1,67 @@
+package hello.login.web.accesslog;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 여러 요청 스레드가 넣고 기록 스레드 하나가 꺼내는 링 버퍼, 락 없이 CAS로만 자리를 잡는다
+ * //꽉 차면 offer가 false를 반환하고, 어떻게 할지는 호출하는 쪽이 정한다
+ */
+final class AccessLogRingBuffer {
+
+    private final AtomicReferenceArray<AccessLogRecord> slots;
+    private final int capacity;
+    private final int mask;
+
+    //다음에 넣을 위치 (여러 스레드)
+    private final AtomicLong tail = new AtomicLong();
+    //다음에 꺼낼 위치 (기록 스레드만 쓴다)
+    private volatile long head;
+
+    AccessLogRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    boolean offer(AccessLogRecord record) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        //자리를 잡은 뒤에 채운다, 기록 스레드는 채워진 칸까지만 꺼낸다
+        slots.set((int) (position & mask), record);
+        return true;
+    }
+
+    //최대 maxRecords개를 batch에 옮기고 옮긴 개수 반환
+    int drainTo(List<AccessLogRecord> batch, int maxRecords) {
+        long position = head;
+        int count = 0;
+        while (count < maxRecords) {
+            int index = (int) (position & mask);
+            AccessLogRecord record = slots.get(index);
+            if (record == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            batch.add(record);
+            position++;
+            count++;
+        }
+        head = position;
+        return count;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+}
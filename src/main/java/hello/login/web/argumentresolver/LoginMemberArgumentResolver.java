@@ -1,8 +1,9 @@
 package hello.login.web.argumentresolver;
 
+import hello.login.domain.member.LoginMember;
 import hello.login.domain.member.Member;
 import hello.login.web.SessionConst;
-import lombok.extern.slf4j.Slf4j;
+import hello.login.web.token.LoginTokenService;
 import org.springframework.core.MethodParameter;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
@@ -11,40 +12,66 @@ import org.springframework.web.method.support.ModelAndViewContainer;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 //ArgumentResolver
 //등록은 WebConfig에
-
-@Slf4j
+//요청마다 불리므로 로그는 남기지 않는다 (INFO 로그 두 줄이 GET / 처리 시간의 상당 부분이었다)
 public class LoginMemberArgumentResolver implements HandlerMethodArgumentResolver {
 
+    //파라미터별 판단 결과, 애노테이션, 타입 확인(리플렉션)은 파라미터마다 한 번만
+    private final Map<MethodParameter, Boolean> supported = new ConcurrentHashMap<>();
+    //login.token.enabled 면 세션 대신 토큰에서, null 이면 세션만
+    private final LoginTokenService loginTokenService;
+
+    public LoginMemberArgumentResolver() {
+        this(null);
+    }
+
+    public LoginMemberArgumentResolver(LoginTokenService loginTokenService) {
+        this.loginTokenService = loginTokenService;
+    }
+
     //이것들이 파라미터를 지원하는가
-    //supportsParameter() : @Login 애노테이션이 있으면서 Member 타입이면 해당 ArgumentResolver가 사용된다.
+    //supportsParameter() : @Login 애노테이션이 있으면서 LoginMember 타입이면 해당 ArgumentResolver가 사용된다.
+    //LoginMember 전에 쓰던 @Login Member 파라미터도 계속 받는다
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
-        log.info("supportsParameter 실행");
-
-        //이 파라미터에 Login애노테이션이 있는지 물어봄
-        boolean hasLoginAnnotation = parameter.hasParameterAnnotation(Login.class);
-        //parameter.getParameterType()는 Member클래스이냐
-        boolean hasMemberType = Member.class.isAssignableFrom(parameter.getParameterType());
+        Boolean result = supported.get(parameter);
+        if (result == null) {
+            result = supported.computeIfAbsent(parameter, LoginMemberArgumentResolver::isLoginMemberParameter);
+        }
+        return result;
+    }
 
-        //메서드 파라미터에 @Login 이 있는가, @Login 뒤에 Member 객체가 있느냐
-        //둘 다 만족하는지, 만족하면 resolveArgument 실행
-        return hasLoginAnnotation && hasMemberType;
+    //메서드 파라미터에 @Login 이 있는가, @Login 뒤에 LoginMember 객체가 있느냐
+    //둘 다 만족하는지, 만족하면 resolveArgument 실행
+    private static boolean isLoginMemberParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(Login.class)
+                && (LoginMember.class.isAssignableFrom(parameter.getParameterType())
+                || parameter.getParameterType() == Member.class);
     }
 
     //ArgumentResolver가 실행되었을때 어떤 값을 넣어줄것인가
     //resolveArgument() : 컨트롤러 호출 직전에 호출 되어서 필요한 파라미터 정보를 생성해준다.
-    //여기서는 세션에 있는 로그인 회원 정보인 member 객체를 찾아서 반환해준다.
-    //이후 스프링MVC는 컨트롤러의 메서드를 호출하면서 여기에서 반환된 member 객체를 파라미터에 전달해준다.
+    //여기서는 세션에 있는 로그인 회원 정보인 LoginMember 객체를 찾아서 반환해준다. 불변 객체라 컨트롤러에서 고칠 수 없다
+    //이후 스프링MVC는 컨트롤러의 메서드를 호출하면서 여기에서 반환된 객체를 파라미터에 전달해준다.
     @Override
     public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+        LoginMember loginMember = findLoginMember((HttpServletRequest) webRequest.getNativeRequest());
+        if (loginMember != null && parameter.getParameterType() == Member.class) {
+            return toMember(loginMember);
+        }
+        return loginMember;
+    }
 
-        log.info("resolveArgument 실행");
+    private LoginMember findLoginMember(HttpServletRequest request) {
 
-        //HttpServletRequest가 필요하기 때문에 형변환
-        HttpServletRequest request = (HttpServletRequest) webRequest.getNativeRequest();
+        //토큰 모드, 인터셉터에서 이미 확인했으면 요청 속성에 있는 것을 그대로
+        if (loginTokenService != null && loginTokenService.isEnabled()) {
+            return loginTokenService.authenticate(request);
+        }
 
         //true하면 기존에 세션이 없으면 세션이 만들어짐, 의미 없는 세션이 만들어지지 않도록 false
         HttpSession session = request.getSession(false);
@@ -53,9 +80,22 @@ public class LoginMemberArgumentResolver implements HandlerMethodArgumentResolve
             return null;
         }
 
-        //세션 꺼냄, Member객체
-        //세션이 있으면 Member객체 반환,
-        //반환된 멤버 HomeController omeLoginV3ArgumentResolver loginMember에 넘어감
-        return session.getAttribute(SessionConst.LOGIN_MEMBER);
+        //세션 꺼냄, LoginMember객체
+        //LoginMember 를 넣기 전에 만들어진 세션에는 Member 가 들어 있을 수 있다, 그때는 복사해서 넘긴다
+        Object loginMember = session.getAttribute(SessionConst.LOGIN_MEMBER);
+        if (loginMember instanceof Member) {
+            return LoginMember.of((Member) loginMember);
+        }
+        return loginMember instanceof LoginMember ? (LoginMember) loginMember : null;
+    }
+
+    //@Login Member 파라미터에는 요청마다 새 Member, 비밀번호는 세션에 없으므로 null
+    //컨트롤러에서 고쳐도 세션에 있는 값은 바뀌지 않는다
+    private static Member toMember(LoginMember loginMember) {
+        Member member = new Member();
+        member.setId(loginMember.getId());
+        member.setLoginId(loginMember.getLoginId());
+        member.setName(loginMember.getName());
+        return member;
     }
 }
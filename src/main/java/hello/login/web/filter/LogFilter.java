@@ -1,11 +1,14 @@
 package hello.login.web.filter;
 
+import hello.login.web.IdGenerator;
+import hello.login.web.accesslog.AccessLog;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.UUID;
 //필터는 서블릿이, 인터셉터는 스프링이 제공, 둘다 비슷
 //요구사항을 보면 로그인 한 사용자만 상품 관리 페이지에 들어갈 수 있어야 한다.
 //앞에서 로그인을 하지 않은 사용자에게는 상품 관리 버튼이 보이지 않기 때문에 문제가 없어 보인다.
@@ -44,8 +47,14 @@ import java.util.UUID;
 //doFilter(): 고객의 요청이 올 때 마다 해당 메서드가 호출된다. 필터의 로직을 구현하면 된다.
 //destroy(): 필터 종료 메서드, 서블릿 컨테이너가 종료될 때 호출된다.
 @Slf4j
+@RequiredArgsConstructor
 public class LogFilter implements Filter {
 
+    //요청 구분용 id, 추정 가능해도 되므로 가벼운 방식으로
+    private final IdGenerator idGenerator;
+    //요청 스레드에서 파일에 바로 쓰지 않고 기록 스레드에 넘긴다
+    private final AccessLog accessLog;
+
     //초기화
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
@@ -54,7 +63,6 @@ public class LogFilter implements Filter {
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        log.info("log filter doFilter");
 
         //ServletRequest request 는 HTTP 요청이 아닌 경우까지 고려해서 만든 인터페이스
         //HTTP를 사용하면다운캐스팅(형변환), ServletRequest는 기능이 별로 없기 때문에
@@ -64,11 +72,13 @@ public class LogFilter implements Filter {
         String requestURI = httpRequest.getRequestURI();
 
         //요청온걸 구분하기 위해서
-        String uuid = UUID.randomUUID().toString();
+        String uuid = idGenerator.newRequestId();
+        long startNanos = System.nanoTime();
+        boolean error = false;
 
         try {
-            //모든 요청을 로그로 남기기
-            log.info("REQUEST [{}][{}]", uuid, requestURI);
+            //모든 요청을 로그로 남기기, 요청 스레드가 로그를 기다리지 않도록 DEBUG로
+            log.debug("REQUEST [{}][{}]", uuid, requestURI);
 
             //이 부분이 가장 중요하다. 다음 필터가 있으면 필터를 호출하고, 필터가 없으면 서블릿, 컨트롤러를 호출한다
             //1순위인 LogFilter log.info("REQUEST [{}][{}]", uuid, requestURI) 호출되고
@@ -80,11 +90,13 @@ public class LogFilter implements Filter {
             chain.doFilter(request, response);
 
         } catch (Exception e) {
+            error = true;
             throw e;
 
         } finally {
-            //다 끝나고 응답 로그
-            log.info("RESPONSE [{}][{}]", uuid, requestURI);
+            //다 끝나고 응답 로그, 링 버퍼에 넣기만 하고 기록 스레드가 모아서 파일에 쓴다
+            int status = ((HttpServletResponse) response).getStatus();
+            accessLog.record(uuid, httpRequest.getMethod(), requestURI, status, startNanos, null, error);
         }
 
     }
@@ -1,8 +1,10 @@
 package hello.login.web.filter;
 
+import hello.login.web.PublicPaths;
 import hello.login.web.SessionConst;
+import hello.login.web.token.LoginTokenService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.PatternMatchUtils;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -13,12 +15,20 @@ import java.io.IOException;
 //인증 체크 필터
 //로그인 되지 않은 사용자는 상품 관리 뿐만 아니라 미래에 개발될 페이지에도 접근하지 못하도록
 @Slf4j
+@RequiredArgsConstructor
 public class LoginCheckFilter implements Filter {
 
     //체크 안하는 url리스트
     //인증 필터를 적용해도 홈, 회원가입, 로그인 화면, css 같은 리소스에는 접근할 수 있어야 한다. 이렇게
     //화이트 리스트 경로는 인증과 무관하게 항상 허용한다. 화이트 리스트를 제외한 나머지 모든 경로에는 인증 체크 로직을 적용
-    private static final String[] whitelist = {"/", "/members/add", "/login", "/logout", "/css/*"};
+    //화이트 리스트는 LoginCheckInterceptor와 같이 쓰도록 PublicPaths에서 관리 (login.public-paths)
+    private final PublicPaths publicPaths;
+    //login.token.enabled 면 세션 대신 서명한 토큰으로 확인, null 이면 세션만
+    private final LoginTokenService loginTokenService;
+
+    public LoginCheckFilter(PublicPaths publicPaths) {
+        this(publicPaths, null);
+    }
 
     //doFilter만 구현
     @Override
@@ -35,16 +45,12 @@ public class LoginCheckFilter implements Filter {
             log.info("인증 체크 필터 시작 {}", requestURI);
 
 
-            if (isLoginCheckPath(requestURI)) {
+            if (isLoginCheckPath(httpRequest)) {
 
                 //whitelist가 아니면 인증체크 로직 실행
                 log.info("인증 체크 로직 실행 {}", requestURI);
 
-                //세션을 찾아, HttpSession에 데이터가 들어있는지 확인
-                HttpSession session = httpRequest.getSession(false);
-
-                //세션이 null이거나 로그인한 데이터가 없다면 로그인 안된 것으로 간주
-                if (session == null || session.getAttribute(SessionConst.LOGIN_MEMBER) == null) {
+                if (!isLoggedIn(httpRequest)) {
 
                     log.info("미인증 사용자 요청 {}", requestURI);
 
@@ -80,14 +86,29 @@ public class LoginCheckFilter implements Filter {
 
     }
 
+    private boolean isLoggedIn(HttpServletRequest httpRequest) {
+        //토큰 모드는 세션을 보지 않고 쿠키의 서명, 만료 시각만 확인
+        if (loginTokenService != null && loginTokenService.isEnabled()) {
+            return loginTokenService.authenticate(httpRequest) != null;
+        }
+
+        //세션을 찾아, HttpSession에 데이터가 들어있는지 확인
+        HttpSession session = httpRequest.getSession(false);
+
+        //세션이 null이거나 로그인한 데이터가 없다면 로그인 안된 것으로 간주
+        return session != null && session.getAttribute(SessionConst.LOGIN_MEMBER) != null;
+    }
+
     /**
      * 화이트 리스트의 경우 인증 체크X
      */
-    private boolean isLoginCheckPath(String requestURI) {
+    private boolean isLoginCheckPath(HttpServletRequest httpRequest) {
 
-        //미리 만들어둔 whitelist와 requestURI를 비교하여 매칭되는가
+        //미리 만들어둔 whitelist와 요청 경로를 비교하여 매칭되는가
         //매칭되지 않으면 체크대상
-        return !PatternMatchUtils.simpleMatch(whitelist, requestURI);
+        //요청마다 패턴을 하나씩 비교하지 않고, 띄울 때 정리해둔 PublicPaths로 경로 길이만큼만 본다
+        //requestURI 는 ;파라미터, 컨텍스트 경로가 그대로라 스프링이 보는 경로(컨텍스트 경로 뺀, ;파라미터 지운)로
+        return !publicPaths.matches(httpRequest);
     }
 }
 
@@ -1,13 +1,17 @@
 package hello.login.web.interceptor;
 
+import hello.login.web.IdGenerator;
+import hello.login.web.accesslog.AccessLog;
+import hello.login.web.metrics.HandlerMetrics;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.UUID;
 
 
 //스프링 인터셉터도 서블릿 필터와 같이 웹과 관련된 공통 관심 사항을 효과적으로 해결할 수 있는 기술이다.
@@ -62,9 +66,18 @@ import java.util.UUID;
 //서블릿 필터로 했던걸 스프링 인터셉터로 다시 만드는 클래스
 //사용하려면 이것도 WebConfig에 등록
 @Slf4j
+@RequiredArgsConstructor
 public class LogInterceptor implements HandlerInterceptor {
 
     public static final String LOG_ID = "logId";
+    public static final String START_NANOS = "logStartNanos";
+
+    //요청 로그 구분용 id, 추정 가능해도 되므로 가벼운 방식으로
+    private final IdGenerator idGenerator;
+    //요청 스레드에서 파일에 바로 쓰지 않고 기록 스레드에 넘긴다
+    private final AccessLog accessLog;
+    //컨트롤러 메서드별 응답 시간
+    private final HandlerMetrics handlerMetrics;
 
     //컨트롤러 호출 전, 인터셉터에 예외가 발생해도 호출
     //더 정확히는 핸들러 어댑터 호출 전에 호출된다.
@@ -77,7 +90,7 @@ public class LogInterceptor implements HandlerInterceptor {
         String requestURI = request.getRequestURI();
 
         //sessionid생성, 요청 로그를 구분하기 위한 uuid 를 생성
-        String uuid = UUID.randomUUID().toString();
+        String uuid = idGenerator.newRequestId();
 
         //로그 response할 때 postHandle에 넘겨야하므로 요청에 sessionid 담기
         //서블릿 필터의 경우 지역변수로 해결이 가능하지만, 스프링 인터셉터는 호출 시점이 완전히 분리되어 있다.
@@ -85,6 +98,8 @@ public class LogInterceptor implements HandlerInterceptor {
         //LogInterceptor도 싱글톤 처럼 사용되기 때문에 맴버변수를 사용하면 위험하다. 따라서 request 에 담아두었다.
         //이 값은 afterCompletion 에서 request.getAttribute(LOG_ID) 로 찾아서 사용
         request.setAttribute(LOG_ID, uuid);
+        //처리 시간 계산용
+        request.setAttribute(START_NANOS, System.nanoTime());
 
         //@RequestMapping: HandlerMethod
         //정적 리소스: ResourceHttpRequestHandler
@@ -102,7 +117,8 @@ public class LogInterceptor implements HandlerInterceptor {
         }
 
         //어떤 컨트롤러가 호출되는지 handler도 사용가능
-        log.info("REQUEST [{}][{}][{}]", uuid, requestURI, handler);
+        //요청마다 INFO로 남기면 요청 스레드가 로그 포맷, 파일 쓰기를 기다리므로 DEBUG로, 접근 로그는 afterCompletion에서
+        log.debug("REQUEST [{}][{}][{}]", uuid, requestURI, handler);
 
         //false면 끝나고 true면 파라미터로 들어온 컨트롤러 handler가 호출됨
         return true;
@@ -113,7 +129,8 @@ public class LogInterceptor implements HandlerInterceptor {
     //컨트롤러 호출 후에 호출된다. 더 정확히는 핸들러 어댑터 호출 후에 호출
     @Override
     public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
-        log.info("postHandle [{}]", modelAndView);
+        //DEBUG가 꺼져 있으면 modelAndView를 문자열로 만들지 않는다
+        log.debug("postHandle [{}]", modelAndView);
     }
 
     //postHandle, afterCompletion
@@ -134,7 +151,17 @@ public class LogInterceptor implements HandlerInterceptor {
         //sessionid 받기, HttpServletRequest는 갔다가 오는게 보장되므로
         String logId = (String) request.getAttribute(LOG_ID);
 
-        log.info("RESPONSE [{}][{}][{}]", logId, requestURI, handler);
+        //접근 로그는 링 버퍼에 넣기만 하고 기록 스레드가 모아서 파일에 쓴다
+        Long startNanos = (Long) request.getAttribute(START_NANOS);
+        long start = startNanos != null ? startNanos : System.nanoTime();
+        accessLog.record(logId, request.getMethod(), requestURI, response.getStatus(), start, handler, ex != null);
+
+        //컨트롤러 메서드별 응답 시간, 정적 리소스는 제외
+        if (handler instanceof HandlerMethod) {
+            String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            handlerMetrics.record((HandlerMethod) handler, request.getMethod(), pattern,
+                    System.nanoTime() - start, ex != null);
+        }
 
         //예외가 있다면
         if (ex != null) {
@@ -1,6 +1,9 @@
 package hello.login.web.interceptor;
 
+import hello.login.web.PublicPaths;
 import hello.login.web.SessionConst;
+import hello.login.web.token.LoginTokenService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.servlet.HandlerInterceptor;
 
@@ -15,23 +18,36 @@ import javax.servlet.http.HttpSession;
 //특별한 문제가 없다면 인터셉터를 사용하는 것이 좋다
 //따라서 preHandle 만 구현
 @Slf4j
+@RequiredArgsConstructor
 public class LoginCheckInterceptor implements HandlerInterceptor {
 
+    //whitelist는 LoginCheckFilter와 같이 쓰도록 PublicPaths에서 관리 (login.public-paths)
+    private final PublicPaths publicPaths;
+    //login.token.enabled 면 세션 대신 서명한 토큰으로 확인, null 이면 세션만
+    private final LoginTokenService loginTokenService;
+
+    public LoginCheckInterceptor(PublicPaths publicPaths) {
+        this(publicPaths, null);
+    }
+
     //로그인체크는 이거만 있으면 된다
     //whitelist 만들어 주지 않고 인터셉터 등록할때 다 할 수 있음
+    //등록할때 excludePathPatterns 로 나열하면 필터와 목록이 따로 놀게 되므로 PublicPaths로 판단
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
 
         //요청에서 사용자 uri가져오고
         String requestURI = request.getRequestURI();
 
-        log.info("인증 체크 인터셉터 실행 {}", requestURI);
+        //화이트 리스트면 체크하지 않음
+        //requestURI 가 아니라 스프링이 핸들러를 찾은 경로로, /items;.ico 같은 요청이 화이트 리스트로 통과하지 않게
+        if (publicPaths.matches(request)) {
+            return true;
+        }
 
-        //요청에서 세션 가져오고
-        HttpSession session = request.getSession();
+        log.info("인증 체크 인터셉터 실행 {}", requestURI);
 
-        //세션이 null이거나 로그인한 데이터가 없다면 로그인 안된 것으로 간주
-        if (session == null || session.getAttribute(SessionConst.LOGIN_MEMBER) == null) {
+        if (!isLoggedIn(request)) {
             log.info("미인증 사용자 요청");
 
             //로그인으로 redirect
@@ -54,4 +70,19 @@ public class LoginCheckInterceptor implements HandlerInterceptor {
         //정상적이면 true
         return true;
     }
+
+    private boolean isLoggedIn(HttpServletRequest request) {
+        //토큰 모드는 세션을 보지 않고 쿠키의 서명, 만료 시각만 확인
+        if (loginTokenService != null && loginTokenService.isEnabled()) {
+            return loginTokenService.authenticate(request) != null;
+        }
+
+        //요청에서 세션 가져오고
+        //getSession()은 세션이 없으면 새로 만든다, 로그인 안한 봇이나 헬스체크 요청마다 세션이 쌓이므로 false
+        //세션을 만들지 않아야 아래 session == null 체크도 의미가 있다
+        HttpSession session = request.getSession(false);
+
+        //세션이 null이거나 로그인한 데이터가 없다면 로그인 안된 것으로 간주
+        return session != null && session.getAttribute(SessionConst.LOGIN_MEMBER) != null;
+    }
 }
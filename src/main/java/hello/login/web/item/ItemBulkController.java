@@ -0,0 +1,241 @@
+package hello.login.web.item;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.login.domain.item.Item;
+import hello.login.domain.item.ItemRepository;
+import hello.login.web.item.bulk.BulkImportResult;
+import hello.login.web.item.bulk.BulkRowError;
+import hello.login.web.item.bulk.BulkRowReader;
+import hello.login.web.item.bulk.BulkRowReader.BulkRow;
+import hello.login.web.item.bulk.ItemExportWriter;
+import hello.login.web.item.form.ItemSaveForm;
+import hello.login.web.item.form.ItemUpdateForm;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.DataBinder;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 상품 대량 등록, 수정, 내보내기
+ * //POST /items/bulk, 본문은 CSV(text/csv) 또는 JSON lines(application/x-ndjson)
+ * //id 가 있는 행은 수정(ItemUpdateForm), 없는 행은 등록(ItemSaveForm), 검증은 화면 등록, 수정과 같다
+ *
+ * //본문은 한 행씩 읽어서 검증하고 BATCH_SIZE 행씩 모아 saveAll, updateAll 로 넣는다
+ * //메모리에는 묶음 하나와 오류 목록(최대 MAX_ERRORS 건)만 남는다
+ * //잘못된 행은 건너뛰고 줄 번호와 함께 결과에 담는다, 앞 묶음은 이미 반영된 상태
+ */
+@RestController
+@RequestMapping("/items")
+@RequiredArgsConstructor
+public class ItemBulkController {
+
+    //락, id 발급, 로그 fsync 는 묶음마다 한 번
+    private static final int BATCH_SIZE = 500;
+    private static final String[] FIELDS = {"id", "itemName", "price", "quantity"};
+
+    private final ItemRepository itemRepository;
+    private final MessageSource messageSource;
+    private final ObjectMapper objectMapper;
+    private final javax.validation.Validator validator;
+
+    @PostMapping("/bulk")
+    public BulkImportResult bulkImport(InputStream body,
+                                       @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                       Locale locale) throws IOException {
+        MediaType mediaType = contentType == null ? MediaType.TEXT_PLAIN : MediaType.parseMediaType(contentType);
+        //charset 이 없으면 UTF-8 (request.getReader 는 ISO-8859-1 로 읽는다)
+        Charset charset = mediaType.getCharset() == null ? StandardCharsets.UTF_8 : mediaType.getCharset();
+        InputStreamReader reader = new InputStreamReader(body, charset);
+        BulkRowReader rows = mediaType.getSubtype().contains("json")
+                ? BulkRowReader.jsonLines(reader, objectMapper)
+                : BulkRowReader.csv(reader);
+
+        BulkImport bulkImport = new BulkImport(locale);
+        BulkRow row;
+        while ((row = rows.next()) != null) {
+            bulkImport.add(row);
+        }
+        return bulkImport.finish();
+    }
+
+    /**
+     * 전체 상품 내보내기
+     * //GET /items/export?format=csv|ndjson, 파일로 받도록 Content-Disposition 을 붙인다
+     * //findAll 로 복사하지 않고 id 순서로 하나씩 꺼내서 버퍼 하나로 계속 쓴다
+     * //Content-Length 를 모르므로 chunked 로 나간다, 버퍼가 찰 때마다 한 조각
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(defaultValue = "csv") String format, HttpServletResponse response) throws IOException {
+        boolean json = "ndjson".equalsIgnoreCase(format) || "json".equalsIgnoreCase(format);
+        response.setContentType(json ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"items." + (json ? "ndjson" : "csv") + "\"");
+
+        OutputStream out = response.getOutputStream();
+        ItemExportWriter writer = json ? ItemExportWriter.jsonLines(out) : ItemExportWriter.csv(out);
+        Iterator<Item> items = itemRepository.iterator();
+        while (items.hasNext()) {
+            writer.write(items.next());
+        }
+        writer.flush();
+    }
+
+    //요청 하나의 진행 상태
+    private final class BulkImport {
+
+        private final Locale locale;
+        private final Validator rowValidator = new SpringValidatorAdapter(validator);
+        private final BulkImportResult result = new BulkImportResult();
+
+        private final List<Item> saves = new ArrayList<>(BATCH_SIZE);
+        private final List<Item> updates = new ArrayList<>(BATCH_SIZE);
+        //updates 와 같은 순서로 줄 번호, 없는 상품을 알려줄 때
+        private final List<Integer> updateLines = new ArrayList<>(BATCH_SIZE);
+
+        private long rows;
+        private long saved;
+        private long updated;
+
+        private BulkImport(Locale locale) {
+            this.locale = locale;
+        }
+
+        private void add(BulkRow row) {
+            rows++;
+            if (row.isMalformed()) {
+                fail(row.getLine(), null, "malformedRow");
+                return;
+            }
+
+            if (row.getValues().get("id") != null) {
+                ItemUpdateForm form = new ItemUpdateForm();
+                BindingResult bindingResult = bind(form, row);
+                checkTotalPrice(form.getPrice(), form.getQuantity(), bindingResult);
+                if (bindingResult.hasErrors()) {
+                    fail(row.getLine(), bindingResult);
+                    return;
+                }
+                Item itemParam = new Item(form.getItemName(), form.getPrice(), form.getQuantity());
+                itemParam.setId(form.getId());
+                updates.add(itemParam);
+                updateLines.add(row.getLine());
+                if (updates.size() >= BATCH_SIZE) {
+                    flushUpdates();
+                }
+            } else {
+                ItemSaveForm form = new ItemSaveForm();
+                BindingResult bindingResult = bind(form, row);
+                checkTotalPrice(form.getPrice(), form.getQuantity(), bindingResult);
+                if (bindingResult.hasErrors()) {
+                    fail(row.getLine(), bindingResult);
+                    return;
+                }
+                saves.add(new Item(form.getItemName(), form.getPrice(), form.getQuantity()));
+                if (saves.size() >= BATCH_SIZE) {
+                    flushSaves();
+                }
+            }
+        }
+
+        private BulkImportResult finish() {
+            flushSaves();
+            flushUpdates();
+            result.setRows(rows);
+            result.setSaved(saved);
+            result.setUpdated(updated);
+            return result;
+        }
+
+        //@ModelAttribute 와 같은 바인딩, 숫자가 아니면 typeMismatch
+        private BindingResult bind(Object form, BulkRow row) {
+            DataBinder binder = new DataBinder(form, "item");
+            binder.setAllowedFields(FIELDS);
+            binder.setValidator(rowValidator);
+            binder.bind(new MutablePropertyValues(row.getValues()));
+            binder.validate();
+            return binder.getBindingResult();
+        }
+
+        //특정 필드 예외가 아닌 전체 예외, ItemController 와 같은 규칙
+        private void checkTotalPrice(Integer price, Integer quantity, BindingResult bindingResult) {
+            if (price != null && quantity != null) {
+                int resultPrice = price * quantity;
+                if (resultPrice < 10000) {
+                    bindingResult.reject("totalPriceMin", new Object[]{10000, resultPrice}, null);
+                }
+            }
+        }
+
+        private void flushSaves() {
+            if (saves.isEmpty()) {
+                return;
+            }
+            itemRepository.saveAll(saves);
+            saved += saves.size();
+            saves.clear();
+        }
+
+        private void flushUpdates() {
+            if (updates.isEmpty()) {
+                return;
+            }
+            Set<Long> missing = new HashSet<>(itemRepository.updateAll(updates));
+            for (int i = 0; i < updates.size(); i++) {
+                if (missing.contains(updates.get(i).getId())) {
+                    fail(updateLines.get(i), "id", "notFound");
+                } else {
+                    updated++;
+                }
+            }
+            updates.clear();
+            updateLines.clear();
+        }
+
+        private void fail(int line, BindingResult bindingResult) {
+            List<BulkRowError> errors = new ArrayList<>(bindingResult.getErrorCount());
+            for (ObjectError error : bindingResult.getAllErrors()) {
+                String field = error instanceof FieldError ? ((FieldError) error).getField() : null;
+                errors.add(new BulkRowError(line, field, codeOf(error), messageSource.getMessage(error, locale)));
+            }
+            result.addFailure(errors);
+        }
+
+        private void fail(int line, String field, String code) {
+            result.addFailure(List.of(new BulkRowError(line, field, code, messageSource.getMessage(code, null, code, locale))));
+        }
+
+        //가장 덜 구체적인 코드 (NotBlank, typeMismatch, totalPriceMin ...)
+        private String codeOf(ObjectError error) {
+            String[] codes = error.getCodes();
+            return codes == null || codes.length == 0 ? error.getCode() : codes[codes.length - 1];
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package hello.login.web.item;
 
+import hello.login.domain.item.InventoryReport;
 import hello.login.domain.item.Item;
 import hello.login.domain.item.ItemRepository;
+import hello.login.domain.item.ItemSearchCond;
+import hello.login.domain.item.ItemSort;
 import hello.login.web.item.form.ItemSaveForm;
 import hello.login.web.item.form.ItemUpdateForm;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -13,6 +17,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 @Slf4j
@@ -23,14 +28,78 @@ public class ItemController {
 
     private final ItemRepository itemRepository;
 
-    @GetMapping
-    public String items(Model model) {
+    //한 페이지 최대 상품 수
+    private static final int MAX_PAGE_SIZE = 100;
+
+//    @GetMapping
+    public String itemsAll(Model model) {
         //로그인 여부 체크
         List<Item> items = itemRepository.findAll();
         model.addAttribute("items", items);
         return "items/items";
     }
 
+    //페이지 단위 목록, 전체 상품을 복사해서 다 그리지 않고 한 페이지만
+    //page, size, sort(id|price), direction(asc|desc)
+    //after 가 있으면 그 id 다음부터 (계속 넘겨보는 경우, 페이지가 깊어져도 비용이 같다)
+    @GetMapping
+    public String items(@RequestParam(defaultValue = "0") int page,
+                        @RequestParam(defaultValue = "20") int size,
+                        @RequestParam(defaultValue = "id") String sort,
+                        @RequestParam(defaultValue = "asc") String direction,
+                        @RequestParam(required = false) Long after,
+                        Model model) {
+        page = Math.max(page, 0);
+        size = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        int totalCount = itemRepository.count();
+
+        List<Item> items;
+        if (after != null) {
+            items = itemRepository.findAfter(after, size);
+        } else {
+            long offset = (long) page * size;
+            items = offset >= totalCount ? List.of()
+                    : itemRepository.findPage(ItemSort.of(sort, direction), (int) offset, size);
+        }
+
+        model.addAttribute("items", items);
+        model.addAttribute("cond", new ItemSearchCond());
+        model.addAttribute("page", page);
+        model.addAttribute("size", size);
+        model.addAttribute("sort", sort);
+        model.addAttribute("direction", direction);
+        model.addAttribute("totalCount", totalCount);
+        model.addAttribute("keyset", after != null);
+        model.addAttribute("hasPrevious", after == null && page > 0);
+        model.addAttribute("hasNext", after != null ? items.size() == size : (long) (page + 1) * size < totalCount);
+        //다음 키셋 페이지 시작점
+        model.addAttribute("nextAfter", items.isEmpty() ? null : items.get(items.size() - 1).getId());
+        return "items/items";
+    }
+
+    //상품 검색, 상품명(단어 접두어) + 가격, 수량 범위
+    //예) /items/search?itemName=item&minPrice=10000&maxQuantity=20
+    @GetMapping("/search")
+    public String search(@ModelAttribute("cond") ItemSearchCond cond,
+                         @RequestParam(defaultValue = "20") int size,
+                         Model model) {
+        size = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        List<Item> items = itemRepository.search(cond, size);
+
+        model.addAttribute("items", items);
+        model.addAttribute("size", size);
+        model.addAttribute("totalCount", items.size());
+        model.addAttribute("searching", true);
+        return "items/items";
+    }
+
+    //재고 집계 (JSON), 총액, 개수, 가격 백분위
+    @GetMapping("/report")
+    @ResponseBody
+    public InventoryReport report() {
+        return itemRepository.report();
+    }
+
     @GetMapping("/{itemId}")
     public String item(@PathVariable long itemId, Model model) {
         //로그인 여부 체크
@@ -82,7 +151,8 @@ public class ItemController {
     }
 
     @PostMapping("/{itemId}/edit")
-    public String edit(@PathVariable Long itemId, @Validated @ModelAttribute("item") ItemUpdateForm form, BindingResult bindingResult) {
+    public String edit(@PathVariable Long itemId, @Validated @ModelAttribute("item") ItemUpdateForm form, BindingResult bindingResult,
+                       HttpServletResponse response) {
 
         //특정 필드 예외가 아닌 전체 예외
         if (form.getPrice() != null && form.getQuantity() != null) {
@@ -102,7 +172,12 @@ public class ItemController {
         itemParam.setPrice(form.getPrice());
         itemParam.setQuantity(form.getQuantity());
 
-        itemRepository.update(itemId, itemParam);
+        //그 사이에 지워졌거나 없는 상품이면 수정 폼에 오류로 (404)
+        if (!itemRepository.update(itemId, itemParam)) {
+            bindingResult.reject("notFound", "없는 상품입니다.");
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return "items/editForm";
+        }
         return "redirect:/items/{itemId}";
     }
 
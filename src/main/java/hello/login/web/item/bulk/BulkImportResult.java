@@ -0,0 +1,35 @@
+package hello.login.web.item.bulk;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대량 등록 결과
+ * //오류는 MAX_ERRORS 건까지만 담고 나머지는 개수만 센다, 잘못된 파일을 올려도 응답이 끝없이 커지지 않게
+ */
+@Data
+public class BulkImportResult {
+
+    public static final int MAX_ERRORS = 1000;
+
+    private long rows;
+    private long saved;
+    private long updated;
+    private long failed;
+    private List<BulkRowError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+
+    //한 행의 오류들, 행 단위로 failed 를 센다
+    public void addFailure(List<BulkRowError> rowErrors) {
+        failed++;
+        for (BulkRowError error : rowErrors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            } else {
+                errorsTruncated = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package hello.login.web.item.bulk;
+
+import lombok.Data;
+
+/**
+ * 대량 등록 행 오류
+ * //line 은 본문의 줄 번호 (1부터), field 가 null 이면 행 전체 오류 (형식, totalPriceMin)
+ */
+@Data
+public class BulkRowError {
+
+    private int line;
+    private String field;
+    private String code;
+    private String message;
+
+    public BulkRowError() {
+    }
+
+    public BulkRowError(int line, String field, String code, String message) {
+        this.line = line;
+        this.field = field;
+        this.code = code;
+        this.message = message;
+    }
+}
@@ -0,0 +1,195 @@
+package hello.login.web.item.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 대량 등록 본문을 한 행씩 읽는다
+ * //본문 전체를 메모리에 올리지 않고 한 줄 읽을 때마다 한 행을 돌려준다
+ * //값은 문자열 그대로 (필드 이름 -> 값), 타입 변환과 검증은 폼에 바인딩할 때
+ *
+ * //CSV: 첫 줄은 헤더 (예: id,itemName,price,quantity), 따옴표로 감싼 값과 "" 이스케이프 지원, 값 안에 줄바꿈은 안 된다
+ * //JSON lines: 한 줄에 객체 하나 (예: {"itemName":"itemA","price":10000,"quantity":10})
+ * //빈 줄은 건너뛴다
+ */
+public abstract class BulkRowReader {
+
+    private final BufferedReader reader;
+    private int line;
+
+    protected BulkRowReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    public static BulkRowReader csv(Reader reader) {
+        return new CsvRowReader(reader);
+    }
+
+    public static BulkRowReader jsonLines(Reader reader, ObjectMapper objectMapper) {
+        return new JsonLinesRowReader(reader, objectMapper);
+    }
+
+    //다음 행, 끝이면 null
+    public BulkRow next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (!text.isBlank() && !header(text)) {
+                return new BulkRow(line, parse(text));
+            }
+        }
+        return null;
+    }
+
+    //헤더 줄이면 읽어두고 true
+    protected boolean header(String text) {
+        return false;
+    }
+
+    //한 줄을 필드 값으로, 형식이 잘못됐으면 null
+    protected abstract Map<String, String> parse(String text);
+
+    /**
+     * 읽은 한 행
+     * //values 가 null 이면 형식이 잘못된 행
+     */
+    public static final class BulkRow {
+
+        private final int line;
+        private final Map<String, String> values;
+
+        private BulkRow(int line, Map<String, String> values) {
+            this.line = line;
+            this.values = values;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public Map<String, String> getValues() {
+            return values;
+        }
+
+        public boolean isMalformed() {
+            return values == null;
+        }
+    }
+
+    private static final class CsvRowReader extends BulkRowReader {
+
+        private String[] columns;
+
+        private CsvRowReader(Reader reader) {
+            super(reader);
+        }
+
+        //첫 줄, 헤더를 읽을 수 없으면 열이 없는 것으로 (이후 행은 모두 형식 오류)
+        @Override
+        protected boolean header(String text) {
+            if (columns != null) {
+                return false;
+            }
+            List<String> fields = split(text);
+            columns = new String[fields == null ? 0 : fields.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = fields.get(i).trim();
+            }
+            return true;
+        }
+
+        @Override
+        protected Map<String, String> parse(String text) {
+            List<String> fields = split(text);
+            if (fields == null || fields.size() > columns.length) {
+                return null;
+            }
+
+            Map<String, String> values = new HashMap<>(columns.length * 2);
+            for (int i = 0; i < fields.size(); i++) {
+                String value = fields.get(i).trim();
+                //빈 칸은 값 없음
+                if (!value.isEmpty()) {
+                    values.put(columns[i], value);
+                }
+            }
+            return values;
+        }
+
+        //따옴표가 닫히지 않았으면 null
+        static List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static final class JsonLinesRowReader extends BulkRowReader {
+
+        private final ObjectMapper objectMapper;
+
+        private JsonLinesRowReader(Reader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        //객체의 값 필드만, 숫자도 문자열로 (바인딩할 때 변환)
+        @Override
+        protected Map<String, String> parse(String text) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                return null;
+            }
+            if (node == null || !node.isObject()) {
+                return null;
+            }
+
+            Map<String, String> values = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                if (value.isValueNode() && !value.isNull()) {
+                    values.put(field.getKey(), value.asText());
+                }
+            }
+            return values;
+        }
+    }
+}
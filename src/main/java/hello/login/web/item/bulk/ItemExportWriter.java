@@ -0,0 +1,192 @@
+package hello.login.web.item.bulk;
+
+import hello.login.domain.item.Item;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 상품 내보내기
+ * //한 줄씩 StringBuilder 에 만들고 UTF-8 로 바꿔 ByteBuffer 에 쌓다가, 차면 한 번에 내보내고 다시 쓴다
+ * //줄마다 String, byte[] 를 새로 만들지 않고 버퍼 두 개(문자, 바이트)만 계속 쓰므로 상품 수와 상관없이 메모리가 같다
+ *
+ * //CSV: id,itemName,price,quantity 헤더, 대량 등록(/items/bulk)에 그대로 다시 넣을 수 있다
+ * //JSON lines: 한 줄에 {"id":1,"itemName":"itemA","price":10000,"quantity":10}
+ * //값이 없으면 CSV 는 빈 칸, JSON 은 null
+ */
+public class ItemExportWriter implements Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+    private final boolean json;
+    private final StringBuilder line = new StringBuilder(128);
+    //heap 버퍼, 내보낼 때 array() 를 그대로 넘겨서 한 번 더 복사하지 않는다
+    private final ByteBuffer buffer;
+    //짝이 맞지 않는 서로게이트 같은 잘못된 문자는 ? 로
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    //CSV 헤더를 아직 안 썼으면 true
+    private boolean header;
+
+    private ItemExportWriter(OutputStream out, boolean json, int bufferSize) {
+        //UTF-8 한 글자(최대 4바이트)는 들어가야 한다
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("bufferSize must be at least 16: " + bufferSize);
+        }
+        this.out = out;
+        this.json = json;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    public static ItemExportWriter csv(OutputStream out) {
+        return csv(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static ItemExportWriter csv(OutputStream out, int bufferSize) {
+        ItemExportWriter writer = new ItemExportWriter(out, false, bufferSize);
+        writer.header = true;
+        return writer;
+    }
+
+    public static ItemExportWriter jsonLines(OutputStream out) {
+        return jsonLines(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static ItemExportWriter jsonLines(OutputStream out, int bufferSize) {
+        return new ItemExportWriter(out, true, bufferSize);
+    }
+
+    public void write(Item item) throws IOException {
+        writeHeader();
+        line.setLength(0);
+        if (json) {
+            line.append("{\"id\":").append(item.getId())
+                    .append(",\"itemName\":");
+            appendJsonString(item.getItemName());
+            line.append(",\"price\":").append(item.getPrice())
+                    .append(",\"quantity\":").append(item.getQuantity())
+                    .append("}\n");
+        } else {
+            line.append(item.getId()).append(',');
+            appendCsvField(item.getItemName());
+            line.append(',');
+            if (item.getPrice() != null) {
+                line.append(item.getPrice());
+            }
+            line.append(',');
+            if (item.getQuantity() != null) {
+                line.append(item.getQuantity());
+            }
+            line.append('\n');
+        }
+        encodeLine();
+    }
+
+    //버퍼에 남은 것을 내보낸다
+    @Override
+    public void flush() throws IOException {
+        writeHeader();
+        drain();
+        out.flush();
+    }
+
+    //상품이 하나도 없어도 헤더는 나간다
+    private void writeHeader() throws IOException {
+        if (header) {
+            header = false;
+            line.setLength(0);
+            line.append("id,itemName,price,quantity\n");
+            encodeLine();
+        }
+    }
+
+    //버퍼가 차면 내보내고 이어서 바꾼다, 한 줄이 버퍼보다 커도 된다
+    private void encodeLine() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (result.isOverflow()) {
+            drain();
+            result = encoder.encode(chars, buffer, true);
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() > 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    //쉼표, 따옴표, 줄바꿈이 있으면 따옴표로 감싸고 따옴표는 두 번
+    private void appendCsvField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
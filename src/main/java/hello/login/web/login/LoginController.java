@@ -1,11 +1,16 @@
 package hello.login.web.login;
 
 import hello.login.domain.login.LoginService;
+import hello.login.domain.login.PasswordHasherBusyException;
+import hello.login.domain.member.LoginMember;
 import hello.login.domain.member.Member;
 import hello.login.web.SessionConst;
 import hello.login.web.session.SessionManager;
+import hello.login.web.token.LoginTokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,6 +23,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import javax.validation.Valid;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Controller
@@ -28,6 +34,8 @@ public class LoginController {
     private final LoginService loginService;
     //loginv2에서 사용함
     private final SessionManager sessionManager;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginTokenService loginTokenService;
 
     //url로 login들어왔을때
     @GetMapping("/login")
@@ -136,7 +144,7 @@ public class LoginController {
         //세션에 로그인 회원 정보 보관, 세션에 보관하고 싶은 객체 담아둠
         //session.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
         //세션에 데이터를 보관하는 방법은 request.setAttribute(..) 와 비슷하다. 하나의 세션에 여러 값을 저장 가능
-        session.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
+        session.setAttribute(SessionConst.LOGIN_MEMBER, LoginMember.of(loginMember));
 
         return "redirect:/";
 
@@ -149,7 +157,17 @@ public class LoginController {
                           //defaultValue는 redirectURL앞에 붙쳐줌, 기본값
                           // /뒤에 url이 없다면 /로 갈꺼고 그냥 /면 홈 화면이겠쥬? 있다면 /redirectURL로
                           @RequestParam(defaultValue = "/") String redirectURL,
-                          HttpServletRequest request) {
+                          HttpServletRequest request, HttpServletResponse response) {
+
+        //같은 IP, 같은 아이디로 너무 자주 시도하면 회원 조회, 비밀번호 해시 전에 바로 거절 (429)
+        //프록시 뒤에 두면 remoteAddr 가 프록시 주소가 되므로 X-Forwarded-For 를 믿을 수 있게 설정해야 한다
+        long wait = loginRateLimiter.tryAcquire(request.getRemoteAddr(), form.getLoginId());
+        if (wait > 0) {
+            bindingResult.reject("tooManyAttempts", "로그인 시도가 너무 많습니다. 잠시 후 다시 시도해주세요.");
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+            return "login/loginForm";
+        }
 
         if (bindingResult.hasErrors()) {
             return "login/loginForm";
@@ -157,7 +175,15 @@ public class LoginController {
 
         //로그인 폼에 입력한 아이디 비번 맞는지 확인하는
         //입력한 아이디 비번이 맞고 회원이 존재한다면 그 회원 Member 객체 반환
-        Member loginMember = loginService.login(form.getLoginId(), form.getPassword());
+        //비밀번호 확인 스레드가 모두 바쁘면 기다리지 않고 바로 다시 로그인 폼으로 (503)
+        Member loginMember;
+        try {
+            loginMember = loginService.login(form.getLoginId(), form.getPassword());
+        } catch (PasswordHasherBusyException e) {
+            bindingResult.reject("busy", "요청이 많습니다. 잠시 후 다시 시도해주세요.");
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return "login/loginForm";
+        }
 
         //아이디 비번 틀리면
         if (loginMember == null) {
@@ -166,11 +192,18 @@ public class LoginController {
         }
 
         //로그인 성공 처리
+        //토큰 모드면 세션을 만들지 않고 서명한 토큰을 쿠키로, 서버에는 아무것도 남지 않는다
+        if (loginTokenService.isEnabled()) {
+            loginTokenService.addCookie(LoginMember.of(loginMember), response);
+            return "redirect:" + redirectURL;
+        }
+
         //세션이 있으면 있는 세션 반환, 없으면 신규 세션을 생성
         HttpSession session = request.getSession();
 
         //세션에 로그인 회원 정보 보관
-        session.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
+        //Member 대신 비밀번호 해시를 뺀 불변 LoginMember, 꺼내 쓰는 쪽에서 세션의 회원을 고칠 수 없게
+        session.setAttribute(SessionConst.LOGIN_MEMBER, LoginMember.of(loginMember));
 
         return "redirect:" + redirectURL;
 
@@ -195,7 +228,12 @@ public class LoginController {
 
     //HttpSession 적용, 로그아웃해도 f12눌러보면 쿠키는 남아있음
     @PostMapping("/logout")
-    public String logoutV3(HttpServletRequest request) {
+    public String logoutV3(HttpServletRequest request, HttpServletResponse response) {
+        //토큰 모드면 이 토큰을 막고 쿠키를 지운다
+        if (loginTokenService.isEnabled()) {
+            loginTokenService.expireCookie(request, response);
+        }
+
         //세션을 없애는게 목적이므로 false
         HttpSession session = request.getSession(false);
 
@@ -0,0 +1,43 @@
+package hello.login.web.login;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 로그인 시도 제한
+ * //IP 별, 로그인 ID 별 토큰 버킷 두 개, 둘 다 통과해야 로그인을 시도한다
+ * //IP 하나가 여러 아이디를 돌려가며 넣는 경우(크리덴셜 스터핑)는 IP 버킷이, 여러 IP가 한 아이디를 노리는 경우는 아이디 버킷이 막는다
+ * //버킷은 고정 크기 표(TokenBucketSketch)에 있어서 키가 얼마나 많이 들어와도 메모리가 같다 (기본 2 * 4 * 16384 * 8바이트 = 1MB)
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final TokenBucketSketch ipBuckets;
+    private final TokenBucketSketch loginIdBuckets;
+
+    @Autowired
+    public LoginRateLimiter(@Value("${login.rate-limit.width:16384}") int width,
+                            @Value("${login.rate-limit.depth:4}") int depth,
+                            @Value("${login.rate-limit.ip.per-minute:30}") double ipPerMinute,
+                            @Value("${login.rate-limit.ip.burst:20}") int ipBurst,
+                            @Value("${login.rate-limit.login-id.per-minute:5}") double loginIdPerMinute,
+                            @Value("${login.rate-limit.login-id.burst:10}") int loginIdBurst) {
+        this.ipBuckets = new TokenBucketSketch(width, depth, ipPerMinute, ipBurst);
+        this.loginIdBuckets = new TokenBucketSketch(width, depth, loginIdPerMinute, loginIdBurst);
+    }
+
+    /**
+     * 로그인 시도 한 번
+     * //IP 에서 막히면 아이디 버킷은 건드리지 않는다
+     * @return 0 이면 시도해도 된다, 아니면 다시 시도할 수 있을 때까지 남은 시간(ns)
+     */
+    public long tryAcquire(String clientIp, String loginId) {
+        long now = System.nanoTime();
+        long wait = ipBuckets.tryAcquire(clientIp == null ? "" : clientIp, now);
+        if (wait > 0 || loginId == null || loginId.isEmpty()) {
+            return wait;
+        }
+        return loginIdBuckets.tryAcquire(loginId, now);
+    }
+}
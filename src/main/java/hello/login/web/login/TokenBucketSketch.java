@@ -0,0 +1,108 @@
+package hello.login.web.login;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 키별 토큰 버킷을 고정 크기 표(count-min sketch)에 담는다
+ * //키마다 버킷을 만들면 아이디, IP가 수백만 개 들어올 때 메모리가 끝없이 늘어난다
+ * //depth 개의 행, 행마다 width 칸, 키는 행마다 다른 해시로 한 칸씩 고르고 모든 칸에 토큰이 있어야 통과한다
+ * //다른 키와 칸을 같이 쓰면 더 빨리 막힐 수는 있어도 더 많이 통과하지는 않는다 (행 중 하나라도 혼자 쓰는 칸이면 정확)
+ *
+ * //칸 하나는 long 하나 (GCRA, 토큰 버킷과 같은 결과): 다음 토큰이 생기는 시각(TAT)만 들고 있다
+ * //요청마다 TAT 가 interval 만큼 뒤로 밀리고, TAT 가 지금보다 burst 만큼 넘게 앞서 있으면 막는다
+ * //CAS 로만 바꾸므로 락이 없다
+ */
+public class TokenBucketSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray cells;
+    //토큰 하나가 생기는 간격
+    private final long interval;
+    //지금보다 이만큼까지는 앞서 있어도 된다 ((burst - 1) * interval)
+    private final long tolerance;
+    //빈 칸(0)이 지금보다 한참 과거가 되도록, nanoTime 은 음수일 수 있다
+    private final long origin = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+    //해시 seed, 띄울 때마다 달라서 밖에서 같은 칸에 부딪히는 키(다른 사람 아이디를 막는 키)를 미리 만들 수 없다
+    //String.hashCode 는 "Aa", "BB" 처럼 쉽게 같은 값이 나오므로 쓰지 않는다
+    private final long secret = new SecureRandom().nextLong();
+
+    /**
+     * @param width 행마다 칸 수, 2의 제곱수로 올린다
+     * @param depth 행 수 (1 ~ 8)
+     * @param permitsPerMinute 분당 채워지는 토큰 수
+     * @param burst 한 번에 쓸 수 있는 최대 토큰 수
+     */
+    public TokenBucketSketch(int width, int depth, double permitsPerMinute, int burst) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be 1 ~ " + SEEDS.length + ": " + depth);
+        }
+        if (width < 1 || width > 1 << 24 || permitsPerMinute <= 0 || burst < 1) {
+            throw new IllegalArgumentException("invalid rate limit: width=" + width
+                    + ", permitsPerMinute=" + permitsPerMinute + ", burst=" + burst);
+        }
+        int capacity = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = capacity - 1;
+        this.cells = new AtomicLongArray(capacity * depth);
+        this.interval = (long) (TimeUnit.MINUTES.toNanos(1) / permitsPerMinute);
+        this.tolerance = (burst - 1) * interval;
+    }
+
+    /**
+     * 토큰 하나 쓰기
+     * //모든 칸을 먼저 확인하고 통과할 때만 칸을 바꾼다, 막힌 요청은 토큰을 쓰지 않는다
+     * @return 0 이면 통과, 아니면 다음 토큰까지 남은 시간(ns)
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        long now = nowNanos - origin;
+        long hash = hash(key);
+        int[] slots = new int[depth];
+        long wait = 0;
+        for (int row = 0; row < depth; row++) {
+            slots[row] = row * (mask + 1) + index(hash, row);
+            long tat = Math.max(cells.get(slots[row]), now);
+            wait = Math.max(wait, tat - tolerance - now);
+        }
+        if (wait > 0) {
+            return wait;
+        }
+
+        //확인과 바꾸기 사이에 다른 요청이 끼면 burst 를 조금 넘을 수 있다, 락 없이 가는 대신
+        for (int slot : slots) {
+            long current;
+            long next;
+            do {
+                current = cells.get(slot);
+                next = Math.max(current, now) + interval;
+            } while (!cells.compareAndSet(slot, current, next));
+        }
+        return 0;
+    }
+
+    private long hash(String key) {
+        long h = secret;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    //행마다 다른 seed 로 섞는다, 같은 행에서 부딪힌 두 키가 다른 행에서는 갈라지게
+    private int index(long hash, int row) {
+        return (int) mix(hash ^ SEEDS[row]) & mask;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
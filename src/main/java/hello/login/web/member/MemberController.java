@@ -1,8 +1,11 @@
 package hello.login.web.member;
 
+import hello.login.domain.login.PasswordHasher;
+import hello.login.domain.login.PasswordHasherBusyException;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
@@ -11,6 +14,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 //반환값 논리경로
@@ -21,6 +25,7 @@ public class MemberController {
 
     //자동 의존 주입
     private final MemberRepository memberRepository;
+    private final PasswordHasher passwordHasher;
 
     //회원가입 폼으로
     @GetMapping("/add")
@@ -31,13 +36,23 @@ public class MemberController {
 
     //회원가입 폼에서 회원가입버튼을 눌렀을 때
     @PostMapping("/add")
-    public String save(@Valid @ModelAttribute Member member, BindingResult bindingResult) {
+    public String save(@Valid @ModelAttribute Member member, BindingResult bindingResult, HttpServletResponse response) {
 
         //에러가 있으면 다시 회원가입 폼으로 넘기기
         if (bindingResult.hasErrors()) {
             return "members/addMemberForm";
         }
 
+        //비밀번호는 해시로 바꿔서 저장
+        //해시 스레드가 모두 바쁘면 기다리지 않고 바로 다시 폼으로 (503)
+        try {
+            member.setPassword(passwordHasher.hash(member.getPassword()));
+        } catch (PasswordHasherBusyException e) {
+            bindingResult.reject("busy", "요청이 많습니다. 잠시 후 다시 시도해주세요.");
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return "members/addMemberForm";
+        }
+
         //저장메서드 호출해 로그 남김
         memberRepository.save(member);
 
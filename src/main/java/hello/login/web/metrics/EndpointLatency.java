@@ -0,0 +1,18 @@
+package hello.login.web.metrics;
+
+import lombok.Data;
+
+//엔드포인트 하나의 응답 시간 통계, 단위는 마이크로초
+@Data
+public class EndpointLatency {
+
+    private String endpoint;
+    private long count;
+    private long errors;
+    private double throughputPerSecond;
+    private double meanMicros;
+    private long p50Micros;
+    private long p99Micros;
+    private long p999Micros;
+    private long maxMicros;
+}
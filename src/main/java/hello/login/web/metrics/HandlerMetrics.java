@@ -0,0 +1,89 @@
+package hello.login.web.metrics;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 매핑별 응답 시간, 처리량, 오류 수
+ * //LogInterceptor.afterCompletion 에서 기록하고 /metrics/latency 로 조회
+ * //같은 컨트롤러 메서드라도 HTTP 메서드나 URL 패턴이 다르면 따로 센다 (예: GET, POST /login)
+ */
+@Component
+public class HandlerMetrics {
+
+    //HandlerMethod는 요청마다 새로 만들어질 수 있으므로 실제 메서드, HTTP 메서드, URL 패턴으로 구분
+    private final Map<EndpointKey, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 기록
+     * //pattern은 매핑된 URL 패턴(예: /items/{itemId}), 요청 URL 이 아니라 패턴이라 항목 수가 매핑 수를 넘지 않는다
+     */
+    public void record(HandlerMethod handlerMethod, String httpMethod, String pattern, long elapsedNanos, boolean error) {
+        EndpointKey key = new EndpointKey(handlerMethod.getMethod(), httpMethod, pattern);
+        EndpointMetrics metrics = endpoints.get(key);
+        if (metrics == null) {
+            metrics = endpoints.computeIfAbsent(key, k -> new EndpointMetrics(nameOf(handlerMethod, httpMethod, pattern)));
+        }
+        metrics.histogram.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        if (error) {
+            metrics.errors.increment();
+        }
+    }
+
+    //p99가 큰 순서로, 느린 컨트롤러가 위에 오게
+    public List<EndpointLatency> snapshot() {
+        double elapsedSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+
+        List<EndpointLatency> result = new ArrayList<>();
+        for (EndpointMetrics metrics : endpoints.values()) {
+            LatencyHistogram histogram = metrics.histogram;
+            EndpointLatency latency = new EndpointLatency();
+            latency.setEndpoint(metrics.name);
+            latency.setCount(histogram.getCount());
+            latency.setErrors(metrics.errors.sum());
+            latency.setThroughputPerSecond(histogram.getCount() / elapsedSeconds);
+            latency.setMeanMicros(histogram.getMean());
+            latency.setP50Micros(histogram.getValueAtPercentile(50));
+            latency.setP99Micros(histogram.getValueAtPercentile(99));
+            latency.setP999Micros(histogram.getValueAtPercentile(99.9));
+            latency.setMaxMicros(histogram.getMax());
+            result.add(latency);
+        }
+        result.sort(Comparator.comparingLong(EndpointLatency::getP99Micros).reversed());
+        return result;
+    }
+
+    private static String nameOf(HandlerMethod handlerMethod, String httpMethod, String pattern) {
+        return httpMethod + " " + (pattern != null ? pattern : "-") + " " + handlerMethod.getBeanType().getSimpleName()
+                + "#" + handlerMethod.getMethod().getName();
+    }
+
+    @Value
+    private static class EndpointKey {
+        Method method;
+        String httpMethod;
+        String pattern;
+    }
+
+    private static final class EndpointMetrics {
+
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private EndpointMetrics(String name) {
+            this.name = name;
+        }
+    }
+}
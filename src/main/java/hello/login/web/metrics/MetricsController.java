@@ -0,0 +1,21 @@
+package hello.login.web.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+//프로파일러 없이 느린 컨트롤러를 찾기 위한 조회용
+//로그인 체크 대상이므로 로그인한 사용자만 볼 수 있다
+@RestController
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final HandlerMetrics handlerMetrics;
+
+    @GetMapping("/metrics/latency")
+    public List<EndpointLatency> latency() {
+        return handlerMetrics.snapshot();
+    }
+}
@@ -0,0 +1,347 @@
+package hello.login.web.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 메모리 맵 파일 세션 저장소
+ * //세션 값을 직렬화해서 힙 밖(파일에 매핑된 버퍼)에 보관한다, 세션이 많아져도 old 영역 GC 부담이 늘지 않는다
+ * //같은 파일로 다시 띄우면 세션이 그대로 남아있다
+ *
+ * //파일 구조: [magic(int)][다음 기록 위치(int)] 뒤로 레코드가 이어짐
+ * //레코드: [레코드 길이(int)][상태(byte)][id 길이(short)][id][값 길이(int)][값]
+ * //삭제는 상태만 바꾸고, 공간이 모자라면 살아있는 레코드를 앞으로 당겨 압축한다
+ * //압축은 지운 공간이 파일의 1/8 이상일 때만, 살아있는 세션으로 거의 찬 파일을 put 마다 통째로 옮기지 않게
+ * //같은 세션을 다시 쓰면 새 레코드를 다 쓴 뒤에 예전 레코드를 지운다, 중간에 죽으면 다시 띄울 때 뒤의 것을 쓴다
+ *
+ * //압축은 살아있는 레코드를 옆 파일(.compact)에 먼저 쓰고 디스크에 반영한 뒤 원래 파일 앞쪽에 덮어쓴다
+ * //덮어쓰다 죽으면 다시 띄울 때 다 쓴 옆 파일로 처음부터 다시 덮어쓴다, 옆 파일을 다 쓰기 전에 죽었으면 원래 파일은 그대로다
+ *
+ * //get 은 매번 값을 역직렬화한다 (LoginMember 하나에 수 µs), 힙에 캐시하면 힙 밖에 두는 의미가 없어서 캐시하지 않는다
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.store.type", havingValue = "mapped")
+public class MappedSessionStore implements SessionStore {
+
+    private static final int MAGIC = 0x53455353;
+    private static final int HEADER_SIZE = 8;
+    private static final int WRITE_POSITION_OFFSET = 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 2 + 4;
+    //옆 파일: [magic(int)][레코드 길이 합(int)] 뒤로 살아있는 레코드
+    private static final int COMPACT_HEADER_SIZE = 8;
+
+    private static final byte LIVE = 1;
+    private static final byte REMOVED = 0;
+
+    //지운 레코드가 capacity / COMPACT_DIVISOR 이상일 때만 압축
+    private static final int COMPACT_DIVISOR = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Path compactFile;
+
+    //세션 id -> 레코드 위치, 값은 버퍼에 있고 위치만 힙에 둔다
+    //파일에 쓴 순서(오래된 것부터)를 유지한다, 재시작할 때 최대 세션 수를 넘으면 앞쪽부터 버리도록
+    private final Map<String, Integer> index = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int writePosition;
+    //지운 레코드가 차지하는 바이트, 압축하면 0
+    private int deadBytes;
+
+    @Autowired
+    public MappedSessionStore(@Value("${session.store.file:sessions.dat}") String file,
+                              @Value("${session.store.capacity-mb:64}") int capacityMb) {
+        this(Path.of(file), toBytes(capacityMb));
+    }
+
+    MappedSessionStore(Path file, int capacity) {
+        if (capacity <= HEADER_SIZE) {
+            throw new IllegalArgumentException("capacity too small: " + capacity);
+        }
+        compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+            if (buffer.getInt(0) == MAGIC) {
+                if (applyCompaction()) {
+                    log.warn("interrupted session compaction finished: file={}", file);
+                } else {
+                    recover();
+                }
+                log.info("mapped session store opened: file={}, sessions={}", file, index.size());
+            } else {
+                Files.deleteIfExists(compactFile);
+                buffer.putInt(0, MAGIC);
+                updateWritePosition(HEADER_SIZE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("세션 파일을 열 수 없습니다: " + file, e);
+        }
+    }
+
+    @Override
+    public void put(String sessionId, Object value) {
+        //직렬화는 락 밖에서
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = SessionValues.serialize(value);
+        int recordLength = RECORD_HEADER_SIZE + id.length + payload.length;
+
+        lock.writeLock().lock();
+        try {
+            //자리가 없으면 예전 세션을 그대로 두고 실패
+            ensureCapacity(recordLength);
+
+            int position = writePosition;
+            buffer.putInt(position, recordLength);
+            buffer.put(position + 4, REMOVED);
+            buffer.putShort(position + 5, (short) id.length);
+            put(position + 7, id);
+            buffer.putInt(position + 7 + id.length, payload.length);
+            put(position + RECORD_HEADER_SIZE + id.length, payload);
+            //다 쓴 다음에 살아있는 레코드로 표시, 중간에 죽어도 반쯤 쓴 레코드는 복구되지 않는다
+            buffer.put(position + 4, LIVE);
+            updateWritePosition(position + recordLength);
+
+            //지웠다가 다시 넣어서 쓴 순서의 맨 뒤로
+            markRemoved(index.remove(sessionId));
+            index.put(sessionId, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Object get(String sessionId) {
+        byte[] payload;
+
+        lock.readLock().lock();
+        try {
+            Integer position = index.get(sessionId);
+            if (position == null) {
+                return null;
+            }
+            int idLength = buffer.getShort(position + 5);
+            int payloadLength = buffer.getInt(position + 7 + idLength);
+            payload = read(position + RECORD_HEADER_SIZE + idLength, payloadLength);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //역직렬화도 락 밖에서
+        return SessionValues.deserialize(payload);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        lock.writeLock().lock();
+        try {
+            markRemoved(index.remove(sessionId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterable<String> sessionIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(index.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //종료할 때 디스크에 반영
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //파일에 남아있는 레코드를 읽어 인덱스 다시 만들기
+    private void recover() {
+        int end = buffer.getInt(WRITE_POSITION_OFFSET);
+        if (end < HEADER_SIZE || end > buffer.capacity()) {
+            throw new IllegalStateException("세션 파일이 손상되었거나 용량보다 큽니다: writePosition=" + end);
+        }
+
+        int position = HEADER_SIZE;
+        while (position < end) {
+            int recordLength = buffer.getInt(position);
+            if (recordLength < RECORD_HEADER_SIZE || position + recordLength > end) {
+                log.warn("broken session record at {}, ignore rest", position);
+                end = position;
+                break;
+            }
+            if (buffer.get(position + 4) == LIVE) {
+                int idLength = buffer.getShort(position + 5);
+                String sessionId = new String(read(position + 7, idLength), StandardCharsets.UTF_8);
+                //put 이 예전 레코드를 지우기 전에 죽었으면 뒤에 쓴 것이 남는다
+                markRemoved(index.remove(sessionId));
+                index.put(sessionId, position);
+            } else {
+                deadBytes += recordLength;
+            }
+            position += recordLength;
+        }
+        writePosition = end;
+    }
+
+    //압축해도 자리가 나지 않거나 지운 공간이 적으면 바로 실패, session.store.capacity-mb 를 늘리거나 session.max-sessions 를 줄인다
+    private void ensureCapacity(int recordLength) {
+        if (writePosition + recordLength <= buffer.capacity()) {
+            return;
+        }
+        if (writePosition - deadBytes + recordLength > buffer.capacity()
+                || deadBytes < buffer.capacity() / COMPACT_DIVISOR) {
+            throw new IllegalStateException("세션 저장소 용량이 부족합니다: sessions=" + index.size()
+                    + ", capacity=" + buffer.capacity() + ", removedBytes=" + deadBytes);
+        }
+        compact();
+    }
+
+    //살아있는 레코드를 옆 파일에 모아 디스크에 반영하고, 그 다음에 원래 파일에 덮어쓴다
+    private void compact() {
+        try (FileChannel side = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long sidePosition = COMPACT_HEADER_SIZE;
+            int read = HEADER_SIZE;
+            while (read < writePosition) {
+                int recordLength = buffer.getInt(read);
+                if (buffer.get(read + 4) == LIVE) {
+                    ByteBuffer record = buffer.duplicate();
+                    record.position(read).limit(read + recordLength);
+                    while (record.hasRemaining()) {
+                        sidePosition += side.write(record, sidePosition);
+                    }
+                }
+                read += recordLength;
+            }
+            side.force(true);
+
+            //헤더는 레코드가 디스크에 반영된 뒤에 쓴다, 헤더가 있으면 다 쓴 옆 파일
+            ByteBuffer header = ByteBuffer.allocate(COMPACT_HEADER_SIZE);
+            header.putInt(MAGIC).putInt((int) (sidePosition - COMPACT_HEADER_SIZE)).flip();
+            while (header.hasRemaining()) {
+                side.write(header, header.position());
+            }
+            side.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("세션 파일을 압축할 수 없습니다: " + compactFile, e);
+        }
+
+        try {
+            applyCompaction();
+        } catch (IOException e) {
+            throw new UncheckedIOException("세션 파일을 압축할 수 없습니다: " + compactFile, e);
+        }
+    }
+
+    //다 쓴 옆 파일이 있으면 원래 파일 앞쪽에 덮어쓰고 인덱스를 다시 만든다
+    //몇 번을 다시 해도 결과가 같으므로 덮어쓰다 죽었으면 다시 띄울 때 처음부터 다시 한다
+    private boolean applyCompaction() throws IOException {
+        if (!Files.exists(compactFile)) {
+            return false;
+        }
+        boolean complete;
+        try (FileChannel side = FileChannel.open(compactFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(COMPACT_HEADER_SIZE);
+            long length = side.size() - COMPACT_HEADER_SIZE;
+            complete = readFully(side, header, 0) && header.getInt(0) == MAGIC && header.getInt(4) == length
+                    && HEADER_SIZE + length <= buffer.capacity();
+            if (complete) {
+                ByteBuffer view = buffer.duplicate();
+                view.position(HEADER_SIZE).limit(HEADER_SIZE + (int) length);
+                if (!readFully(side, view, COMPACT_HEADER_SIZE)) {
+                    throw new IOException("compaction file truncated: " + compactFile);
+                }
+                updateWritePosition(HEADER_SIZE + (int) length);
+                buffer.force();
+            }
+        }
+        Files.delete(compactFile);
+        if (!complete) {
+            //다 쓰기 전에 죽은 옆 파일, 원래 파일은 아직 건드리지 않았다
+            log.warn("incomplete session compaction discarded: {}", compactFile);
+            return false;
+        }
+
+        index.clear();
+        deadBytes = 0;
+        recover();
+        return true;
+    }
+
+    private void markRemoved(Integer position) {
+        if (position != null) {
+            buffer.put(position + 4, REMOVED);
+            deadBytes += buffer.getInt(position);
+        }
+    }
+
+    private void updateWritePosition(int position) {
+        writePosition = position;
+        buffer.putInt(WRITE_POSITION_OFFSET, position);
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    //위치를 바꾸지 않도록 복제본으로 읽고 쓴다
+    private byte[] read(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private void put(int position, byte[] bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.put(bytes);
+    }
+
+    //MappedByteBuffer 하나는 int 범위까지만 매핑된다, int 로 곱하면 2048MB 부터 넘쳐서 음수가 된다
+    private static int toBytes(int capacityMb) {
+        long capacity = (long) capacityMb * 1024 * 1024;
+        if (capacityMb <= 0 || capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("session.store.capacity-mb must be between 1 and 2047: " + capacityMb);
+        }
+        return (int) capacity;
+    }
+}
@@ -0,0 +1,35 @@
+package hello.login.web.session;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//기본 저장소, 값을 그대로 힙에 보관한다
+@Component
+@ConditionalOnProperty(name = "session.store.type", havingValue = "memory", matchIfMissing = true)
+public class MemorySessionStore implements SessionStore {
+
+    private final Map<String, Object> store = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String sessionId, Object value) {
+        store.put(sessionId, value);
+    }
+
+    @Override
+    public Object get(String sessionId) {
+        return store.get(sessionId);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        store.remove(sessionId);
+    }
+
+    @Override
+    public Iterable<String> sessionIds() {
+        return store.keySet();
+    }
+}
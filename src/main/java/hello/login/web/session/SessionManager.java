@@ -1,14 +1,29 @@
 package hello.login.web.session;
 
+import hello.login.web.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 //보안 문제
 //쿠키 값은 임의로 변경할 수 있다.
@@ -52,14 +67,123 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * 세션 관리
  */
+@Slf4j
 @Component
 public class SessionManager {
 
     public static final String SESSION_COOKIE_NAME = "mySessionId";
-    //세션 아이디, 값
-    //값은 Member객체를 넣을거임
+    private static final String COOKIE_HEADER = "Cookie";
+
+    //HttpSession 기본값과 같은 30분
+    public static final long DEFAULT_TIMEOUT_SECONDS = 1800;
+
+    //세션 하나에 Member 정도만 담는다고 보고 노드당 최대 세션 수
+    public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+    //만료 시각을 이 단위(1초)로 묶어서 버킷에 담는다, 리퍼도 이 주기로 돈다
+    private static final long TICK_MILLIS = 1000;
+
+    //세션 아이디, 마지막 접근 시간
     //동시에 여러 스레드가 접근할때 ConcurrentHashMap
-    private Map<String, Object> sessionStore = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    //세션 아이디, 값
+    //값은 Member객체를 넣을거임, 어디에 보관할지는 SessionStore 구현이 정한다
+    private final SessionStore sessionStore;
+    private final IdGenerator idGenerator;
+
+    //만료 예정 시각(틱) -> 그 틱에 만료될 수 있는 세션 id들
+    //리퍼는 전체 세션을 뒤지지 않고 지나간 틱의 버킷만 꺼내서 확인한다
+    //조회할 때마다 버킷을 옮기지 않고, 버킷을 꺼냈을 때 아직 살아있으면 새 만료 시각의 버킷으로 다시 넣는다
+    private final ConcurrentSkipListMap<Long, Set<String>> expiryBuckets = new ConcurrentSkipListMap<>();
+
+    //로그아웃한 세션 id -> 이 시각까지는 다른 노드에서 다시 받지 않는다 (복제를 쓸 때만)
+    //로그아웃이 아직 닿지 않은 노드에 물어보거나 늦게 온 생성을 받아서 로그아웃한 세션이 되살아나지 않게
+    //세션 타임아웃만큼 들고 있으면 그 사이 접근이 없던 다른 노드의 사본은 타임아웃으로 끝난다
+    private final Map<String, Long> tombstones = new ConcurrentHashMap<>();
+    //만료 시각(틱) -> 그 틱에 지울 tombstone, 세션과 같이 리퍼가 지나간 틱만 꺼낸다
+    private final ConcurrentSkipListMap<Long, Set<String>> tombstoneBuckets = new ConcurrentSkipListMap<>();
+
+    private final long timeoutMillis;
+    private final int maxSessions;
+    private final LongSupplier clock;
+
+    //타임아웃으로 지워진 세션 수, 최대 세션 수를 넘어서 밀려난 세션 수
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    private ScheduledExecutorService reaper;
+
+    //다른 노드와 세션 생성, 로그아웃을 주고받는다 (session.replication.enabled), 없으면 이 노드에만
+    private volatile SessionReplication replication;
+
+    public SessionManager() {
+        this(new MemorySessionStore(), new IdGenerator(), Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS), DEFAULT_MAX_SESSIONS, System::currentTimeMillis);
+    }
+
+    //마지막 요청 이후 session.timeout(초) 동안 요청이 없으면 만료
+    //session.max-sessions를 넘으면 가장 오래 사용하지 않은 세션부터 밀어낸다
+    @Autowired
+    public SessionManager(SessionStore sessionStore, IdGenerator idGenerator,
+                          @Value("${session.timeout:" + DEFAULT_TIMEOUT_SECONDS + "}") long timeoutSeconds,
+                          @Value("${session.max-sessions:" + DEFAULT_MAX_SESSIONS + "}") int maxSessions) {
+        this(sessionStore, idGenerator, Duration.ofSeconds(timeoutSeconds), maxSessions, System::currentTimeMillis);
+    }
+
+    //테스트에서 시간을 직접 움직이기 위해
+    SessionManager(Duration timeout, int maxSessions, LongSupplier clock) {
+        this(new MemorySessionStore(), new IdGenerator(), timeout, maxSessions, clock);
+    }
+
+    SessionManager(SessionStore sessionStore, IdGenerator idGenerator, Duration timeout, int maxSessions, LongSupplier clock) {
+        //만료 시각이 항상 현재 틱보다 뒤에 잡혀야 리퍼가 이미 꺼낸 버킷에 다시 넣는 일이 없다
+        if (timeout.toMillis() <= TICK_MILLIS) {
+            throw new IllegalArgumentException("session timeout must be longer than " + TICK_MILLIS + "ms");
+        }
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be positive: " + maxSessions);
+        }
+        this.sessionStore = sessionStore;
+        this.idGenerator = idGenerator;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxSessions = maxSessions;
+        this.clock = clock;
+
+        //재시작 전에 저장소에 남아있던 세션은 지금부터 다시 타임아웃을 센다
+        //최대 세션 수보다 많으면 오래된 것(저장소가 앞쪽에 돌려주는 것)부터 밀어낸다, 줄인 max-sessions 로 다시 띄워도 넘지 않게
+        List<String> recovered = new ArrayList<>();
+        sessionStore.sessionIds().forEach(recovered::add);
+        int evict = Math.max(0, recovered.size() - maxSessions);
+        long now = clock.getAsLong();
+        for (int i = 0; i < recovered.size(); i++) {
+            String sessionId = recovered.get(i);
+            if (i < evict) {
+                sessionStore.remove(sessionId);
+                evictedCount.increment();
+                continue;
+            }
+            sessions.put(sessionId, new Session(now));
+            scheduleExpiry(sessionId, now + timeoutMillis);
+        }
+    }
+
+    //서버를 띄울때 만료된 세션을 지우는 리퍼 시작
+    @PostConstruct
+    public void startReaper() {
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::removeExpiredSessions, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopReaper() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
 
     /**
      * 세션 생성
@@ -71,8 +195,14 @@ public class SessionManager {
     public void createSession(Object value, HttpServletResponse response) {
 
         //세션 id(확실한 랜덤값 생성)를 생성하고 키로 파라미터로 들어온건 값으로 세션에 저장,
-        String sessionId = UUID.randomUUID().toString();
-        sessionStore.put(sessionId, value);
+        String sessionId = idGenerator.newSessionId();
+        register(sessionId, value);
+
+        //다른 노드에는 비동기로, 응답을 기다리지 않는다
+        SessionReplication replication = this.replication;
+        if (replication != null) {
+            replication.sessionCreated(sessionId, value);
+        }
 
         //쿠키 생성, 쿠키이름은 위에서 만든 필드, 값은 위에서 만든 세션 id
         Cookie mySessionCookie = new Cookie(SESSION_COOKIE_NAME, sessionId);
@@ -86,16 +216,33 @@ public class SessionManager {
      */
     public Object getSession(HttpServletRequest request) {
 
-        //Http요청으로 들어온걸 객체로 만들어 그 객체의 쿠키이름이 SESSION_COOKIE_NAME인지
-        Cookie sessionCookie = findCookie(request, SESSION_COOKIE_NAME);
+        //Cookie 헤더에서 이름이 SESSION_COOKIE_NAME인 쿠키 값을 바로 꺼냄
+        //sessionId는 추정 불가능한 session id
+        String sessionId = findSessionId(request);
 
-        if (sessionCookie == null) {
+        if (sessionId == null) {
             return null;
         }
 
-        //sessionCookie.getValue()는 추정 불가능한 session id
         //그 session id에 맞는 Member객체 반환
-        return sessionStore.get(sessionCookie.getValue());
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            //다른 노드에서 만들었는데 아직 못 받았거나 놓친 세션이면 다른 노드에 물어본다
+            return fetchReplica(sessionId);
+        }
+
+        //리퍼가 아직 돌지 않았어도 시간이 지난 세션은 바로 만료
+        long now = clock.getAsLong();
+        if (session.isExpired(now, timeoutMillis)) {
+            if (removeSession(sessionId, session)) {
+                expiredCount.increment();
+            }
+            return null;
+        }
+
+        //요청이 오면 만료 시간이 다시 늘어난다, HttpSession의 lastAccessedTime과 같은 방식
+        session.touch(now);
+        return sessionStore.get(sessionId);
     }
 
     /**
@@ -103,30 +250,331 @@ public class SessionManager {
      */
     public void expire(HttpServletRequest request) {
         //세션 조회와 똑같이 요청으로 들어온 쿠키 이름이 SESSION_COOKIE_NAME와 같다면
-        //그 쿠키를 가져와서 Map객체에서 제거해줌
-        Cookie sessionCookie = findCookie(request, SESSION_COOKIE_NAME);
+        //그 쿠키 값으로 Map객체에서 제거해줌
+        String sessionId = findSessionId(request);
 
-        if (sessionCookie != null) {
-            sessionStore.remove(sessionCookie.getValue());
+        if (sessionId != null) {
+            Session removed = sessions.remove(sessionId);
+            sessionStore.remove(sessionId);
+
+            //로그아웃은 모든 노드에서, 타임아웃과 밀어내기는 노드마다 따로 (다른 노드에서는 아직 쓰고 있을 수 있다)
+            SessionReplication replication = this.replication;
+            if (replication != null) {
+                //이 노드에 있던 세션만, 아무 쿠키로 로그아웃을 보내는 요청이 tombstone 을 쌓지 않게
+                if (removed != null) {
+                    addTombstone(sessionId);
+                }
+                replication.sessionExpired(sessionId);
+            }
         }
     }
 
+    public void setReplication(SessionReplication replication) {
+        this.replication = replication;
+    }
+
+    /**
+     * 다른 노드에서 만든 세션 받기
+     * //만료 시간은 받은 때부터 센다, 다시 다른 노드로 보내지 않는다
+     */
+    public void putReplica(String sessionId, Object value) {
+        //로그아웃한 뒤에 늦게 온 생성
+        if (isTombstoned(sessionId)) {
+            return;
+        }
+        if (!sessions.containsKey(sessionId)) {
+            register(sessionId, value);
+        }
+    }
+
+    //다른 노드에서 로그아웃한 세션
+    public void removeReplica(String sessionId) {
+        addTombstone(sessionId);
+        sessions.remove(sessionId);
+        sessionStore.remove(sessionId);
+    }
+
+    //다른 노드가 물어볼 때, 이 노드에 있는 값만 (다시 다른 노드에 묻지 않는다), 접근 시간도 늘리지 않는다
+    public Object findLocal(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null || session.isExpired(clock.getAsLong(), timeoutMillis)) {
+            return null;
+        }
+        return sessionStore.get(sessionId);
+    }
+
+    /**
+     * 만료된 세션 정리
+     * //지나간 틱의 버킷만 꺼내서 확인하므로 비용은 만료 예정이었던 세션 수에 비례
+     */
+    public void removeExpiredSessions() {
+        try {
+            long now = clock.getAsLong();
+            long currentTick = now / TICK_MILLIS;
+
+            Map.Entry<Long, Set<String>> bucket;
+            while ((bucket = pollBucketBefore(currentTick)) != null) {
+                for (String sessionId : bucket.getValue()) {
+                    Session session = sessions.get(sessionId);
+                    //로그아웃 등으로 이미 지워진 세션
+                    if (session == null) {
+                        continue;
+                    }
+                    if (session.isExpired(now, timeoutMillis)) {
+                        if (removeSession(sessionId, session)) {
+                            expiredCount.increment();
+                        }
+                    } else {
+                        //그 사이에 요청이 있었던 세션은 새 만료 시각의 버킷으로
+                        scheduleExpiry(sessionId, session.lastAccessedTime + timeoutMillis);
+                    }
+                }
+            }
+
+            Map.Entry<Long, Set<String>> tombstoneBucket;
+            while ((tombstoneBucket = tombstoneBuckets.headMap(currentTick).pollFirstEntry()) != null) {
+                for (String sessionId : tombstoneBucket.getValue()) {
+                    //그 사이 다시 로그아웃해서 늦춰진 것은 새 버킷에 있다
+                    Long until = tombstones.get(sessionId);
+                    if (until != null && until <= now) {
+                        tombstones.remove(sessionId, until);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            //예외가 나가면 스케줄이 멈추므로 로그만 남긴다
+            log.error("session reaper error", e);
+        }
+    }
+
+    //현재 보관 중인 세션 수
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    //세션 타임아웃, 복제에서 로그아웃을 얼마나 오래 다시 보낼지
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
     //요청이랑 쿠키이름을 넣으면 쿠키를 자동으로 찾아주는
     public Cookie findCookie(HttpServletRequest request, String cookieName) {
 
         //(request.getCookies()는 배열을 반환
         //쿠키가 없다면 null반환
-        if (request.getCookies() == null) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
             return null;
         }
 
-        //Arrays.stream는 배열을 스트림으로 바꿔주는
         //요청에서 쿠키를 얻어오고 파라미터로 들어온 쿠키이름과 같은지 비교
-        //findFirst는 순서중에 먼저 나온 하나, findAny()는 순서와 상관없이 하나가 찾아지면 반환
-        return Arrays.stream(request.getCookies())
-                .filter(cookie -> cookie.getName().equals(cookieName))
-                .findAny()
-                .orElse(null);
+        //스트림, 람다를 만들지 않도록 그냥 루프
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().equals(cookieName)) {
+                return cookie;
+            }
+        }
+        return null;
+    }
+
+    private void register(String sessionId, Object value) {
+        long now = clock.getAsLong();
+        sessionStore.put(sessionId, value);
+        sessions.put(sessionId, new Session(now));
+        scheduleExpiry(sessionId, now + timeoutMillis);
+
+        //로그인 폭주나 봇이 세션을 계속 만들어도 메모리가 최대 세션 수 이상 늘지 않게
+        while (sessions.size() > maxSessions) {
+            if (!evictLeastRecentlyUsed(sessionId)) {
+                break;
+            }
+        }
+    }
+
+    private Object fetchReplica(String sessionId) {
+        SessionReplication replication = this.replication;
+        if (replication == null || isTombstoned(sessionId)) {
+            return null;
+        }
+        Object value = replication.fetch(sessionId);
+        if (value != null) {
+            putReplica(sessionId, value);
+        }
+        return value;
+    }
+
+    //세션 조회, 만료는 인증된 요청마다 실행된다
+    //request.getCookies()는 모든 쿠키를 Cookie 객체 배열로 만드므로 Cookie 헤더 문자열에서 바로 찾는다
+    //새로 만드는 객체는 찾은 세션 id 문자열 하나뿐
+    private String findSessionId(HttpServletRequest request) {
+        return findRequestCookie(request, SESSION_COOKIE_NAME);
+    }
+
+    /**
+     * 요청의 Cookie 헤더에서 쿠키 값 찾기
+     * //Cookie 헤더가 여러 줄로 올 수 있다 (HTTP/2 는 쿠키를 나눠 보내기도 한다), 앞 줄부터 차례로 찾는다
+     */
+    public static String findRequestCookie(HttpServletRequest request, String cookieName) {
+        Enumeration<String> headers = request.getHeaders(COOKIE_HEADER);
+        if (headers == null) {
+            return null;
+        }
+        while (headers.hasMoreElements()) {
+            String value = findCookieValue(headers.nextElement(), cookieName);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cookie 헤더에서 쿠키 값 찾기
+     * //Cookie: name1=value1; name2="value2" 형식, 이름 앞뒤 공백은 무시하고 값의 큰따옴표는 벗긴다
+     * //같은 이름이 여러 번 오면 처음 것
+     */
+    public static String findCookieValue(String cookieHeader, String cookieName) {
+        if (cookieHeader == null) {
+            return null;
+        }
+
+        int length = cookieHeader.length();
+        int nameLength = cookieName.length();
+        int position = 0;
+        while (position < length) {
+            //이번 쿠키의 끝(; 위치)
+            int end = cookieHeader.indexOf(';', position);
+            if (end < 0) {
+                end = length;
+            }
+
+            int nameStart = skipWhitespace(cookieHeader, position, end);
+            int equals = cookieHeader.indexOf('=', nameStart);
+            if (equals >= 0 && equals < end
+                    && trimEnd(cookieHeader, nameStart, equals) - nameStart == nameLength
+                    && cookieHeader.regionMatches(nameStart, cookieName, 0, nameLength)) {
+
+                int valueStart = skipWhitespace(cookieHeader, equals + 1, end);
+                int valueEnd = trimEnd(cookieHeader, valueStart, end);
+                if (valueEnd - valueStart >= 2
+                        && cookieHeader.charAt(valueStart) == '"' && cookieHeader.charAt(valueEnd - 1) == '"') {
+                    valueStart++;
+                    valueEnd--;
+                }
+                return cookieHeader.substring(valueStart, valueEnd);
+            }
+            position = end + 1;
+        }
+        return null;
+    }
+
+    private static int skipWhitespace(String value, int start, int end) {
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start, int end) {
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private Map.Entry<Long, Set<String>> pollBucketBefore(long tick) {
+        return expiryBuckets.headMap(tick).pollFirstEntry();
+    }
+
+    //타임아웃이 모든 세션에 같으므로 만료 시각 순서 = 마지막 접근 순서
+    //가장 앞 버킷부터 보면서 그 사이 접근이 없었던 세션 하나를 밀어낸다 (틱 단위의 근사 LRU)
+    //접근이 있었던 세션은 새 만료 시각 버킷으로 옮겨준다, 빈 버킷 정리는 리퍼가 한다
+    //방금 만든 세션(newSessionId)은 쿠키가 이미 나가므로 밀어내지 않는다
+    private boolean evictLeastRecentlyUsed(String newSessionId) {
+        for (Map.Entry<Long, Set<String>> bucket : expiryBuckets.entrySet()) {
+            long bucketTick = bucket.getKey();
+            Set<String> sessionIds = bucket.getValue();
+
+            for (String sessionId : sessionIds) {
+                if (sessionId.equals(newSessionId)) {
+                    continue;
+                }
+                sessionIds.remove(sessionId);
+
+                Session session = sessions.get(sessionId);
+                if (session == null) {
+                    continue;
+                }
+                long expireAt = session.lastAccessedTime + timeoutMillis;
+                if (toTick(expireAt) > bucketTick) {
+                    scheduleExpiry(sessionId, expireAt);
+                    continue;
+                }
+                if (removeSession(sessionId, session)) {
+                    evictedCount.increment();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addTombstone(String sessionId) {
+        long until = clock.getAsLong() + timeoutMillis;
+        tombstones.put(sessionId, until);
+        tombstoneBuckets.computeIfAbsent(toTick(until), key -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    private boolean isTombstoned(String sessionId) {
+        Long until = tombstones.get(sessionId);
+        return until != null && until > clock.getAsLong();
+    }
+
+    //다른 스레드가 이미 지웠거나 새로 만든 세션이면 건드리지 않는다
+    private boolean removeSession(String sessionId, Session session) {
+        if (!sessions.remove(sessionId, session)) {
+            return false;
+        }
+        sessionStore.remove(sessionId);
+        return true;
+    }
+
+    private void scheduleExpiry(String sessionId, long expireAt) {
+        expiryBuckets.computeIfAbsent(toTick(expireAt), key -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    //올림해서 만료 시각이 지난 뒤에 확인되도록
+    private static long toTick(long expireAt) {
+        return (expireAt + TICK_MILLIS - 1) / TICK_MILLIS;
+    }
+
+    //세션의 마지막 접근 시간, 값은 SessionStore에
+    private static final class Session {
+
+        private volatile long lastAccessedTime;
+
+        private Session(long lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+        }
+
+        private boolean isExpired(long now, long timeoutMillis) {
+            return now - lastAccessedTime >= timeoutMillis;
+        }
+
+        //매 요청마다 같은 값을 쓰지 않도록 틱 단위로만 갱신
+        private void touch(long now) {
+            if (now - lastAccessedTime >= TICK_MILLIS) {
+                lastAccessedTime = now;
+            }
+        }
     }
 
 }
@@ -0,0 +1,18 @@
+package hello.login.web.session;
+
+/**
+ * 세션 복제
+ * //노드가 여러 대면 A 노드에서 만든 세션을 B 노드는 모른다
+ * //SessionManager 는 세션을 만들거나 로그아웃할 때 여기에 알리고, 모르는 세션 id 가 오면 여기에 물어본다
+ */
+public interface SessionReplication {
+
+    //다른 노드로 보낼 세션 생성, 기다리지 않는다
+    void sessionCreated(String sessionId, Object value);
+
+    //다른 노드로 보낼 로그아웃, 기다리지 않는다
+    void sessionExpired(String sessionId);
+
+    //다른 노드에 있는 세션 값, 아무 노드에도 없으면 null
+    Object fetch(String sessionId);
+}
@@ -0,0 +1,20 @@
+package hello.login.web.session;
+
+/**
+ * 세션 값 저장소
+ * //SessionManager는 세션 id, 마지막 접근 시간, 만료 정책만 관리하고 실제 값(Member 등)은 여기에 맡긴다
+ * //session.store.type 으로 구현을 고른다 (memory: 힙 메모리, mapped: 메모리 맵 파일)
+ */
+public interface SessionStore {
+
+    void put(String sessionId, Object value);
+
+    //없으면 null
+    Object get(String sessionId);
+
+    void remove(String sessionId);
+
+    //재시작 후에도 남아있는 세션 id들, SessionManager가 시작할 때 다시 등록한다
+    //오래된 것부터, 최대 세션 수를 넘으면 SessionManager가 앞쪽부터 버린다
+    Iterable<String> sessionIds();
+}
@@ -0,0 +1,44 @@
+package hello.login.web.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * 세션 값 직렬화
+ * //힙 밖 파일(MappedSessionStore)에 두거나 다른 노드(SessionReplicator)로 보내는 세션 값을 바이트로 바꾼다
+ * //읽을 때는 세션 값으로 쓰는 클래스만 역직렬화한다, 파일이나 네트워크에서 온 바이트로 아무 클래스나 만들지 않게
+ * //세션 값으로 쓰는 클래스를 늘리면 FILTER 에도 적는다
+ */
+public final class SessionValues {
+
+    public static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "hello.login.domain.member.LoginMember;hello.login.domain.member.Member;"
+                    + "java.lang.Long;java.lang.Number;java.lang.String;maxdepth=4;maxrefs=64;maxbytes=65536;!*");
+
+    private SessionValues() {
+    }
+
+    public static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("세션 값은 Serializable 이어야 합니다: " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    //FILTER 에 없는 클래스가 들어있으면 IllegalStateException
+    public static Object deserialize(byte[] payload) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            in.setObjectInputFilter(FILTER);
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("세션 값을 읽을 수 없습니다", e);
+        }
+    }
+}
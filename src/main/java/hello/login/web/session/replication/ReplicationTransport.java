@@ -0,0 +1,30 @@
+package hello.login.web.session.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 노드 사이 전송
+ * //세션을 모르고 바이트만 주고받는다, 묶음(batch) 보내기와 물어보고 답 받기(fetch) 두 가지
+ * //구현을 바꾸면 다른 전송 방식(멀티캐스트, 메시지 큐 등)으로 바꿀 수 있다
+ */
+public interface ReplicationTransport extends Closeable {
+
+    //받기 시작, 받은 묶음과 질문은 receiver 로
+    void start(Receiver receiver) throws IOException;
+
+    //모든 노드에 보낸다, 보내지 못한 노드는 건너뛴다 (그 노드는 나중에 fetch 로 가져간다)
+    //모든 노드가 받았으면 true, 아니면 로그아웃만 다시 보낸다
+    boolean publish(byte[] batch);
+
+    //노드에 차례로 물어보고 처음 받은 답, 아무도 없으면 null
+    byte[] fetch(byte[] request);
+
+    interface Receiver {
+
+        void onBatch(byte[] batch);
+
+        //답이 없으면 null
+        byte[] onFetch(byte[] request);
+    }
+}
@@ -0,0 +1,369 @@
+package hello.login.web.session.replication;
+
+import hello.login.web.IdGenerator;
+import hello.login.web.session.SessionManager;
+import hello.login.web.session.SessionReplication;
+import hello.login.web.session.SessionValues;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 세션 복제
+ * //세션 생성, 로그아웃을 큐에 넣기만 하고 요청 스레드는 바로 돌아간다
+ * //보내는 스레드 하나가 큐에 쌓인 만큼(최대 max-batch) 한 묶음으로 모든 노드에 보낸다
+ * //한가할 때는 하나씩 바로, 몰릴 때는 한 번에 많이 (WriteAheadLog 의 group commit 과 같은 방식)
+ *
+ * //큐가 차거나 노드가 잠깐 죽어서 받지 못한 세션은 그 노드에 요청이 왔을 때 다른 노드에 물어서 가져간다 (read-through)
+ * //접근 시간은 보내지 않는다, 노드마다 받은 때부터 따로 타임아웃을 센다
+ * //로그아웃은 read-through 로 대신할 수 없으므로 버리지 않는다, 큐가 차거나 받지 못한 노드가 있으면 RETRY_MILLIS 뒤에 다시 보낸다
+ * //세션 타임아웃이 지나도록 받지 못한 노드는 그 사이 접근이 없었다면 이미 타임아웃으로 지웠으므로 그때 그만 보낸다
+ * //로그아웃한 세션은 SessionManager 가 타임아웃 동안 다시 받지 않는다 (아직 로그아웃을 받지 못한 노드에 물어봐도)
+ *
+ * //묻기 전에 세션 id 형식을 보고, 동시에 묻는 요청 수는 max-concurrent-fetches 까지 (넘치면 없는 세션으로)
+ *
+ * //묶음: [개수(int)] 뒤로 [종류(byte)][세션 id(UTF)] 생성이면 [값 길이(int)][직렬화한 값]
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.replication.enabled", havingValue = "true")
+public class SessionReplicator implements SessionReplication {
+
+    private static final byte CREATED = 1;
+    private static final byte EXPIRED = 2;
+
+    //없는 세션을 물어봤던 id 는 잠시 다시 묻지 않는다, 아무 쿠키나 보내는 봇이 요청마다 다른 노드를 부르지 않게
+    private static final long MISS_CACHE_MILLIS = 1000;
+    private static final int MAX_MISSES = 10_000;
+    //받지 못한 노드가 있는 로그아웃을 다시 보내는 간격
+    private static final long RETRY_MILLIS = 1000;
+
+    private final SessionManager sessionManager;
+    private final ReplicationTransport transport;
+    private final BlockingQueue<Delta> queue;
+    private final int maxBatch;
+    private final Map<String, Long> misses = new ConcurrentHashMap<>();
+    private final Semaphore fetchPermits;
+    //다시 보낼 로그아웃 -> 로그아웃한 시각, 큐가 차면 요청 스레드도 여기에 넣는다
+    private final Map<String, Long> pendingExpired = new ConcurrentHashMap<>();
+
+    //보낸 묶음 수, 버린 수(큐가 차서 버린 생성, 타임아웃까지 보내지 못한 로그아웃)
+    //다른 노드에서 가져온 세션 수, 동시에 묻는 요청이 많아서 묻지 않은 수
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder fetchedCount = new LongAdder();
+    private final LongAdder skippedFetchCount = new LongAdder();
+
+    private Thread sender;
+
+    //session.replication.bind 에서 받고 session.replication.peers 로 보낸다, 예) 127.0.0.1:9101
+    //노드끼리 같은 session.replication.secret(Base64, 32바이트 이상)이 있어야 한다
+    @Autowired
+    public SessionReplicator(SessionManager sessionManager,
+                             @Value("${session.replication.bind:127.0.0.1:9101}") String bind,
+                             @Value("${session.replication.peers:}") String peers,
+                             @Value("${session.replication.secret:}") String secret,
+                             @Value("${session.replication.timeout-ms:200}") int timeoutMillis,
+                             @Value("${session.replication.queue-capacity:10000}") int queueCapacity,
+                             @Value("${session.replication.max-batch:256}") int maxBatch,
+                             @Value("${session.replication.max-concurrent-fetches:8}") int maxConcurrentFetches,
+                             @Value("${session.replication.max-connections:64}") int maxConnections) throws IOException {
+        this(sessionManager, new SocketReplicationTransport(parseAddress(bind), parseAddresses(peers), timeoutMillis,
+                        Base64.getDecoder().decode(secret), maxConnections),
+                queueCapacity, maxBatch, maxConcurrentFetches);
+    }
+
+    public SessionReplicator(SessionManager sessionManager, ReplicationTransport transport, int queueCapacity,
+                             int maxBatch, int maxConcurrentFetches) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be positive: " + maxConcurrentFetches);
+        }
+        this.sessionManager = sessionManager;
+        this.transport = transport;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.fetchPermits = new Semaphore(maxConcurrentFetches);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        transport.start(new ReplicationTransport.Receiver() {
+            @Override
+            public void onBatch(byte[] batch) {
+                apply(batch);
+            }
+
+            @Override
+            public byte[] onFetch(byte[] request) {
+                Object value = sessionManager.findLocal(new String(request, StandardCharsets.UTF_8));
+                return value == null ? null : SessionValues.serialize(value);
+            }
+        });
+        sender = new Thread(this::sendLoop, "session-replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+        sessionManager.setReplication(this);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        sessionManager.setReplication(null);
+        if (sender != null) {
+            sender.interrupt();
+        }
+        transport.close();
+    }
+
+    //큐가 차면 버린다, 요청 스레드가 복제 때문에 기다리지 않게
+    @Override
+    public void sessionCreated(String sessionId, Object value) {
+        offer(new Delta(CREATED, sessionId, value, 0));
+    }
+
+    @Override
+    public void sessionExpired(String sessionId) {
+        misses.remove(sessionId);
+        offer(new Delta(EXPIRED, sessionId, null, System.currentTimeMillis()));
+    }
+
+    //요청 스레드에서 다른 노드에 묻는다, 모든 노드를 합쳐 최대 timeout-ms
+    @Override
+    public Object fetch(String sessionId) {
+        if (!IdGenerator.isSessionId(sessionId)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Long missedAt = misses.get(sessionId);
+        if (missedAt != null && now - missedAt < MISS_CACHE_MILLIS) {
+            return null;
+        }
+
+        //묻는 요청이 몰리면 기다리지 않고 없는 세션으로 (다시 로그인), 요청 스레드가 다른 노드 때문에 쌓이지 않게
+        if (!fetchPermits.tryAcquire()) {
+            skippedFetchCount.increment();
+            return null;
+        }
+        byte[] answer;
+        try {
+            answer = transport.fetch(sessionId.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            fetchPermits.release();
+        }
+        if (answer == null) {
+            rememberMiss(sessionId, now);
+            return null;
+        }
+        misses.remove(sessionId);
+        try {
+            Object value = SessionValues.deserialize(answer);
+            fetchedCount.increment();
+            return value;
+        } catch (IllegalStateException e) {
+            //읽을 수 없는 값이면 세션이 없는 것과 같이 다시 로그인
+            log.warn("replicated session value rejected", e);
+            return null;
+        }
+    }
+
+    public long getSentBatches() {
+        return sentBatches.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getFetchedCount() {
+        return fetchedCount.sum();
+    }
+
+    public long getSkippedFetchCount() {
+        return skippedFetchCount.sum();
+    }
+
+    //가득 차면 지난 것만 지운다, 지난 것이 없으면 이번 것은 적지 않는다 (묻는 수는 fetchPermits 로 이미 묶여 있다)
+    private void rememberMiss(String sessionId, long now) {
+        if (misses.size() >= MAX_MISSES) {
+            misses.values().removeIf(missedAt -> now - missedAt >= MISS_CACHE_MILLIS);
+            if (misses.size() >= MAX_MISSES) {
+                return;
+            }
+        }
+        misses.put(sessionId, now);
+    }
+
+    //큐가 차도 로그아웃은 다시 보낼 목록으로, 생성은 버린다 (다른 노드가 물어서 가져간다)
+    private void offer(Delta delta) {
+        if (queue.offer(delta)) {
+            return;
+        }
+        if (delta.type == EXPIRED) {
+            pendingExpired.putIfAbsent(delta.sessionId, delta.expiredAt);
+        } else {
+            droppedCount.increment();
+        }
+    }
+
+    private void sendLoop() {
+        List<Delta> batch = new ArrayList<>(maxBatch);
+        //묶음마다 새로 만들지 않고 계속 쓴다
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                //새 변경이 없어도 RETRY_MILLIS 마다 깨서 다시 보낼 로그아웃을 확인한다
+                //큐가 찬 동안 요청 스레드가 넣은 로그아웃은 큐를 깨우지 않는다
+                Delta first = queue.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                }
+                takePendingExpired(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                bytes.reset();
+                encode(batch, new DataOutputStream(bytes));
+                if (!transport.publish(bytes.toByteArray())) {
+                    retryExpired(batch);
+                }
+                sentBatches.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | IOException e) {
+                //값 하나를 직렬화하지 못해도 보내는 스레드는 계속 돈다, 그 묶음의 세션은 다른 노드가 물어서 가져간다
+                log.warn("session replication batch failed", e);
+                retryExpired(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    //묶음에 자리가 남는 만큼, 로그아웃한 지 세션 타임아웃이 지난 것은 그만 보낸다
+    private void takePendingExpired(List<Delta> batch) {
+        long giveUpBefore = System.currentTimeMillis() - sessionManager.getTimeoutMillis();
+        int dropped = 0;
+        Iterator<Map.Entry<String, Long>> iterator = pendingExpired.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < maxBatch) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            if (entry.getValue() < giveUpBefore) {
+                dropped++;
+            } else {
+                batch.add(new Delta(EXPIRED, entry.getKey(), null, entry.getValue()));
+            }
+        }
+        if (dropped > 0) {
+            droppedCount.add(dropped);
+            log.warn("{} session expiries not delivered within session timeout", dropped);
+        }
+    }
+
+    //받지 못한 노드가 있는 로그아웃은 로그아웃한 시각 그대로 다시 보낸다, 받은 노드는 한 번 더 지울 뿐이다
+    private void retryExpired(List<Delta> batch) {
+        for (Delta delta : batch) {
+            if (delta.type == EXPIRED) {
+                pendingExpired.putIfAbsent(delta.sessionId, delta.expiredAt);
+            }
+        }
+    }
+
+    //직렬화는 보내는 스레드에서, 세션 값은 넣은 뒤에 바꾸지 않는다고 본다 (LoginMember 는 불변)
+    private static void encode(List<Delta> batch, DataOutputStream out) throws IOException {
+        out.writeInt(batch.size());
+        for (Delta delta : batch) {
+            out.writeByte(delta.type);
+            out.writeUTF(delta.sessionId);
+            if (delta.type == CREATED) {
+                byte[] value = SessionValues.serialize(delta.value);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        }
+        out.flush();
+    }
+
+    private void apply(byte[] batch) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte type = in.readByte();
+                String sessionId = in.readUTF();
+                if (type == CREATED) {
+                    byte[] value = new byte[in.readInt()];
+                    in.readFully(value);
+                    misses.remove(sessionId);
+                    sessionManager.putReplica(sessionId, SessionValues.deserialize(value));
+                } else if (type == EXPIRED) {
+                    sessionManager.removeReplica(sessionId);
+                } else {
+                    throw new IllegalArgumentException("unknown session delta: " + type);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("invalid session replication batch", e);
+        }
+    }
+
+    private static List<InetSocketAddress> parseAddresses(String addresses) {
+        List<InetSocketAddress> parsed = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            if (!address.isBlank()) {
+                parsed.add(parseAddress(address.trim()));
+            }
+        }
+        return parsed;
+    }
+
+    //host:port
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("address must be host:port: " + address);
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    private static final class Delta {
+
+        private final byte type;
+        private final String sessionId;
+        private final Object value;
+        //로그아웃한 시각, 다시 보내기를 언제 그만둘지
+        private final long expiredAt;
+
+        private Delta(byte type, String sessionId, Object value, long expiredAt) {
+            this.type = type;
+            this.sessionId = sessionId;
+            this.value = value;
+            this.expiredAt = expiredAt;
+        }
+    }
+}
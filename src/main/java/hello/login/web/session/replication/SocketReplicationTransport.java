@@ -0,0 +1,516 @@
+package hello.login.web.session.replication;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP 소켓 전송
+ * //노드마다 bind 주소에서 받고, peers 로 적은 노드마다 묶음용 연결 하나와 질문용 연결 몇 개를 열어 두고 계속 쓴다
+ * //한 서버에서 포트만 다르게 여러 노드를 띄워(127.0.0.1) 복제를 시험할 수 있다
+ *
+ * //프레임: [종류(byte)][길이(int)][내용][HMAC-SHA256(32)]
+ * //BATCH 에는 반영한 뒤 ACK, FETCH 에는 같은 연결로 FOUND 또는 NOT_FOUND
+ * //ACK 를 받아야 보낸 것으로 친다, 끊긴 줄 모르고 쓴 묶음(로그아웃)을 보냈다고 여기지 않게
+ * //묶음은 보내는 스레드 하나만 쓰는 연결로, 질문은 질문용 연결로 보내서 서로 기다리지 않는다
+ * //답을 기다리다 timeout 이 나면 늦게 온 답을 다음 질문이 읽지 않게 그 연결만 닫는다
+ *
+ * //서명: 받는 쪽이 연결마다 보낸 임의의 값(nonce), 방향, 그 방향의 프레임 순번, 프레임을 공유 비밀키(secret)로 서명한다
+ * //키가 없는 노드는 프레임을 만들 수 없고, 녹음한 프레임을 다른 연결이나 다른 순서로 다시 보내도 맞지 않는다
+ * //맞지 않는 프레임은 버리고 연결을 닫는다, 내용은 암호화하지 않으므로 노드 사이는 내부망으로
+ *
+ * //받은 연결은 첫 프레임을 timeout-ms 안에, 그 뒤로는 IDLE_TIMEOUT_MILLIS 안에 보내지 않으면 닫는다
+ * //받은 연결마다 스레드 하나, 최대 max-connections 개까지이고 넘치는 연결은 바로 닫는다
+ * //보내는 쪽은 그 절반 넘게 쉰 연결을 쓰지 않고 새로 연다, 받은 쪽이 닫는 중인 연결에 쓰지 않게
+ */
+@Slf4j
+public class SocketReplicationTransport implements ReplicationTransport {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+    private static final byte BATCH = 1;
+    private static final byte FETCH = 2;
+    private static final byte FOUND = 3;
+    private static final byte NOT_FOUND = 4;
+    private static final byte ACK = 5;
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int NONCE_LENGTH = 16;
+    private static final int MIN_SECRET_LENGTH = 32;
+    //연결한 쪽 -> 받은 쪽, 받은 쪽 -> 연결한 쪽
+    private static final byte TO_ACCEPTOR = 0;
+    private static final byte TO_CONNECTOR = 1;
+
+    //잘못된 길이 값으로 큰 배열을 만들지 않게
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    //연결이 안 되는 노드는 이 시간 동안 건너뛴다, 죽은 노드 때문에 요청마다 connect timeout 을 기다리지 않게
+    private static final long RETRY_MILLIS = 1000;
+    //노드마다 쉬는 질문용 연결은 이만큼만 남긴다, 동시에 묻는 수는 SessionReplicator 가 제한한다
+    private static final int MAX_IDLE_FETCH_CONNECTIONS = 8;
+    //서명이 맞는 프레임을 보낸 연결이 다음 프레임 없이 쉴 수 있는 시간
+    private static final int IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final long REUSE_MILLIS = IDLE_TIMEOUT_MILLIS / 2;
+
+    private final ServerSocket serverSocket;
+    private final List<Peer> peers = new ArrayList<>();
+    private final int timeoutMillis;
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    //받은 연결, 닫을 때 읽고 있는 스레드를 깨우려고
+    private final Set<Connection> accepted = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor threads;
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    public SocketReplicationTransport(InetSocketAddress bind, List<InetSocketAddress> peers, int timeoutMillis,
+                                      byte[] secret) throws IOException {
+        this(bind, peers, timeoutMillis, secret, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param secret 노드끼리 같은 32바이트 이상의 키
+     * @param maxConnections 동시에 받는 연결 수, 노드마다 묶음용 하나와 질문용 몇 개를 연다
+     */
+    public SocketReplicationTransport(InetSocketAddress bind, List<InetSocketAddress> peers, int timeoutMillis,
+                                      byte[] secret, int maxConnections) throws IOException {
+        //키가 없으면 누구나 프레임을 만들 수 있다, 127.0.0.1 이라도 같은 서버의 다른 프로세스가 있다
+        if (secret == null || secret.length < MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("session.replication.secret is required (at least " + MIN_SECRET_LENGTH + " bytes)");
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+        }
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.timeoutMillis = timeoutMillis;
+        for (InetSocketAddress address : peers) {
+            this.peers.add(new Peer(address));
+        }
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bind);
+
+        //쌓아 두지 않고 빈 스레드가 없으면 거절한다 (연결을 닫는다)
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.threads = new ThreadPoolExecutor(0, maxConnections, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "session-replication-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //bind 포트가 0 이면 정해진 포트
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        acceptor = new Thread(() -> acceptLoop(receiver), "session-replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    public boolean publish(byte[] batch) {
+        boolean delivered = true;
+        for (Peer peer : peers) {
+            try {
+                peer.send(batch);
+            } catch (IOException e) {
+                delivered = false;
+                log.debug("replication batch not sent to {}: {}", peer.address, e.toString());
+            }
+        }
+        return delivered;
+    }
+
+    //모든 노드를 합쳐 timeout-ms 안에, 앞 노드가 늦으면 뒤 노드에는 남은 시간만큼
+    @Override
+    public byte[] fetch(byte[] request) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Peer peer : peers) {
+            try {
+                byte[] answer = peer.request(request, deadline);
+                if (answer != null) {
+                    return answer;
+                }
+            } catch (IOException e) {
+                log.debug("replication fetch from {} failed: {}", peer.address, e.toString());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Connection connection : accepted) {
+            connection.close();
+        }
+        for (Peer peer : peers) {
+            peer.close();
+        }
+        threads.shutdownNow();
+        try {
+            if (acceptor != null) {
+                acceptor.join(timeoutMillis);
+            }
+            threads.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop(Receiver receiver) {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    threads.execute(() -> serve(socket, receiver));
+                } catch (RejectedExecutionException e) {
+                    closeQuietly(socket);
+                    if (!closed) {
+                        log.warn("replication connection from {} rejected: max-connections reached", socket.getRemoteSocketAddress());
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("replication accept failed", e);
+                }
+            }
+        }
+    }
+
+    //연결 하나에서 오는 프레임을 차례로 처리, 노드 하나가 보낸 묶음은 보낸 순서대로 반영된다
+    private void serve(Socket socket, Receiver receiver) {
+        Connection connection = null;
+        try {
+            connection = accept(socket);
+            accepted.add(connection);
+            //서명이 맞는 프레임을 받기 전까지는 짧게, 키가 없는 쪽이 연결만 열어 두고 스레드를 붙잡지 못하게
+            connection.setTimeout(timeoutMillis);
+            while (!closed) {
+                Frame frame = connection.read();
+                if (frame == null) {
+                    return;
+                }
+                connection.setTimeout(IDLE_TIMEOUT_MILLIS);
+                if (frame.type == BATCH) {
+                    try {
+                        receiver.onBatch(frame.body);
+                    } catch (RuntimeException e) {
+                        //묶음 하나가 잘못되어도 연결은 계속 쓴다, 서명이 맞았으므로 프레임 경계는 맞다
+                        log.warn("replication batch from {} failed", socket.getRemoteSocketAddress(), e);
+                    }
+                    connection.write(ACK, EMPTY);
+                } else if (frame.type == FETCH) {
+                    byte[] answer = receiver.onFetch(frame.body);
+                    connection.write(answer == null ? NOT_FOUND : FOUND, answer == null ? EMPTY : answer);
+                } else {
+                    throw new IOException("unknown replication frame: " + frame.type);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                log.debug("replication connection {} closed: {}", socket.getRemoteSocketAddress(), e.toString());
+            }
+        } finally {
+            if (connection != null) {
+                accepted.remove(connection);
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    //받은 쪽이 nonce 를 먼저 보낸다
+    private Connection accept(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.write(nonce);
+        out.flush();
+        return new Connection(socket, out, nonce, TO_CONNECTOR, TO_ACCEPTOR);
+    }
+
+    private Connection connect(InetSocketAddress address, int connectTimeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, connectTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(connectTimeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Connection connection = new Connection(socket, out, null, TO_ACCEPTOR, TO_CONNECTOR);
+            connection.readNonce();
+            return connection;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Frame {
+
+        private final int type;
+        private final byte[] body;
+
+        private Frame(int type, byte[] body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+
+    //서명하는 연결, 한 번에 한 스레드만 쓴다
+    private final class Connection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Mac mac = newMac();
+        private final byte[] counter = new byte[8];
+        private final byte[] header = new byte[5];
+        private final byte outbound;
+        private final byte inbound;
+        private byte[] nonce;
+        private long sent;
+        private long received;
+        //마지막으로 답을 받은 시각, 보내는 쪽에서 오래 쉰 연결을 다시 쓰지 않으려고
+        private long lastUsed = System.currentTimeMillis();
+
+        private Connection(Socket socket, DataOutputStream out, byte[] nonce, byte outbound, byte inbound) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = out;
+            this.nonce = nonce;
+            this.outbound = outbound;
+            this.inbound = inbound;
+        }
+
+        private void readNonce() throws IOException {
+            byte[] read = new byte[NONCE_LENGTH];
+            in.readFully(read);
+            nonce = read;
+        }
+
+        private void write(byte type, byte[] body) throws IOException {
+            out.writeByte(type);
+            out.writeInt(body.length);
+            out.write(body);
+            out.write(sign(outbound, sent++, type, body));
+            out.flush();
+        }
+
+        //연결이 끝났으면 null, 서명이 맞지 않으면 IOException (연결을 닫는다)
+        private Frame read() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME_LENGTH) {
+                throw new IOException("invalid replication frame length: " + length);
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            byte[] signature = new byte[MAC_LENGTH];
+            in.readFully(signature);
+            if (!MessageDigest.isEqual(signature, sign(inbound, received++, (byte) type, body))) {
+                //키가 다르거나 위조, 다시 보낸 프레임
+                log.warn("replication frame from {} dropped: signature mismatch", socket.getRemoteSocketAddress());
+                throw new IOException("replication frame signature mismatch");
+            }
+            return new Frame(type, body);
+        }
+
+        private byte[] sign(byte direction, long sequence, byte type, byte[] body) {
+            for (int i = 7; i >= 0; i--) {
+                counter[i] = (byte) sequence;
+                sequence >>>= 8;
+            }
+            header[0] = type;
+            header[1] = (byte) (body.length >>> 24);
+            header[2] = (byte) (body.length >>> 16);
+            header[3] = (byte) (body.length >>> 8);
+            header[4] = (byte) body.length;
+            mac.update(nonce);
+            mac.update(direction);
+            mac.update(counter);
+            mac.update(header);
+            mac.update(body);
+            return mac.doFinal();
+        }
+
+        private void setTimeout(long millis) throws IOException {
+            socket.setSoTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, millis)));
+        }
+
+        private boolean isStale(long now) {
+            return now - lastUsed > REUSE_MILLIS;
+        }
+
+        private void close() {
+            closeQuietly(socket);
+        }
+    }
+
+    //보내는 쪽 연결, 처음 쓸 때 연결하고 끊기면 다음에 다시
+    private final class Peer {
+
+        private final InetSocketAddress address;
+        //묶음용, 보내는 스레드만 쓴다 (닫기와만 겹친다)
+        private Connection batchConnection;
+        //질문용, 쓰는 동안은 꺼내 두고 다 쓰면 돌려놓는다
+        private final BlockingDeque<Connection> idleFetchConnections = new LinkedBlockingDeque<>();
+        private volatile long retryAt;
+
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private synchronized void send(byte[] batch) throws IOException {
+            if (batchConnection != null && batchConnection.isStale(System.currentTimeMillis())) {
+                batchConnection.close();
+                batchConnection = null;
+            }
+            if (batchConnection == null) {
+                batchConnection = open(timeoutMillis);
+            }
+            try {
+                batchConnection.setTimeout(timeoutMillis);
+                batchConnection.write(BATCH, batch);
+                Frame frame = batchConnection.read();
+                if (frame == null || frame.type != ACK) {
+                    throw new IOException("unexpected replication answer: " + (frame == null ? "closed" : frame.type));
+                }
+                batchConnection.lastUsed = System.currentTimeMillis();
+            } catch (IOException e) {
+                batchConnection.close();
+                batchConnection = null;
+                throw e;
+            }
+        }
+
+        //없으면 null, deadline 이 지나면 SocketTimeoutException
+        //답이 늦은 연결만 닫는다, 노드를 건너뛰게 하지 않아서 묶음(로그아웃 포함)은 계속 보낸다
+        private byte[] request(byte[] request, long deadline) throws IOException {
+            Connection connection = idleFetchConnections.pollFirst();
+            //가장 최근에 쓴 것부터 앞에 있으므로 오래 쉰 것이 나오면 뒤도 모두 오래 쉰 것
+            if (connection != null && connection.isStale(System.currentTimeMillis())) {
+                connection.close();
+                drainIdle();
+                connection = null;
+            }
+            if (connection == null) {
+                connection = open(remaining(deadline));
+            }
+            boolean reusable = false;
+            try {
+                connection.setTimeout(remaining(deadline));
+                connection.write(FETCH, request);
+                Frame frame = connection.read();
+                if (frame == null || (frame.type != FOUND && frame.type != NOT_FOUND)) {
+                    throw new IOException("unexpected replication answer: " + (frame == null ? "closed" : frame.type));
+                }
+                reusable = true;
+                connection.lastUsed = System.currentTimeMillis();
+                return frame.type == FOUND ? frame.body : null;
+            } finally {
+                if (reusable && !closed && idleFetchConnections.size() < MAX_IDLE_FETCH_CONNECTIONS) {
+                    idleFetchConnections.offerFirst(connection);
+                    //닫기와 엇갈려 돌려놓은 연결
+                    if (closed) {
+                        drainIdle();
+                    }
+                } else {
+                    connection.close();
+                }
+            }
+        }
+
+        private Connection open(long connectTimeoutMillis) throws IOException {
+            if (closed) {
+                throw new IOException("transport closed");
+            }
+            if (System.currentTimeMillis() < retryAt) {
+                throw new IOException("peer unavailable until retry");
+            }
+            try {
+                return connect(address, (int) Math.max(1, connectTimeoutMillis));
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                throw e;
+            }
+        }
+
+        private long remaining(long deadline) throws SocketTimeoutException {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("replication fetch timed out");
+            }
+            return remaining;
+        }
+
+        private void close() {
+            synchronized (this) {
+                if (batchConnection != null) {
+                    batchConnection.close();
+                    batchConnection = null;
+                }
+            }
+            drainIdle();
+        }
+
+        private void drainIdle() {
+            Connection connection;
+            while ((connection = idleFetchConnections.pollFirst()) != null) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package hello.login.web.token;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * URL-safe Base64 (패딩 없음)
+ * //토큰은 인증된 요청마다 확인한다, Base64.getUrlDecoder().decode(String) 은 문자열을 byte[] 로 한 번 복사하고 결과 배열을 또 만든다
+ * //여기서는 문자열의 start ~ end 를 바로 읽어서 호출한 쪽이 넘긴 배열에 채운다, substring 도 새 배열도 없다
+ */
+final class Base64Url {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    //발급할 때만 쓰므로 JDK 인코더 그대로
+    static String encode(byte[] bytes) {
+        return ENCODER.encodeToString(bytes);
+    }
+
+    /**
+     * 디코딩
+     * //허용하지 않는 문자, 길이가 맞지 않음, dst 보다 김, 마지막 문자에 남는 비트가 0이 아님 -> -1
+     * //남는 비트까지 막아야 같은 바이트를 여러 문자열로 쓸 수 없다
+     * @return dst 에 채운 바이트 수
+     */
+    static int decode(String src, int start, int end, byte[] dst) {
+        if ((end - start) % 4 == 1) {
+            return -1;
+        }
+        int out = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = start; i < end; i++) {
+            char c = src.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                if (out == dst.length) {
+                    return -1;
+                }
+                bitCount -= 8;
+                dst[out++] = (byte) (bits >> bitCount);
+            }
+        }
+        if ((bits & ((1 << bitCount) - 1)) != 0) {
+            return -1;
+        }
+        return out;
+    }
+}
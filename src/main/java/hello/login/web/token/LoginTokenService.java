@@ -0,0 +1,334 @@
+package hello.login.web.token;
+
+import hello.login.domain.member.LoginMember;
+import hello.login.web.SessionConst;
+import hello.login.web.session.SessionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 서명한 로그인 토큰 (세션 대신)
+ * //세션은 로그인마다 서버에 값을 남기므로 노드를 늘리면 같은 노드로만 보내거나(sticky) 세션을 나눠 가져야 한다
+ * //login.token.enabled=true 면 로그인할 때 회원 정보와 만료 시각을 HMAC-SHA256 으로 서명해서 쿠키로 주고
+ * //요청이 오면 서명과 만료 시각만 확인한다, 세션 저장소를 보지 않으므로 어느 노드로 가도 된다
+ *
+ * //토큰: base64url(내용).base64url(서명)
+ * //내용: 버전(1) 키 id(1) 회원 id(8) 만료 시각 ms(8) 토큰 id(8) 로그인 id 길이(1) 로그인 id 이름 길이(1) 이름
+ * //내용은 서명만 하고 암호화하지 않는다, 비밀번호처럼 숨겨야 할 값은 넣지 않는다
+ *
+ * //키 교체: login.token.keys 에 새 키를 추가하고 active-key 를 바꾼다
+ * //예전 키는 그 키로 발급한 토큰이 다 만료될 때까지(ttl) 남겨두었다가 뺀다, 뺀 키로 서명된 토큰은 바로 거절
+ * //노드끼리 키가 같아야 한다, 키를 설정하지 않으면 띄울 때마다 임의의 키라서 재시작하면 모두 다시 로그인
+ *
+ * //세션처럼 요청마다 만료 시간이 늘어나지 않는다, 로그인하고 ttl 이 지나면 다시 로그인
+ * //로그아웃한 토큰은 RevocationFilter 로 막는다, 이 노드에서만이므로 다른 노드에서는 만료될 때까지 쓸 수 있다
+ */
+@Slf4j
+@Component
+public class LoginTokenService {
+
+    public static final String TOKEN_COOKIE_NAME = "loginToken";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int MAC_LENGTH = 32;
+    private static final int MIN_KEY_LENGTH = 32;
+    //버전, 키 id, 회원 id, 만료 시각, 토큰 id
+    private static final int HEADER_LENGTH = 1 + 1 + 8 + 8 + 8;
+    private static final int MEMBER_ID_OFFSET = 2;
+    private static final int EXPIRES_AT_OFFSET = 10;
+    private static final int TOKEN_ID_OFFSET = 18;
+    //로그인 id, 이름은 UTF-8 255바이트까지
+    private static final int MAX_FIELD_LENGTH = 255;
+    private static final int MAX_PAYLOAD_LENGTH = HEADER_LENGTH + 2 * (1 + MAX_FIELD_LENGTH);
+
+    //디코딩, 서명 계산에 쓰는 배열은 스레드마다 하나씩 두고 계속 쓴다
+    private static final ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(Scratch::new);
+
+    private final boolean enabled;
+    //키 id(0 ~ 255) -> 키, 키 id 가 토큰 안에 있으므로 찾는 건 배열 한 칸
+    private final SigningKey[] keys = new SigningKey[256];
+    private final SigningKey activeKey;
+    private final long ttlMillis;
+    private final RevocationFilter revoked;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    //login.token.keys=키 id:base64 키,키 id:base64 키 (키는 32바이트 이상)
+    @Autowired
+    public LoginTokenService(@Value("${login.token.enabled:false}") boolean enabled,
+                             @Value("${login.token.keys:}") String keys,
+                             @Value("${login.token.active-key:0}") int activeKeyId,
+                             @Value("${login.token.ttl-seconds:" + SessionManager.DEFAULT_TIMEOUT_SECONDS + "}") long ttlSeconds,
+                             @Value("${login.token.revocation.expected:10000}") int expectedRevocations) {
+        this(enabled, parseKeys(keys, enabled), activeKeyId, Duration.ofSeconds(ttlSeconds), expectedRevocations, System::currentTimeMillis);
+    }
+
+    //테스트에서 키와 시간을 직접 넣기 위해
+    LoginTokenService(boolean enabled, Map<Integer, byte[]> keys, int activeKeyId, Duration ttl,
+                      int expectedRevocations, LongSupplier clock) {
+        if (ttl.toMillis() <= 0) {
+            throw new IllegalArgumentException("token ttl must be positive: " + ttl);
+        }
+        for (Map.Entry<Integer, byte[]> entry : keys.entrySet()) {
+            int id = entry.getKey();
+            if (id < 0 || id >= this.keys.length) {
+                throw new IllegalArgumentException("token key id must be 0 ~ 255: " + id);
+            }
+            if (entry.getValue().length < MIN_KEY_LENGTH) {
+                throw new IllegalArgumentException("token key " + id + " must be at least " + MIN_KEY_LENGTH + " bytes");
+            }
+            this.keys[id] = new SigningKey(id, entry.getValue());
+        }
+        if (activeKeyId < 0 || activeKeyId >= this.keys.length || this.keys[activeKeyId] == null) {
+            throw new IllegalArgumentException("unknown active token key: " + activeKeyId);
+        }
+        this.enabled = enabled;
+        this.activeKey = this.keys[activeKeyId];
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.revoked = new RevocationFilter(expectedRevocations, ttlMillis, clock.getAsLong());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 토큰 발급
+     * //만료 시각은 지금 + ttl, 토큰 id 는 로그아웃할 때 이 토큰만 막기 위한 난수
+     */
+    public String issue(LoginMember member) {
+        if (member.getId() == null) {
+            throw new IllegalArgumentException("member id is required");
+        }
+        byte[] loginId = toBytes(member.getLoginId());
+        byte[] name = toBytes(member.getName());
+
+        ByteBuffer payload = ByteBuffer.allocate(HEADER_LENGTH + 2 + loginId.length + name.length);
+        payload.put(VERSION)
+                .put((byte) activeKey.id)
+                .putLong(member.getId())
+                .putLong(clock.getAsLong() + ttlMillis)
+                .putLong(random.nextLong())
+                .put((byte) loginId.length).put(loginId)
+                .put((byte) name.length).put(name);
+
+        byte[] signature = activeKey.mac().doFinal(payload.array());
+        return Base64Url.encode(payload.array()) + "." + Base64Url.encode(signature);
+    }
+
+    /**
+     * 토큰 확인
+     * //서명, 만료 시각, 로그아웃 여부를 보고 맞으면 LoginMember, 하나라도 아니면 null
+     * //저장소 조회 없이 배열 몇 개와 HMAC 한 번, 새로 만드는 객체는 LoginMember 와 문자열 두 개
+     */
+    public LoginMember verify(String token) {
+        Scratch scratch = scratches.get();
+        if (!verifySignature(token, scratch)) {
+            return null;
+        }
+        byte[] payload = scratch.payload;
+        if (revoked.mightContain(readLong(payload, TOKEN_ID_OFFSET), clock.getAsLong())) {
+            return null;
+        }
+
+        int loginIdLength = payload[HEADER_LENGTH] & 0xFF;
+        int nameOffset = HEADER_LENGTH + 1 + loginIdLength;
+        if (nameOffset >= scratch.payloadLength
+                || nameOffset + 1 + (payload[nameOffset] & 0xFF) != scratch.payloadLength) {
+            return null;
+        }
+        return new LoginMember(readLong(payload, MEMBER_ID_OFFSET),
+                new String(payload, HEADER_LENGTH + 1, loginIdLength, StandardCharsets.UTF_8),
+                new String(payload, nameOffset + 1, payload[nameOffset] & 0xFF, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 로그아웃
+     * //서명이 맞는 토큰만 막는다, 아무 값이나 보내서 필터를 채울 수 없게
+     */
+    public void revoke(String token) {
+        Scratch scratch = scratches.get();
+        if (verifySignature(token, scratch)) {
+            revoked.add(readLong(scratch.payload, TOKEN_ID_OFFSET), clock.getAsLong());
+        }
+    }
+
+    /**
+     * 요청의 로그인 회원
+     * //인터셉터(필터)와 ArgumentResolver 가 같은 요청에서 두 번 확인하지 않게 확인한 결과를 요청 속성에 둔다
+     */
+    public LoginMember authenticate(HttpServletRequest request) {
+        Object cached = request.getAttribute(SessionConst.LOGIN_MEMBER);
+        if (cached instanceof LoginMember) {
+            return (LoginMember) cached;
+        }
+        LoginMember loginMember = verify(findToken(request));
+        if (loginMember != null) {
+            request.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
+        }
+        return loginMember;
+    }
+
+    //로그인 성공, 토큰을 쿠키로
+    //스크립트에서 읽을 수 없게 HttpOnly, 쿠키는 토큰과 같이 만료
+    public void addCookie(LoginMember member, HttpServletResponse response) {
+        Cookie cookie = new Cookie(TOKEN_COOKIE_NAME, issue(member));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.min(Integer.MAX_VALUE, ttlMillis / 1000));
+        response.addCookie(cookie);
+    }
+
+    //로그아웃, 토큰을 막고 쿠키를 지운다
+    public void expireCookie(HttpServletRequest request, HttpServletResponse response) {
+        String token = findToken(request);
+        if (token != null) {
+            revoke(token);
+        }
+        Cookie cookie = new Cookie(TOKEN_COOKIE_NAME, null);
+        cookie.setPath("/");
+        cookie.setMaxAge(0);
+        response.addCookie(cookie);
+    }
+
+    //SessionManager 와 같이 Cookie 헤더 문자열에서 바로 찾는다
+    private String findToken(HttpServletRequest request) {
+        return SessionManager.findRequestCookie(request, TOKEN_COOKIE_NAME);
+    }
+
+    //서명과 만료 시각이 맞으면 true, 내용은 scratch.payload 에 남는다
+    private boolean verifySignature(String token, Scratch scratch) {
+        if (token == null) {
+            return false;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        int payloadLength = Base64Url.decode(token, 0, dot, scratch.payload);
+        if (payloadLength < HEADER_LENGTH + 2 || scratch.payload[0] != VERSION) {
+            return false;
+        }
+        if (Base64Url.decode(token, dot + 1, token.length(), scratch.signature) != MAC_LENGTH) {
+            return false;
+        }
+        //빠진 키로 서명된 토큰
+        SigningKey key = keys[scratch.payload[1] & 0xFF];
+        if (key == null) {
+            return false;
+        }
+
+        Mac mac = key.mac();
+        mac.update(scratch.payload, 0, payloadLength);
+        try {
+            mac.doFinal(scratch.expected, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        //몇 번째 바이트에서 틀렸는지 시간으로 알 수 없게 끝까지 비교
+        if (!MessageDigest.isEqual(scratch.expected, scratch.signature)) {
+            return false;
+        }
+        scratch.payloadLength = payloadLength;
+        return readLong(scratch.payload, EXPIRES_AT_OFFSET) > clock.getAsLong();
+    }
+
+    private static byte[] toBytes(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException("token field too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static Map<Integer, byte[]> parseKeys(String keys, boolean enabled) {
+        Map<Integer, byte[]> parsed = new LinkedHashMap<>();
+        for (String entry : keys.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("login.token.keys entry must be id:base64key");
+            }
+            parsed.put(Integer.parseInt(entry.substring(0, colon).trim()),
+                    Base64.getDecoder().decode(entry.substring(colon + 1).trim()));
+        }
+        if (parsed.isEmpty()) {
+            if (enabled) {
+                log.warn("login.token.keys is not set, using a random key (tokens are not valid on other nodes or after restart)");
+            }
+            byte[] key = new byte[MIN_KEY_LENGTH];
+            new SecureRandom().nextBytes(key);
+            parsed.put(0, key);
+        }
+        return parsed;
+    }
+
+    private static final class SigningKey {
+
+        private final int id;
+        private final SecretKeySpec key;
+        //Mac 은 스레드에 안전하지 않고 getInstance, init 이 비싸므로 스레드마다 만들어 두고 계속 쓴다
+        private final ThreadLocal<Mac> macs;
+
+        private SigningKey(int id, byte[] secret) {
+            this.id = id;
+            this.key = new SecretKeySpec(secret, ALGORITHM);
+            this.macs = ThreadLocal.withInitial(this::newMac);
+        }
+
+        //doFinal 이 끝나면 처음 상태로 돌아가므로 그대로 다시 쓴다
+        private Mac mac() {
+            return macs.get();
+        }
+
+        private Mac newMac() {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+        }
+    }
+
+    private static final class Scratch {
+
+        private final byte[] payload = new byte[MAX_PAYLOAD_LENGTH];
+        private final byte[] signature = new byte[MAC_LENGTH];
+        private final byte[] expected = new byte[MAC_LENGTH];
+        private int payloadLength;
+    }
+}
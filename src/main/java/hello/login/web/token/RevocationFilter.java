@@ -0,0 +1,106 @@
+package hello.login.web.token;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 로그아웃한 토큰 목록 (블룸 필터)
+ * //토큰 id 를 그대로 모아두면 로그아웃이 많을수록 메모리가 늘어난다, 비트 배열이라 크기가 고정이다
+ * //없는 토큰을 있다고 할 수는 있다(기본 약 1%), 그 토큰은 로그아웃된 것으로 보고 다시 로그인하게 된다
+ * //있는 토큰을 없다고 하는 일은 없다
+ *
+ * //토큰은 generationMillis(토큰 유효 시간 이상) 안에 만료되므로 그보다 오래 기억할 필요가 없다
+ * //세대 두 개를 두고 generationMillis 마다 새 세대로 바꾸면서 두 세대 전 것을 버린다
+ * //버리는 세대에 마지막으로 들어간 토큰도 이미 generationMillis 이상 지났으므로 만료된 뒤다
+ */
+class RevocationFilter {
+
+    //비트 수 = 예상 개수 * 9.6 이면 해시 7개일 때 오탐 약 1%
+    private static final double BITS_PER_ENTRY = 9.6;
+    private static final int HASHES = 7;
+
+    private final int mask;
+    private final long generationMillis;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    RevocationFilter(int expectedEntries, long generationMillis, long now) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException("expectedEntries must be positive: " + expectedEntries);
+        }
+        long bits = Long.highestOneBit((long) Math.ceil(expectedEntries * BITS_PER_ENTRY) - 1) << 1;
+        if (bits > 1L << 30) {
+            throw new IllegalArgumentException("expectedEntries too large: " + expectedEntries);
+        }
+        this.mask = (int) Math.max(bits, Long.SIZE) - 1;
+        this.generationMillis = generationMillis;
+        this.current = new Generation((mask + 1) / Long.SIZE, now);
+    }
+
+    void add(long tokenId, long now) {
+        AtomicLongArray words = currentGeneration(now).words;
+        long h1 = mix(tokenId);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (h1 + i * h2) & mask;
+            long flag = 1L << bit;
+            if ((words.get(bit >>> 6) & flag) == 0) {
+                words.getAndAccumulate(bit >>> 6, flag, (word, set) -> word | set);
+            }
+        }
+    }
+
+    boolean mightContain(long tokenId, long now) {
+        Generation generation = currentGeneration(now);
+        Generation old = previous;
+        long h1 = mix(tokenId);
+        long h2 = mix(h1) | 1;
+        return contains(generation.words, h1, h2) || (old != null && contains(old.words, h1, h2));
+    }
+
+    private boolean contains(AtomicLongArray words, long h1, long h2) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (h1 + i * h2) & mask;
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //세대는 요청이 올 때 확인해서 바꾼다, 별도 스레드 없음
+    //늦게 바뀌면 새 세대 시작도 그만큼 늦어지므로 기억하는 시간은 줄지 않는다
+    private Generation currentGeneration(long now) {
+        Generation generation = current;
+        if (now - generation.start < generationMillis) {
+            return generation;
+        }
+        synchronized (this) {
+            generation = current;
+            if (now - generation.start >= generationMillis) {
+                previous = generation;
+                generation = new Generation(generation.words.length(), now);
+                current = generation;
+            }
+            return generation;
+        }
+    }
+
+    //토큰 id 는 SecureRandom 값이지만 두 해시가 서로 엮이지 않게 한 번 섞는다 (splitmix64)
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray words;
+        private final long start;
+
+        private Generation(int words, long start) {
+            this.words = new AtomicLongArray(words);
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package hello.login.domain.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ColumnarItemStoreTest {
+
+    ColumnarItemStore store = new ColumnarItemStore();
+
+    @Test
+    void putGet() {
+        //given
+        Item item = createItem(1L, "itemA", 10000, 10);
+
+        //when
+        store.put(item);
+
+        //then
+        Item findItem = store.get(1L);
+        assertThat(findItem).isEqualTo(item);
+        //읽을 때마다 새 Item
+        assertThat(findItem).isNotSameAs(item);
+        assertThat(store.get(2L)).isNull();
+        assertThat(store.containsKey(1L)).isTrue();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    //가격, 수량, 이름이 없는 상품도 그대로 돌려준다
+    @Test
+    void nullFields() {
+        store.put(createItem(1L, null, null, null));
+
+        Item findItem = store.get(1L);
+        assertThat(findItem.getItemName()).isNull();
+        assertThat(findItem.getPrice()).isNull();
+        assertThat(findItem.getQuantity()).isNull();
+    }
+
+    //같은 이름은 문자열 하나를 같이 쓴다
+    @Test
+    void namePool() {
+        store.put(createItem(1L, new String("itemA"), 1000, 1));
+        store.put(createItem(2L, new String("itemA"), 1000, 1));
+
+        assertThat(store.get(1L).getItemName()).isSameAs(store.get(2L).getItemName());
+    }
+
+    //가격이 없는 상품은 건너뛰고 가격만
+    @Test
+    void forEachPrice() {
+        store.put(createItem(1L, "itemA", 1000, 1));
+        store.put(createItem(2L, "itemB", null, 1));
+        store.put(createItem(5_000L, "itemC", 3000, 1));
+
+        List<Integer> prices = new ArrayList<>();
+        store.forEachPrice(prices::add);
+
+        assertThat(prices).containsExactly(1000, 3000);
+    }
+
+    //더 쓰지 않는 이름은 풀에서 빠진다
+    @Test
+    void namePoolReleasesRenamedItems() {
+        for (int i = 0; i < 1000; i++) {
+            store.put(createItem(1L, "itemA-" + i, 1000, 1));
+        }
+        store.put(createItem(2L, "itemB", 1000, 1));
+        store.put(createItem(3L, "itemB", 1000, 1));
+        store.put(createItem(3L, "itemC", 1000, 1));
+
+        assertThat(store.namePoolSize()).isEqualTo(3);
+        assertThat(store.get(1L).getItemName()).isEqualTo("itemA-999");
+        assertThat(store.get(2L).getItemName()).isEqualTo("itemB");
+    }
+
+    //여러 청크에 걸쳐도, 수정해도 개수와 값이 맞아야 함
+    @Test
+    void valuesAcrossChunks() {
+        for (long id = 1; id <= 10_000; id++) {
+            store.put(createItem(id, "item" + id, 100, 2));
+        }
+        store.put(createItem(5_000L, "updated", 1000, 3));
+
+        assertThat(store.size()).isEqualTo(10_000);
+        assertThat(store.values()).hasSize(10_000);
+        assertThat(store.get(5_000L).getItemName()).isEqualTo("updated");
+
+        store.clear();
+        assertThat(store.isEmpty()).isTrue();
+        assertThat(store.get(5_000L)).isNull();
+    }
+
+    //수정 중인 행을 반쯤 읽으면 안 됨, 가격과 수량은 항상 같은 수정에서 나온 값
+    @Test
+    void readNeverSeesHalfUpdatedRow() throws Exception {
+        store.put(createItem(1L, "item", 0, 0));
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 1; i <= 200_000; i++) {
+                store.put(createItem(1L, "item", i, i));
+            }
+            running.set(false);
+        });
+        Future<Integer> reader = executor.submit(() -> {
+            int torn = 0;
+            while (running.get()) {
+                Item item = store.get(1L);
+                if (!item.getPrice().equals(item.getQuantity())) {
+                    torn++;
+                }
+            }
+            return torn;
+        });
+
+        writer.get();
+        assertThat(reader.get()).isZero();
+        executor.shutdown();
+    }
+
+    private Item createItem(Long id, String itemName, Integer price, Integer quantity) {
+        Item item = new Item(itemName, price, quantity);
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,61 @@
+package hello.login.domain.item;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ItemNameIndexTest {
+
+    ItemNameIndex index = new ItemNameIndex();
+
+    //상품명 단어 순서, 같은 단어 안에서는 id 순서, 여러 단어에 걸린 상품은 한 번만
+    @Test
+    void prefixOrder() {
+        index.add(3, "apple pie");
+        index.add(1, "apple juice");
+        index.add(2, "applet apple");
+        index.add(4, "banana");
+
+        assertThat(collect(index.search("app"))).containsExactly(1L, 2L, 3L);
+        assertThat(collect(index.search("applet"))).containsExactly(2L);
+        assertThat(collect(index.search("cherry"))).isEmpty();
+        assertThat(index.search(" ")).isNull();
+    }
+
+    //가장 긴 검색어 단어로만 꺼내고, 나머지 단어는 꺼낸 상품으로 확인한다
+    @Test
+    void longestTokenDrives() {
+        index.add(1, "apple juice");
+        index.add(2, "apple pie");
+
+        assertThat(collect(index.search("ju apple"))).containsExactly(1L, 2L);
+        assertThat(ItemNameIndex.matches("ju apple", "apple juice")).isTrue();
+        assertThat(ItemNameIndex.matches("ju apple", "apple pie")).isFalse();
+    }
+
+    //필요한 만큼만 꺼낸다, 한 글자 검색어라도 후보를 미리 모으지 않는다
+    @Test
+    void lazy() {
+        for (long id = 1; id <= 100_000; id++) {
+            index.add(id, "item" + id);
+        }
+
+        Iterator<Long> ids = index.search("i");
+
+        assertThat(ids.next()).isEqualTo(1L);
+        //꺼내기 시작한 뒤에 지운 상품은 아직 읽지 않은 부분이면 나오지 않는다
+        index.remove(99_999, "item99999");
+        List<Long> rest = collect(ids);
+        assertThat(rest).hasSize(99_998).doesNotContain(99_999L);
+    }
+
+    private static List<Long> collect(Iterator<Long> ids) {
+        List<Long> result = new ArrayList<>();
+        ids.forEachRemaining(result::add);
+        return result;
+    }
+}
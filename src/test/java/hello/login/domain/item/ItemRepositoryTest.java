@@ -1,9 +1,17 @@
 package hello.login.domain.item;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -11,6 +19,12 @@ class ItemRepositoryTest {
 
     ItemRepository itemRepository = new ItemRepository();
 
+    //저장소가 static 이라 스프링 테스트에서 넣은 상품(TestDataInit)이 남아 있을 수 있다
+    @BeforeEach
+    void beforeEach() {
+        itemRepository.clearStore();
+    }
+
     @AfterEach
     void afterEach() {
         itemRepository.clearStore();
@@ -46,6 +60,21 @@ class ItemRepositoryTest {
         assertThat(result).contains(item1, item2);
     }
 
+    @Test
+    void iterator() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 30000, 30));
+
+        //when
+        List<Item> result = new ArrayList<>();
+        itemRepository.iterator().forEachRemaining(result::add);
+
+        //then
+        assertThat(result).containsExactly(item1, item2, item3);
+    }
+
     @Test
     void updateItem() {
         //given
@@ -56,7 +85,7 @@ class ItemRepositoryTest {
 
         //when
         Item updateParam = new Item("item2", 20000, 30);
-        itemRepository.update(itemId, updateParam);
+        boolean updated = itemRepository.update(itemId, updateParam);
 
         Item findItem = itemRepository.findById(itemId);
 
@@ -64,5 +93,287 @@ class ItemRepositoryTest {
         assertThat(findItem.getItemName()).isEqualTo(updateParam.getItemName());
         assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
+        assertThat(updated).isTrue();
+    }
+
+    //없는 상품은 바꾸지 않고 false, 새로 만들지도 않는다
+    @Test
+    void updateMissingItem() {
+        assertThat(itemRepository.update(999L, new Item("item", 10000, 10))).isFalse();
+        assertThat(itemRepository.findById(999L)).isNull();
+        assertThat(itemRepository.count()).isZero();
+    }
+
+    @Test
+    void saveAll() {
+        //given
+        Item before = itemRepository.save(new Item("item0", 10000, 10));
+        List<Item> items = List.of(new Item("item1", 10000, 10), new Item("item2", 20000, 20));
+
+        //when
+        itemRepository.saveAll(items);
+
+        //then
+        assertThat(items).extracting(Item::getId).containsExactly(before.getId() + 1, before.getId() + 2);
+        assertThat(itemRepository.findAll()).hasSize(3);
+        assertThat(itemRepository.totalInventoryValue()).isEqualTo(10000 * 10 + 10000 * 10 + 20000 * 20);
+        assertThat(itemRepository.save(new Item("item3", 10000, 10)).getId()).isEqualTo(before.getId() + 3);
+    }
+
+    @Test
+    void updateAll() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+
+        Item update1 = new Item("itemA", 11000, 11);
+        update1.setId(item1.getId());
+        //같은 상품이 두 번이면 마지막 값
+        Item update2 = new Item("itemB", 21000, 21);
+        update2.setId(item2.getId());
+        Item update2Again = new Item("itemC", 22000, 22);
+        update2Again.setId(item2.getId());
+        Item missing = new Item("itemD", 10000, 10);
+        missing.setId(item2.getId() + 100);
+
+        //when
+        List<Long> missingIds = itemRepository.updateAll(List.of(update1, update2, missing, update2Again));
+
+        //then
+        assertThat(missingIds).containsExactly(missing.getId());
+        assertThat(itemRepository.findById(item1.getId()).getItemName()).isEqualTo("itemA");
+        assertThat(itemRepository.findById(item2.getId()).getItemName()).isEqualTo("itemC");
+        assertThat(itemRepository.search(new ItemSearchCond("itemB", null, null, null, null), 10)).isEmpty();
+        assertThat(itemRepository.totalInventoryValue()).isEqualTo(11000 * 11 + 22000 * 22);
+        assertThat(itemRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void findPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 30000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 10000, 10));
+        Item item3 = itemRepository.save(new Item("item3", 20000, 10));
+
+        //when, then
+        assertThat(itemRepository.findPage(ItemSort.ID_ASC, 0, 2)).containsExactly(item1, item2);
+        assertThat(itemRepository.findPage(ItemSort.ID_ASC, 2, 2)).containsExactly(item3);
+        assertThat(itemRepository.findPage(ItemSort.ID_DESC, 0, 2)).containsExactly(item3, item2);
+        assertThat(itemRepository.findPage(ItemSort.PRICE_ASC, 0, 3)).containsExactly(item2, item3, item1);
+        assertThat(itemRepository.findPage(ItemSort.PRICE_DESC, 1, 3)).containsExactly(item3, item2);
+        assertThat(itemRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void findPageAfterUpdate() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 10));
+
+        //when
+        itemRepository.update(item1.getId(), new Item("item1", 30000, 10));
+
+        //then
+        List<Item> result = itemRepository.findPage(ItemSort.PRICE_ASC, 0, 10);
+        assertThat(result).extracting(Item::getId).containsExactly(item2.getId(), item1.getId());
+    }
+
+    @Test
+    void findAfter() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 10000, 10));
+        Item item3 = itemRepository.save(new Item("item3", 10000, 10));
+
+        //when, then
+        assertThat(itemRepository.findAfter(null, 2)).containsExactly(item1, item2);
+        assertThat(itemRepository.findAfter(item2.getId(), 2)).containsExactly(item3);
+        assertThat(itemRepository.findAfter(item3.getId(), 2)).isEmpty();
+    }
+
+    @Test
+    void searchByName() {
+        //given
+        Item item1 = itemRepository.save(new Item("Apple Juice", 3000, 10));
+        Item item2 = itemRepository.save(new Item("apple pie", 5000, 20));
+        Item item3 = itemRepository.save(new Item("Banana", 2000, 30));
+
+        //when, then
+        assertThat(itemRepository.search(new ItemSearchCond("app", null, null, null, null), 10))
+                .containsExactly(item1, item2);
+        assertThat(itemRepository.search(new ItemSearchCond("apple ju", null, null, null, null), 10))
+                .containsExactly(item1);
+        assertThat(itemRepository.search(new ItemSearchCond("cherry", null, null, null, null), 10)).isEmpty();
+        assertThat(itemRepository.search(new ItemSearchCond(null, null, null, null, null), 10))
+                .containsExactly(item1, item2, item3);
+    }
+
+    @Test
+    void searchByRange() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 3000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 5000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 2000, 30));
+
+        //when, then
+        assertThat(itemRepository.search(new ItemSearchCond(null, 2500, 5000, null, null), 10))
+                .containsExactly(item1, item2);
+        assertThat(itemRepository.search(new ItemSearchCond(null, null, null, 20, null), 10))
+                .containsExactly(item2, item3);
+        assertThat(itemRepository.search(new ItemSearchCond(null, null, 4000, 15, null), 10))
+                .containsExactly(item3);
+        assertThat(itemRepository.search(new ItemSearchCond("item", 3000, null, null, 25), 10))
+                .containsExactly(item1, item2);
+    }
+
+    @Test
+    void searchAfterUpdate() {
+        //given
+        Item item = itemRepository.save(new Item("old name", 1000, 10));
+
+        //when
+        itemRepository.update(item.getId(), new Item("new name", 9000, 90));
+
+        //then
+        assertThat(itemRepository.search(new ItemSearchCond("old", null, null, null, null), 10)).isEmpty();
+        assertThat(itemRepository.search(new ItemSearchCond(null, null, 5000, null, null), 10)).isEmpty();
+        assertThat(itemRepository.search(new ItemSearchCond("new", 9000, 9000, 90, 90), 10))
+                .extracting(Item::getId).containsExactly(item.getId());
+    }
+
+    @Test
+    void totalInventoryValue() {
+        //given
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.save(new Item("itemB", 20000, 20));
+
+        //when
+        itemRepository.update(item.getId(), new Item("itemA", 10000, 1));
+
+        //then
+        assertThat(itemRepository.totalInventoryValue()).isEqualTo(10000L + 400000L);
+    }
+
+    @Test
+    void report() {
+        //given
+        for (int i = 1; i <= 10_000; i++) {
+            itemRepository.save(new Item("item" + i, i, 2));
+        }
+        itemRepository.save(new Item("noPrice", null, 5));
+
+        //when
+        InventoryReport report = itemRepository.report();
+
+        //then
+        assertThat(report.getItemCount()).isEqualTo(10_001);
+        assertThat(report.getTotalValue()).isEqualTo(10_000L * 10_001 / 2 * 2);
+        assertThat(report.getTotalQuantity()).isEqualTo(20_005);
+        assertThat(report.getPricedCount()).isEqualTo(10_000);
+        assertThat(report.getMinPrice()).isEqualTo(1);
+        assertThat(report.getMaxPrice()).isEqualTo(10_000);
+        assertThat(report.getAveragePrice()).isEqualTo(5000.5);
+        assertThat(report.getP50Price()).isEqualTo(5_000);
+        assertThat(report.getP90Price()).isEqualTo(9_000);
+        assertThat(report.getP99Price()).isEqualTo(9_900);
+    }
+
+    @Test
+    void emptyReport() {
+        InventoryReport report = itemRepository.report();
+
+        assertThat(report.getItemCount()).isZero();
+        assertThat(report.getTotalValue()).isZero();
+        assertThat(report.getMinPrice()).isNull();
+        assertThat(report.getP50Price()).isNull();
+    }
+
+    //필드별 배열 저장소로 바꿔도 같은 결과
+    @Test
+    void columnarStore() {
+        ItemRepository columnarRepository = new ItemRepository(Optional.empty(), "columnar");
+        try {
+            Item item = columnarRepository.save(new Item("itemA", 10000, 10));
+            columnarRepository.save(new Item("itemB", 20000, 20));
+            columnarRepository.update(item.getId(), new Item("itemC", 30000, 30));
+
+            //저장한 객체가 아니라 읽을 때 만든 Item
+            assertThat(columnarRepository.findById(item.getId())).isNotSameAs(item);
+            assertThat(columnarRepository.findById(item.getId()).getItemName()).isEqualTo("itemC");
+            assertThat(columnarRepository.findPage(ItemSort.PRICE_DESC, 0, 10)).extracting(Item::getItemName)
+                    .containsExactly("itemC", "itemB");
+            assertThat(columnarRepository.search(new ItemSearchCond("item", 25000, null, null, null), 10))
+                    .extracting(Item::getItemName).containsExactly("itemC");
+            assertThat(columnarRepository.totalInventoryValue()).isEqualTo(900000L + 400000L);
+        } finally {
+            new ItemRepository(Optional.empty(), "object").clearStore();
+        }
+    }
+
+    //여러 스레드가 동시에 등록해도 id가 겹치거나 상품이 사라지지 않는지
+    @Test
+    void concurrentSave() throws Exception {
+        //given
+        int threadCount = 8;
+        int itemPerThread = 2000;
+
+        //when
+        runConcurrently(threadCount, () -> {
+            for (int i = 0; i < itemPerThread; i++) {
+                itemRepository.save(new Item("item", 10000, 10));
+            }
+        });
+
+        //then
+        List<Item> result = itemRepository.findAll();
+        assertThat(result).hasSize(threadCount * itemPerThread);
+        assertThat(result).extracting(Item::getId).doesNotHaveDuplicates();
+    }
+
+    //같은 상품을 동시에 수정해도 이름, 가격, 수량이 한 번의 수정 값으로만 보이는지
+    @Test
+    void concurrentUpdate() throws Exception {
+        //given
+        Long itemId = itemRepository.save(new Item("item0", 0, 0)).getId();
+        int threadCount = 8;
+        int updatePerThread = 2000;
+
+        //when
+        runConcurrently(threadCount, () -> {
+            for (int i = 1; i <= updatePerThread; i++) {
+                itemRepository.update(itemId, new Item("item" + i, i, i));
+
+                Item findItem = itemRepository.findById(itemId);
+                assertThat(findItem.getItemName()).isEqualTo("item" + findItem.getPrice());
+                assertThat(findItem.getQuantity()).isEqualTo(findItem.getPrice());
+            }
+        });
+
+        //then
+        Item findItem = itemRepository.findById(itemId);
+        assertThat(findItem.getId()).isEqualTo(itemId);
+        assertThat(findItem.getItemName()).isEqualTo("item" + findItem.getPrice());
+        assertThat(findItem.getQuantity()).isEqualTo(findItem.getPrice());
+    }
+
+    private void runConcurrently(int threadCount, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 }
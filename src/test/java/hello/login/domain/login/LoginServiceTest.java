@@ -0,0 +1,44 @@
+package hello.login.domain.login;
+
+import hello.login.domain.member.Member;
+import hello.login.domain.member.MemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginServiceTest {
+
+    MemberRepository memberRepository = new MemberRepository();
+    //테스트는 반복 횟수를 낮게
+    PasswordHasher passwordHasher = new PasswordHasher(1000, 1, 4, 5000);
+    LoginService loginService = new LoginService(memberRepository, passwordHasher);
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.clearStore();
+        passwordHasher.shutdown();
+    }
+
+    //평문으로 남은 비밀번호는 로그인에 성공하면 해시로 바뀐다
+    @Test
+    void rehashLegacyPassword() {
+        Member member = new Member();
+        member.setLoginId("legacy");
+        member.setName("legacy");
+        member.setPassword("test!");
+        memberRepository.save(member);
+
+        assertThat(loginService.login("legacy", "test?")).isNull();
+        assertThat(memberRepository.findByLoginId("legacy").get().getPassword()).isEqualTo("test!");
+
+        assertThat(loginService.login("legacy", "test!")).isNotNull();
+        String stored = memberRepository.findByLoginId("legacy").get().getPassword();
+        assertThat(stored).startsWith("pbkdf2$1000$");
+
+        //바뀐 해시로 다시 로그인
+        assertThat(loginService.login("legacy", "test!")).isNotNull();
+        assertThat(memberRepository.findByLoginId("legacy").get().getPassword()).isEqualTo(stored);
+        assertThat(loginService.login("none", "test!")).isNull();
+    }
+}
@@ -0,0 +1,103 @@
+package hello.login.domain.login;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    //테스트는 반복 횟수를 낮게
+    PasswordHasher passwordHasher = new PasswordHasher(1000, 2, 4, 5000);
+
+    @AfterEach
+    void afterEach() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void hashAndVerify() {
+        String hash = passwordHasher.hash("test!");
+
+        assertThat(hash).startsWith("pbkdf2$1000$").doesNotContain("test!");
+        assertThat(passwordHasher.verify("test!", hash)).isTrue();
+        assertThat(passwordHasher.verify("test?", hash)).isFalse();
+        //salt 가 달라서 같은 비밀번호도 해시가 다르다
+        assertThat(passwordHasher.hash("test!")).isNotEqualTo(hash);
+    }
+
+    //반복 횟수를 바꿔도 예전 해시는 그 횟수로 확인
+    @Test
+    void verifyOtherIterations() {
+        PasswordHasher stronger = new PasswordHasher(2000, 1, 4, 5000);
+        try {
+            assertThat(stronger.verify("test!", passwordHasher.hash("test!"))).isTrue();
+        } finally {
+            stronger.shutdown();
+        }
+    }
+
+    @Test
+    void legacyAndInvalid() {
+        //해시를 붙이기 전에 저장된 평문
+        assertThat(passwordHasher.verify("test!", "test!")).isTrue();
+        assertThat(passwordHasher.verify("test!", "test")).isFalse();
+
+        assertThat(passwordHasher.verify("test!", "pbkdf2$1000$!!$!!")).isFalse();
+        assertThat(passwordHasher.verify("test!", "pbkdf2$abc")).isFalse();
+        assertThat(passwordHasher.verify(null, "test!")).isFalse();
+        assertThat(passwordHasher.verifyMissing("test!")).isFalse();
+    }
+
+    //평문과 예전 반복 횟수로 만든 해시는 다시 해시할 대상
+    @Test
+    void needsRehash() {
+        PasswordHasher weaker = new PasswordHasher(500, 1, 1, 5000);
+        try {
+            assertThat(passwordHasher.needsRehash(passwordHasher.hash("test!"))).isFalse();
+            assertThat(passwordHasher.needsRehash(weaker.hash("test!"))).isTrue();
+            assertThat(passwordHasher.needsRehash("test!")).isTrue();
+        } finally {
+            weaker.shutdown();
+        }
+    }
+
+    //스레드 2개, 대기열 4개가 다 차면 기다리지 않고 바로 거절
+    @Test
+    void rejectWhenSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        List<CompletableFuture<Void>> blocked = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            blocked.add(CompletableFuture.runAsync(() -> passwordHasher.submit(() -> {
+                started.countDown();
+                return release.await(10, TimeUnit.SECONDS);
+            }), callers));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        while (passwordHasher.getQueueSize() < 4) {
+            Thread.sleep(1);
+        }
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> passwordHasher.verify("test!", passwordHasher.hash("test!")))
+                .isInstanceOf(PasswordHasherBusyException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+        release.countDown();
+        for (CompletableFuture<Void> future : blocked) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        callers.shutdown();
+        assertThat(passwordHasher.verify("test!", passwordHasher.hash("test!"))).isTrue();
+    }
+}
@@ -0,0 +1,106 @@
+package hello.login.domain.member;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MemberRepositoryTest {
+
+    MemberRepository memberRepository = new MemberRepository();
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.clearStore();
+    }
+
+    @Test
+    void findByLoginId() {
+        //given
+        Member member = createMember("memberA");
+        memberRepository.save(member);
+
+        //when
+        Member findMember = memberRepository.findByLoginId("memberA").get();
+
+        //then
+        assertThat(findMember).isEqualTo(member);
+        assertThat(memberRepository.findByLoginId("none")).isEmpty();
+        assertThat(memberRepository.findByLoginId(null)).isEmpty();
+    }
+
+    @Test
+    void clearStore() {
+        memberRepository.save(createMember("memberA"));
+
+        memberRepository.clearStore();
+
+        assertThat(memberRepository.findByLoginId("memberA")).isEmpty();
+    }
+
+    //저장된 객체는 그대로 두고 바꿔 끼운다
+    @Test
+    void updatePassword() {
+        Member member = memberRepository.save(createMember("memberA"));
+
+        assertThat(memberRepository.updatePassword(member.getId(), "hashed")).isTrue();
+
+        Member findMember = memberRepository.findByLoginId("memberA").get();
+        assertThat(findMember.getPassword()).isEqualTo("hashed");
+        assertThat(memberRepository.findById(member.getId())).isSameAs(findMember);
+        assertThat(member.getPassword()).isEqualTo("test!");
+        assertThat(memberRepository.updatePassword(999L, "hashed")).isFalse();
+    }
+
+    //여러 스레드가 동시에 회원가입해도 loginId 인덱스와 store가 어긋나지 않는지
+    @Test
+    void concurrentSave() throws Exception {
+        //given
+        int threadCount = 8;
+        int memberPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < memberPerThread; i++) {
+                    memberRepository.save(createMember("member-" + thread + "-" + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then
+        List<Member> all = memberRepository.findAll();
+        assertThat(all).hasSize(threadCount * memberPerThread);
+        assertThat(all).extracting(Member::getId).doesNotHaveDuplicates();
+        for (Member member : all) {
+            assertThat(memberRepository.findByLoginId(member.getLoginId())).containsSame(member);
+        }
+    }
+
+    private Member createMember(String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setName(loginId);
+        member.setPassword("test!");
+        return member;
+    }
+}
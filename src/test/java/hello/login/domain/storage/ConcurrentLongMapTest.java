@@ -0,0 +1,102 @@
+package hello.login.domain.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConcurrentLongMapTest {
+
+    ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+
+    @Test
+    void putGetRemove() {
+        assertThat(map.put(1L, "a")).isNull();
+        assertThat(map.put(1L, "b")).isEqualTo("a");
+        assertThat(map.putIfAbsent(1L, "c")).isEqualTo("b");
+        assertThat(map.get(1L)).isEqualTo("b");
+        assertThat(map.get(2L)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+
+        assertThat(map.remove(1L)).isEqualTo("b");
+        assertThat(map.get(1L)).isNull();
+        assertThat(map.isEmpty()).isTrue();
+
+        //지운 칸(묘비)에 다시 넣기
+        assertThat(map.putIfAbsent(1L, "d")).isNull();
+        assertThat(map.get(1L)).isEqualTo("d");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void zeroKeyIsReserved() {
+        assertThatThrownBy(() -> map.put(0L, "a")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //처음 크기를 넘어도 늘려서 모두 남아있어야 함
+    @Test
+    void resize() {
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, "v" + key);
+        }
+        for (long key = 1; key <= 10_000; key += 2) {
+            map.remove(key);
+        }
+
+        assertThat(map.size()).isEqualTo(5_000);
+        assertThat(map.values()).hasSize(5_000);
+        assertThat(map.get(9_999L)).isNull();
+        assertThat(map.get(10_000L)).isEqualTo("v10000");
+    }
+
+    //넣고 지우기를 반복해도 묘비가 정리되어 배열이 계속 커지지 않는다
+    @Test
+    void reuseAfterRemove() {
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, "v");
+            map.remove(key);
+        }
+        map.put(100_001L, "v");
+
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(100_001L)).isEqualTo("v");
+    }
+
+    //여러 스레드가 같이 넣고 읽어도 빠지는 값이 없어야 함
+    @Test
+    void concurrentPut() throws Exception {
+        int threadCount = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            long base = (long) t * perThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (long key = base + 1; key <= base + perThread; key++) {
+                    map.put(key, "v" + key);
+                    //넣은 값은 바로 보여야 함 (늘리는 중이어도)
+                    assertThat(map.get(key)).isEqualTo("v" + key);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(map.size()).isEqualTo(threadCount * perThread);
+        for (long key = 1; key <= threadCount * perThread; key++) {
+            assertThat(map.get(key)).isEqualTo("v" + key);
+        }
+    }
+}
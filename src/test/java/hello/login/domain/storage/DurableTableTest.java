@@ -0,0 +1,206 @@
+package hello.login.domain.storage;
+
+import hello.login.domain.item.Item;
+import hello.login.domain.item.ItemCodec;
+import hello.login.domain.item.ItemRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DurableTableTest {
+
+    @TempDir
+    Path tempDir;
+
+    Map<Long, Item> memory = new ConcurrentHashMap<>();
+
+    //닫지 않고(스냅샷 없이) 다시 열어서 프로세스가 죽은 경우를 흉내낸다
+    //쓰기가 돌아왔으면 이미 fsync 된 것이므로 로그만으로 복구되어야 한다
+    @Test
+    void recoverFromLog() {
+        DurableTable<Item> table = openTable();
+        table.open(memory::values, this::load);
+        write(table, createItem(1L, "itemA", 10000));
+        write(table, createItem(2L, "itemB", 20000));
+        write(table, createItem(1L, "itemA2", 15000));
+
+        memory.clear();
+        Map<Long, Item> recovered = openTable().open(memory::values, this::load);
+
+        assertThat(recovered).hasSize(2);
+        assertThat(recovered.get(1L).getItemName()).isEqualTo("itemA2");
+        assertThat(recovered.get(1L).getPrice()).isEqualTo(15000);
+    }
+
+    //스냅샷 + 스냅샷 이후 로그
+    @Test
+    void recoverFromSnapshotAndLog() throws IOException {
+        DurableTable<Item> table = openTable();
+        table.open(memory::values, this::load);
+        write(table, createItem(1L, "itemA", 10000));
+        table.snapshot();
+        write(table, createItem(2L, "itemB", 20000));
+
+        //스냅샷에 들어간 구간은 지워진다
+        try (Stream<Path> files = Files.list(tempDir.resolve("items"))) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("wal-")).count()).isEqualTo(1);
+        }
+
+        //스냅샷은 매핑만 하고 스냅샷 이후 로그만 돌려준다
+        memory.clear();
+        DurableTable<Item> reopened = openTable();
+        Map<Long, Item> recovered = reopened.open(memory::values, this::load);
+        assertThat(recovered.keySet()).containsExactly(2L);
+        assertThat(reopened.lastId()).isEqualTo(2L);
+
+        //스냅샷에 있는 것은 필요할 때 꺼낸다
+        assertThat(reopened.hasUnloaded()).isTrue();
+        assertThat(reopened.find(1L).getItemName()).isEqualTo("itemA");
+        assertThat(reopened.find(3L)).isNull();
+        reopened.loadRemaining();
+        assertThat(reopened.hasUnloaded()).isFalse();
+        assertThat(memory.keySet()).containsExactly(1L);
+    }
+
+    //스냅샷 뒤에 바뀐 엔티티는 로그 쪽이 남는다
+    @Test
+    void logOverridesSnapshot() {
+        DurableTable<Item> table = openTable();
+        table.open(memory::values, this::load);
+        write(table, createItem(1L, "itemA", 10000));
+        write(table, createItem(2L, "itemB", 20000));
+        table.snapshot();
+        write(table, createItem(1L, "itemA2", 15000));
+
+        memory.clear();
+        DurableTable<Item> reopened = openTable();
+        memory.putAll(reopened.open(memory::values, this::load));
+        reopened.loadRemaining();
+
+        assertThat(memory.get(1L).getItemName()).isEqualTo("itemA2");
+        assertThat(memory.get(2L).getItemName()).isEqualTo("itemB");
+    }
+
+    //fsync 전에 죽어서 끝이 잘린 레코드는 버린다
+    @Test
+    void ignoreTornTail() throws IOException {
+        DurableTable<Item> table = openTable();
+        table.open(memory::values, this::load);
+        write(table, createItem(1L, "itemA", 10000));
+
+        Path segment = tempDir.resolve("items").resolve("wal-0000000001.log");
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+        memory.clear();
+
+        DurableTable<Item> reopened = openTable();
+        assertThat(reopened.open(memory::values, this::load).keySet()).containsExactly(1L);
+
+        //깨진 구간 뒤로 이어 쓰지 않으므로 새로 쓴 것도 복구된다
+        write(reopened, createItem(2L, "itemB", 20000));
+        assertThat(openTable().open(memory::values, this::load).keySet()).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    //여러 스레드가 동시에 써도 모두 남는다 (그룹 커밋)
+    @Test
+    void concurrentWrite() throws Exception {
+        DurableTable<Item> table = openTable();
+        table.open(memory::values, this::load);
+
+        int threadCount = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            long base = (long) t * perThread;
+            futures.add(executor.submit(() -> {
+                for (long i = 1; i <= perThread; i++) {
+                    Item item = createItem(base + i, "item" + (base + i), 1000);
+                    table.write(item, () -> memory.put(item.getId(), item));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        memory.clear();
+        assertThat(openTable().open(memory::values, this::load)).hasSize(threadCount * perThread);
+    }
+
+    @Test
+    void restoreItemRepository() {
+        DurableTable<Item> table = openTable();
+        ItemRepository repository = new ItemRepository(Optional.of(table), "object");
+        Item item = repository.save(new Item("itemA", 10000, 10));
+        repository.update(item.getId(), new Item("itemB", 20000, 20));
+        table.close();
+        repository.clearStore();
+
+        ItemRepository restored = new ItemRepository(Optional.of(openTable()), "object");
+
+        Item findItem = restored.findById(item.getId());
+        assertThat(findItem.getItemName()).isEqualTo("itemB");
+        assertThat(findItem.getPrice()).isEqualTo(20000);
+        //id는 복구한 마지막 id 다음부터
+        assertThat(restored.save(new Item("itemC", 1000, 1)).getId()).isEqualTo(item.getId() + 1);
+        restored.clearStore();
+    }
+
+    //닫을 때 뜬 스냅샷에서 기동하면 findById 한 상품만 올라오고, 목록을 보면 전부 올라온다
+    @Test
+    void restoreItemRepositoryLazily() {
+        DurableTable<Item> table = openTable();
+        ItemRepository repository = new ItemRepository(Optional.of(table), "object");
+        Item itemA = repository.save(new Item("itemA", 10000, 10));
+        Item itemB = repository.save(new Item("itemB", 20000, 20));
+        table.close();
+        repository.clearStore();
+
+        DurableTable<Item> reopened = openTable();
+        ItemRepository restored = new ItemRepository(Optional.of(reopened), "object");
+        assertThat(restored.isEmpty()).isFalse();
+
+        assertThat(restored.findById(itemB.getId()).getItemName()).isEqualTo("itemB");
+        assertThat(reopened.hasUnloaded()).isTrue();
+
+        assertThat(restored.findAll()).extracting(Item::getItemName).containsExactlyInAnyOrder("itemA", "itemB");
+        assertThat(reopened.hasUnloaded()).isFalse();
+        assertThat(restored.findById(itemA.getId()).getItemName()).isEqualTo("itemA");
+        restored.clearStore();
+    }
+
+    private void load(Item item) {
+        memory.putIfAbsent(item.getId(), item);
+    }
+
+    private DurableTable<Item> openTable() {
+        return new DurableTable<>(tempDir, "items", new ItemCodec(), Duration.ofHours(1));
+    }
+
+    private void write(DurableTable<Item> table, Item item) {
+        table.write(item, () -> memory.put(item.getId(), item));
+    }
+
+    private Item createItem(Long id, String itemName, Integer price) {
+        Item item = new Item(itemName, price, 10);
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,40 @@
+package hello.login.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    IdGenerator idGenerator = new IdGenerator("node1");
+
+    @Test
+    void sessionId() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String id = idGenerator.newSessionId();
+            //128비트 -> Base64 22자, 쿠키에 그대로 쓸 수 있는 문자만
+            assertThat(id).hasSize(22).matches("[A-Za-z0-9_-]+");
+            assertThat(IdGenerator.isSessionId(id)).isTrue();
+            ids.add(id);
+        }
+        assertThat(ids).hasSize(10000);
+    }
+
+    @Test
+    void notSessionId() {
+        assertThat(IdGenerator.isSessionId(null)).isFalse();
+        assertThat(IdGenerator.isSessionId("unknown")).isFalse();
+        assertThat(IdGenerator.isSessionId("0f8fad5b-d9cb-469f-a165-70867728950e")).isFalse();
+        assertThat(IdGenerator.isSessionId("AAAAAAAAAAAAAAAAAAAAA=")).isFalse();
+    }
+
+    @Test
+    void requestId() {
+        assertThat(idGenerator.newRequestId()).isEqualTo("node1-1");
+        assertThat(idGenerator.newRequestId()).isEqualTo("node1-2");
+    }
+}
@@ -0,0 +1,79 @@
+package hello.login.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PublicPathsTest {
+
+    @Test
+    void defaultPaths() {
+        PublicPaths publicPaths = new PublicPaths();
+
+        assertThat(publicPaths.matches("/")).isTrue();
+        assertThat(publicPaths.matches("/login")).isTrue();
+        assertThat(publicPaths.matches("/members/add")).isTrue();
+        assertThat(publicPaths.matches("/css/bootstrap.min.css")).isTrue();
+        assertThat(publicPaths.matches("/css/a/b.css")).isTrue();
+        assertThat(publicPaths.matches("/css")).isTrue();
+        assertThat(publicPaths.matches("/favicon.ico")).isTrue();
+        assertThat(publicPaths.matches("/error")).isTrue();
+
+        assertThat(publicPaths.matches("/items")).isFalse();
+        assertThat(publicPaths.matches("/items/1")).isFalse();
+        assertThat(publicPaths.matches("/login/other")).isFalse();
+        assertThat(publicPaths.matches("/members/add/1")).isFalse();
+        assertThat(publicPaths.matches("/cssx/a.css")).isFalse();
+        assertThat(publicPaths.matches("/img/favicon.ico")).isFalse();
+        assertThat(publicPaths.matches("")).isFalse();
+    }
+
+    @Test
+    void singleSegment() {
+        PublicPaths publicPaths = new PublicPaths(new String[]{"/docs/*"});
+
+        assertThat(publicPaths.matches("/docs/a")).isTrue();
+        assertThat(publicPaths.matches("/docs/")).isFalse();
+        assertThat(publicPaths.matches("/docs/a/b")).isFalse();
+    }
+
+    //;파라미터, . .. 단계가 남은 경로는 화이트 리스트가 아니다
+    @Test
+    void notNormalizedPath() {
+        PublicPaths publicPaths = new PublicPaths();
+
+        assertThat(publicPaths.matches("/items;.ico")).isFalse();
+        assertThat(publicPaths.matches("/css/../items")).isFalse();
+        assertThat(publicPaths.matches("/css/..")).isFalse();
+        assertThat(publicPaths.matches("/css/./a.css")).isFalse();
+        assertThat(publicPaths.matches("/css/..;/items")).isFalse();
+        assertThat(publicPaths.matches("/css/..a.css")).isTrue();
+    }
+
+    //요청은 컨텍스트 경로를 빼고 ;파라미터를 지운 경로로 본다
+    @Test
+    void requestPath() {
+        PublicPaths publicPaths = new PublicPaths();
+
+        assertThat(publicPaths.matches(new MockHttpServletRequest("GET", "/items;.ico"))).isFalse();
+        assertThat(publicPaths.matches(new MockHttpServletRequest("GET", "/css/..;/items"))).isFalse();
+        assertThat(publicPaths.matches(new MockHttpServletRequest("GET", "/login;jsessionid=1"))).isTrue();
+        assertThat(publicPaths.matches(new MockHttpServletRequest("GET", "/css/a.css"))).isTrue();
+
+        MockHttpServletRequest withContextPath = new MockHttpServletRequest("GET", "/app/login");
+        withContextPath.setContextPath("/app");
+        assertThat(publicPaths.matches(withContextPath)).isTrue();
+        MockHttpServletRequest itemsWithContextPath = new MockHttpServletRequest("GET", "/app/items;.ico");
+        itemsWithContextPath.setContextPath("/app");
+        assertThat(publicPaths.matches(itemsWithContextPath)).isFalse();
+    }
+
+    @Test
+    void unsupportedPattern() {
+        assertThatThrownBy(() -> new PublicPaths(new String[]{"/items/*/edit"}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PublicPaths(new String[]{"/a*b*"}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
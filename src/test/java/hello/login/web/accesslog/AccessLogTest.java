@@ -0,0 +1,76 @@
+package hello.login.web.accesslog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AccessLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeRecords() throws Exception {
+        Path file = tempDir.resolve("access.log");
+        AccessLog accessLog = new AccessLog(file, 1024 * 1024, 3, 1024, 1.0, AccessLog.OverflowPolicy.DROP);
+        accessLog.start();
+
+        accessLog.record("node-1", "GET", "/items", 200, System.nanoTime(), null, false);
+        accessLog.record("node-2", "POST", "/login", 500, System.nanoTime(), null, false);
+        accessLog.stop();
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("node-1 GET /items 200");
+        assertThat(lines.get(1)).contains("node-2 POST /login 500").endsWith("ERROR");
+        assertThat(accessLog.getWrittenCount()).isEqualTo(2);
+    }
+
+    //기록 스레드가 없으면 버퍼가 차고 넘친 기록은 버린다
+    @Test
+    void dropWhenFull() {
+        AccessLog accessLog = new AccessLog(tempDir.resolve("access.log"), 1024 * 1024, 3, 4, 1.0, AccessLog.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 10; i++) {
+            accessLog.record("node-" + i, "GET", "/items", 200, System.nanoTime(), null, false);
+        }
+
+        assertThat(accessLog.getDroppedCount()).isEqualTo(6);
+    }
+
+    //샘플링해도 오류 응답은 남긴다
+    @Test
+    void samplingKeepsErrors() throws Exception {
+        Path file = tempDir.resolve("access.log");
+        AccessLog accessLog = new AccessLog(file, 1024 * 1024, 3, 1024, 0.0, AccessLog.OverflowPolicy.DROP);
+        accessLog.start();
+
+        accessLog.record("node-1", "GET", "/items", 200, System.nanoTime(), null, false);
+        accessLog.record("node-2", "GET", "/items", 200, System.nanoTime(), null, true);
+        accessLog.stop();
+
+        assertThat(Files.readAllLines(file)).singleElement().asString().contains("node-2");
+    }
+
+    @Test
+    void rollFile() throws Exception {
+        Path file = tempDir.resolve("access.log");
+        AccessLog accessLog = new AccessLog(file, 100, 2, 1024, 1.0, AccessLog.OverflowPolicy.DROP);
+        accessLog.start();
+
+        for (int i = 0; i < 20; i++) {
+            accessLog.record("node-" + i, "GET", "/items", 200, System.nanoTime(), null, false);
+            Thread.sleep(20);
+        }
+        accessLog.stop();
+
+        assertThat(tempDir.resolve("access.log.1")).exists();
+        assertThat(tempDir.resolve("access.log.2")).exists();
+        assertThat(tempDir.resolve("access.log.3")).doesNotExist();
+    }
+}
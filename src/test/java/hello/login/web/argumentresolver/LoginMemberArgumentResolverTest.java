@@ -0,0 +1,91 @@
+package hello.login.web.argumentresolver;
+
+import hello.login.domain.member.LoginMember;
+import hello.login.domain.member.Member;
+import hello.login.web.SessionConst;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginMemberArgumentResolverTest {
+
+    LoginMemberArgumentResolver resolver = new LoginMemberArgumentResolver();
+
+    @Test
+    void supportsParameter() throws Exception {
+        Method method = Handlers.class.getDeclaredMethod("handle", LoginMember.class, LoginMember.class, Member.class);
+
+        assertThat(resolver.supportsParameter(new MethodParameter(method, 0))).isTrue();
+        assertThat(resolver.supportsParameter(new MethodParameter(method, 1))).isFalse();
+        //LoginMember 전에 쓰던 @Login Member 도 계속 받는다
+        assertThat(resolver.supportsParameter(new MethodParameter(method, 2))).isTrue();
+        //두 번째부터는 저장해둔 결과
+        assertThat(resolver.supportsParameter(new MethodParameter(method, 0))).isTrue();
+    }
+
+    @Test
+    void resolveArgument() throws Exception {
+        MethodParameter parameter = new MethodParameter(
+                Handlers.class.getDeclaredMethod("handle", LoginMember.class, LoginMember.class, Member.class), 0);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        //세션이 없으면 만들지 않고 null
+        assertThat(resolver.resolveArgument(parameter, null, new ServletWebRequest(request), null)).isNull();
+        assertThat(request.getSession(false)).isNull();
+
+        LoginMember loginMember = new LoginMember(1L, "test", "테스터");
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
+        request.setSession(session);
+        assertThat(resolver.resolveArgument(parameter, null, new ServletWebRequest(request), null)).isSameAs(loginMember);
+    }
+
+    //LoginMember 를 넣기 전에 만들어진 세션, 비밀번호는 빼고 복사
+    @Test
+    void resolveLegacyMember() throws Exception {
+        MethodParameter parameter = new MethodParameter(
+                Handlers.class.getDeclaredMethod("handle", LoginMember.class, LoginMember.class, Member.class), 0);
+        Member member = new Member();
+        member.setId(1L);
+        member.setLoginId("test");
+        member.setName("테스터");
+        member.setPassword("test!");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SessionConst.LOGIN_MEMBER, member);
+        request.setSession(session);
+
+        Object result = resolver.resolveArgument(parameter, null, new ServletWebRequest(request), null);
+
+        assertThat(result).isEqualTo(new LoginMember(1L, "test", "테스터"));
+    }
+
+    //@Login Member 파라미터에는 세션 값을 복사한 새 Member, 비밀번호는 없다
+    @Test
+    void resolveMemberParameter() throws Exception {
+        MethodParameter parameter = new MethodParameter(
+                Handlers.class.getDeclaredMethod("handle", LoginMember.class, LoginMember.class, Member.class), 2);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SessionConst.LOGIN_MEMBER, new LoginMember(1L, "test", "테스터"));
+        request.setSession(session);
+
+        Member member = (Member) resolver.resolveArgument(parameter, null, new ServletWebRequest(request), null);
+
+        assertThat(member.getId()).isEqualTo(1L);
+        assertThat(member.getLoginId()).isEqualTo("test");
+        assertThat(member.getName()).isEqualTo("테스터");
+        assertThat(member.getPassword()).isNull();
+    }
+
+    static class Handlers {
+        void handle(@Login LoginMember loginMember, LoginMember other, @Login Member member) {
+        }
+    }
+}
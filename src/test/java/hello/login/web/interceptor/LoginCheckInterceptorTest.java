@@ -0,0 +1,111 @@
+package hello.login.web.interceptor;
+
+import hello.login.domain.member.LoginMember;
+import hello.login.domain.member.Member;
+import hello.login.web.PublicPaths;
+import hello.login.web.SessionConst;
+import hello.login.web.token.LoginTokenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class LoginCheckInterceptorTest {
+
+    LoginCheckInterceptor interceptor = new LoginCheckInterceptor(new PublicPaths());
+
+    //로그인 안한 요청이 아무리 많이 와도 세션이 하나도 만들어지지 않아야 함
+    @Test
+    void anonymousRequestsDoNotCreateSession() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items/" + i);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            boolean result = interceptor.preHandle(request, response, null);
+
+            assertThat(result).isFalse();
+            assertThat(response.getRedirectedUrl()).isEqualTo("/login?redirectURL=/items/" + i);
+            assertThat(request.getSession(false)).isNull();
+        }
+    }
+
+    @Test
+    void publicPathDoesNotCreateSession() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+
+        boolean result = interceptor.preHandle(request, new MockHttpServletResponse(), null);
+
+        assertThat(result).isTrue();
+        assertThat(request.getSession(false)).isNull();
+    }
+
+    //스프링은 ;파라미터를 지우고 /items 로 보내므로 화이트 리스트(/*.ico)로 통과하면 안 된다
+    @Test
+    void pathParameterDoesNotBypass() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new SampleController())
+                .addInterceptors(interceptor)
+                .build();
+
+        mvc.perform(get("/items")).andExpect(status().is3xxRedirection());
+        mvc.perform(get("/items;.ico")).andExpect(status().is3xxRedirection());
+        mvc.perform(get("/items;jsessionid=1")).andExpect(status().is3xxRedirection());
+        mvc.perform(get("/login;.ico")).andExpect(status().isOk());
+        mvc.perform(get("/app/items;.ico").contextPath("/app")).andExpect(status().is3xxRedirection());
+        mvc.perform(get("/app/login").contextPath("/app")).andExpect(status().isOk());
+    }
+
+    @Test
+    void loginMember() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SessionConst.LOGIN_MEMBER, new Member());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+        request.setSession(session);
+
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    //토큰 모드는 세션 없이 쿠키의 토큰만 보고, 세션에 회원이 있어도 토큰이 없으면 로그인 안된 것
+    @Test
+    void tokenMode() throws Exception {
+        LoginTokenService loginTokenService = new LoginTokenService(true, "", 0, 1800, 100);
+        LoginCheckInterceptor tokenInterceptor = new LoginCheckInterceptor(new PublicPaths(), loginTokenService);
+        LoginMember loginMember = new LoginMember(1L, "test", "tester");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+        request.addHeader("Cookie", LoginTokenService.TOKEN_COOKIE_NAME + "=" + loginTokenService.issue(loginMember));
+        assertThat(tokenInterceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(request.getAttribute(SessionConst.LOGIN_MEMBER)).isEqualTo(loginMember);
+        assertThat(request.getSession(false)).isNull();
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SessionConst.LOGIN_MEMBER, loginMember);
+        MockHttpServletRequest sessionOnly = new MockHttpServletRequest("GET", "/items");
+        sessionOnly.setSession(session);
+        assertThat(tokenInterceptor.preHandle(sessionOnly, new MockHttpServletResponse(), null)).isFalse();
+    }
+
+    @Controller
+    static class SampleController {
+
+        @GetMapping("/items")
+        @ResponseBody
+        public String items() {
+            return "items";
+        }
+
+        @GetMapping("/login")
+        @ResponseBody
+        public String login() {
+            return "login";
+        }
+    }
+}
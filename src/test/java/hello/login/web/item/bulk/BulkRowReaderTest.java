@@ -0,0 +1,58 @@
+package hello.login.web.item.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.login.web.item.bulk.BulkRowReader.BulkRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BulkRowReaderTest {
+
+    @Test
+    void csv() throws IOException {
+        BulkRowReader reader = BulkRowReader.csv(new StringReader(
+                "itemName,price,quantity,id\n"
+                        + "itemA,10000,10\n"
+                        + "\n"
+                        + "\"item, \"\"B\"\"\",20000,,2\n"
+                        + "\"itemC,30000,30\n"
+                        + "itemD,1,2,3,4\n"));
+
+        BulkRow first = reader.next();
+        assertThat(first.getLine()).isEqualTo(2);
+        assertThat(first.getValues()).isEqualTo(Map.of("itemName", "itemA", "price", "10000", "quantity", "10"));
+
+        //빈 줄은 건너뛰고, 따옴표 안의 쉼표와 "" 는 값으로, 빈 칸은 값 없음
+        BulkRow second = reader.next();
+        assertThat(second.getLine()).isEqualTo(4);
+        assertThat(second.getValues()).isEqualTo(Map.of("itemName", "item, \"B\"", "price", "20000", "id", "2"));
+
+        //따옴표가 닫히지 않은 행, 헤더보다 값이 많은 행
+        assertThat(reader.next().isMalformed()).isTrue();
+        BulkRow tooMany = reader.next();
+        assertThat(tooMany.getLine()).isEqualTo(6);
+        assertThat(tooMany.isMalformed()).isTrue();
+
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void jsonLines() throws IOException {
+        BulkRowReader reader = BulkRowReader.jsonLines(new StringReader(
+                "{\"itemName\":\"itemA\",\"price\":10000,\"quantity\":10}\n"
+                        + "{\"id\":1,\"itemName\":null,\"price\":\"abc\",\"tags\":[1]}\n"
+                        + "{\"itemName\":\n"
+                        + "[1,2]\n"), new ObjectMapper());
+
+        assertThat(reader.next().getValues()).isEqualTo(Map.of("itemName", "itemA", "price", "10000", "quantity", "10"));
+        //null, 배열 같은 값은 없는 것으로, 숫자가 아닌 값은 그대로 (바인딩할 때 typeMismatch)
+        assertThat(reader.next().getValues()).isEqualTo(Map.of("id", "1", "price", "abc"));
+        assertThat(reader.next().isMalformed()).isTrue();
+        assertThat(reader.next().isMalformed()).isTrue();
+        assertThat(reader.next()).isNull();
+    }
+}
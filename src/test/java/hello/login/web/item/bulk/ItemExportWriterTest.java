@@ -0,0 +1,77 @@
+package hello.login.web.item.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.login.domain.item.Item;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ItemExportWriterTest {
+
+    @Test
+    void csv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        //버퍼를 작게 해서 한 줄이 여러 번에 나눠 나가게
+        ItemExportWriter writer = ItemExportWriter.csv(out, 16);
+        writer.write(item(1L, "상품 \"A\", 한정판", 10000, 10));
+        writer.write(item(2L, "itemB", 20000, null));
+        writer.flush();
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv).isEqualTo("id,itemName,price,quantity\n"
+                + "1,\"상품 \"\"A\"\", 한정판\",10000,10\n"
+                + "2,itemB,20000,\n");
+
+        //대량 등록으로 다시 읽으면 같은 값
+        BulkRowReader reader = BulkRowReader.csv(new StringReader(csv));
+        assertThat(reader.next().getValues())
+                .isEqualTo(Map.of("id", "1", "itemName", "상품 \"A\", 한정판", "price", "10000", "quantity", "10"));
+        assertThat(reader.next().getValues()).isEqualTo(Map.of("id", "2", "itemName", "itemB", "price", "20000"));
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void csvHeaderOnly() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ItemExportWriter.csv(out).flush();
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("id,itemName,price,quantity\n");
+    }
+
+    @Test
+    void jsonLines() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ItemExportWriter writer = ItemExportWriter.jsonLines(out, 16);
+        writer.write(item(1L, "상품\t\"A\"\\\u0001", 10000, 10));
+        writer.write(item(2L, null, null, 5));
+        writer.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("id").asLong()).isEqualTo(1L);
+        assertThat(first.get("itemName").asText()).isEqualTo("상품\t\"A\"\\\u0001");
+        assertThat(first.get("price").asInt()).isEqualTo(10000);
+        assertThat(first.get("quantity").asInt()).isEqualTo(10);
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertThat(second.get("itemName").isNull()).isTrue();
+        assertThat(second.get("price").isNull()).isTrue();
+        assertThat(second.get("quantity").asInt()).isEqualTo(5);
+    }
+
+    private static Item item(Long id, String itemName, Integer price, Integer quantity) {
+        Item item = new Item(itemName, price, quantity);
+        item.setId(id);
+        return item;
+    }
+}
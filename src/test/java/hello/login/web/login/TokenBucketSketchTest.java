@@ -0,0 +1,67 @@
+package hello.login.web.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TokenBucketSketchTest {
+
+    //분당 6개 = 10초에 하나, 한 번에 3개
+    TokenBucketSketch sketch = new TokenBucketSketch(1024, 4, 6, 3);
+    long now = System.nanoTime();
+
+    @Test
+    void burstThenRefill() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(sketch.tryAcquire("test", now)).isZero();
+        }
+
+        //네 번째는 막히고 다음 토큰까지 10초
+        long wait = sketch.tryAcquire("test", now);
+        assertThat(wait).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+
+        //막힌 요청은 토큰을 쓰지 않는다, 10초 뒤 하나 더
+        assertThat(sketch.tryAcquire("test", now + TimeUnit.SECONDS.toNanos(5))).isPositive();
+        assertThat(sketch.tryAcquire("test", now + TimeUnit.SECONDS.toNanos(10))).isZero();
+        assertThat(sketch.tryAcquire("test", now + TimeUnit.SECONDS.toNanos(10))).isPositive();
+
+        //오래 쉬어도 burst 까지만 쌓인다
+        long later = now + TimeUnit.HOURS.toNanos(1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(sketch.tryAcquire("test", later)).isZero();
+        }
+        assertThat(sketch.tryAcquire("test", later)).isPositive();
+    }
+
+    @Test
+    void keysAreIndependent() {
+        for (int i = 0; i < 3; i++) {
+            sketch.tryAcquire("attacker", now);
+        }
+        assertThat(sketch.tryAcquire("attacker", now)).isPositive();
+        assertThat(sketch.tryAcquire("test", now)).isZero();
+        //String.hashCode 가 같은 키
+        assertThat(sketch.tryAcquire("Aa", now)).isZero();
+        assertThat(sketch.tryAcquire("BB", now)).isZero();
+    }
+
+    //표 크기보다 훨씬 많은 키가 지나가도 처음 보는 키는 통과한다
+    @Test
+    void manyKeys() {
+        TokenBucketSketch large = new TokenBucketSketch(16384, 4, 6, 10);
+        for (int i = 0; i < 20000; i++) {
+            large.tryAcquire("user-" + i, now);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(large.tryAcquire("new-" + i, now)).isZero();
+        }
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThatThrownBy(() -> new TokenBucketSketch(1024, 0, 6, 3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucketSketch(1024, 4, 0, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
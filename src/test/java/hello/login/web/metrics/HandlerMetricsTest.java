@@ -0,0 +1,39 @@
+package hello.login.web.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HandlerMetricsTest {
+
+    HandlerMetrics metrics = new HandlerMetrics();
+
+    //한 메서드에 여러 HTTP 메서드, 여러 패턴이 매핑되어 있으면 매핑마다 따로
+    @Test
+    void separateMappings() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new SampleController(), "handle");
+
+        metrics.record(handler, "GET", "/a", 1_000_000, false);
+        metrics.record(handler, "GET", "/a", 1_000_000, false);
+        metrics.record(handler, "POST", "/a", 1_000_000, true);
+        metrics.record(handler, "GET", "/b", 1_000_000, false);
+
+        List<EndpointLatency> snapshot = metrics.snapshot();
+        assertThat(snapshot).extracting(EndpointLatency::getEndpoint).containsExactlyInAnyOrder(
+                "GET /a SampleController#handle", "POST /a SampleController#handle", "GET /b SampleController#handle");
+        assertThat(snapshot).filteredOn(latency -> latency.getEndpoint().startsWith("GET /a"))
+                .extracting(EndpointLatency::getCount).containsExactly(2L);
+        assertThat(snapshot).filteredOn(latency -> latency.getEndpoint().startsWith("POST /a"))
+                .extracting(EndpointLatency::getErrors).containsExactly(1L);
+    }
+
+    static class SampleController {
+
+        public String handle() {
+            return "ok";
+        }
+    }
+}
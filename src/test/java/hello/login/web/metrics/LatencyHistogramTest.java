@@ -0,0 +1,43 @@
+package hello.login.web.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(1000);
+        //칸 단위 오차 3% 이내
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(500L, 516L);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(990L, 1000L);
+        assertThat(histogram.getValueAtPercentile(99.9)).isBetween(999L, 1000L);
+    }
+
+    @Test
+    void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getValueAtPercentile(99)).isZero();
+        assertThat(histogram.getMean()).isZero();
+    }
+
+    //칸 번호와 칸의 상한값이 서로 맞는지
+    @Test
+    void bucketBoundary() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueAt(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueAt(index - 1)).isLessThan(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package hello.login.web.session;
+
+import hello.login.domain.member.Member;
+import hello.login.web.IdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MappedSessionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void putGetRemove() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(tempDir.resolve("sessions.dat"), 64 * 1024);
+
+        Member member = createMember("memberA");
+        store.put("session-a", member);
+
+        assertThat(store.get("session-a")).isEqualTo(member);
+        assertThat(store.get("none")).isNull();
+
+        store.remove("session-a");
+        assertThat(store.get("session-a")).isNull();
+        store.close();
+    }
+
+    //같은 파일로 다시 열면 세션이 남아있어야 함
+    @Test
+    void reopen() throws Exception {
+        Path file = tempDir.resolve("sessions.dat");
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024);
+        store.put("session-a", createMember("memberA"));
+        store.put("session-b", createMember("memberB"));
+        store.remove("session-b");
+        store.close();
+
+        MappedSessionStore reopened = new MappedSessionStore(file, 64 * 1024);
+
+        assertThat(reopened.sessionIds()).containsExactly("session-a");
+        assertThat(reopened.get("session-a")).isEqualTo(createMember("memberA"));
+        reopened.close();
+    }
+
+    //지운 세션 공간은 압축해서 다시 쓴다
+    @Test
+    void compactWhenFull() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(tempDir.resolve("sessions.dat"), 16 * 1024);
+
+        for (int i = 0; i < 1000; i++) {
+            store.put("session-" + i, createMember("member" + i));
+            store.remove("session-" + i);
+        }
+        store.put("session-last", createMember("last"));
+
+        assertThat(store.sessionIds()).containsExactly("session-last");
+        assertThat(store.get("session-last")).isEqualTo(createMember("last"));
+        assertThat(tempDir.resolve("sessions.dat.compact")).doesNotExist();
+        store.close();
+    }
+
+    @Test
+    void restoreSessionManager() throws Exception {
+        Path file = tempDir.resolve("sessions.dat");
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024);
+        store.put("session-a", createMember("memberA"));
+        store.close();
+
+        SessionManager sessionManager = new SessionManager(new MappedSessionStore(file, 64 * 1024), new IdGenerator(), 1800, 100);
+
+        assertThat(sessionManager.size()).isEqualTo(1);
+    }
+
+    //살아있는 세션으로 찬 파일은 압축하지 않고 바로 실패, 있던 세션은 그대로
+    @Test
+    void failWhenFullOfLiveSessions() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(tempDir.resolve("sessions.dat"), 16 * 1024);
+
+        int stored = 0;
+        try {
+            while (true) {
+                store.put("session-" + stored, createMember("member" + stored));
+                stored++;
+            }
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessageContaining("용량이 부족합니다");
+        }
+
+        assertThat(stored).isPositive();
+        assertThat(store.sessionIds()).hasSize(stored);
+        assertThat(store.get("session-0")).isEqualTo(createMember("member0"));
+
+        //자리가 없어서 다시 쓰지 못해도 예전 값은 남는다
+        assertThatThrownBy(() -> store.put("session-0", createMember("x".repeat(1000))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(store.get("session-0")).isEqualTo(createMember("member0"));
+        store.close();
+    }
+
+    //압축본을 덮어쓰다 죽었으면 다시 띄울 때 압축본으로 다시 덮어쓴다
+    @Test
+    void resumeInterruptedCompaction() throws Exception {
+        Path file = tempDir.resolve("sessions.dat");
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024);
+        store.put("session-a", createMember("memberA"));
+        store.put("session-b", createMember("memberB"));
+        store.remove("session-a");
+        store.close();
+
+        //레코드 영역을 옆 파일로 옮겨 두고, 원래 파일의 레코드는 반쯤 덮어쓴 것처럼 망가뜨린다
+        byte[] bytes = Files.readAllBytes(file);
+        int end = ByteBuffer.wrap(bytes).getInt(4);
+        ByteBuffer compacted = ByteBuffer.allocate(8 + end - 8);
+        compacted.putInt(ByteBuffer.wrap(bytes).getInt(0)).putInt(end - 8).put(bytes, 8, end - 8);
+        Files.write(tempDir.resolve("sessions.dat.compact"), compacted.array());
+        for (int i = 8; i < end; i += 7) {
+            bytes[i] = 0x7f;
+        }
+        Files.write(file, bytes);
+
+        MappedSessionStore reopened = new MappedSessionStore(file, 64 * 1024);
+
+        assertThat(reopened.sessionIds()).containsExactly("session-b");
+        assertThat(reopened.get("session-b")).isEqualTo(createMember("memberB"));
+        assertThat(tempDir.resolve("sessions.dat.compact")).doesNotExist();
+        reopened.close();
+    }
+
+    //헤더를 쓰기 전에 죽은 압축본은 버린다, 원래 파일은 그대로
+    @Test
+    void discardIncompleteCompaction() throws Exception {
+        Path file = tempDir.resolve("sessions.dat");
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024);
+        store.put("session-a", createMember("memberA"));
+        store.close();
+        Files.write(tempDir.resolve("sessions.dat.compact"), new byte[100]);
+
+        MappedSessionStore reopened = new MappedSessionStore(file, 64 * 1024);
+
+        assertThat(reopened.sessionIds()).containsExactly("session-a");
+        assertThat(tempDir.resolve("sessions.dat.compact")).doesNotExist();
+        reopened.close();
+    }
+
+    //int 로 곱하면 넘치는 값, 매핑 하나에 들어가지 않는 값
+    @Test
+    void invalidCapacity() {
+        String file = tempDir.resolve("sessions.dat").toString();
+
+        assertThatThrownBy(() -> new MappedSessionStore(file, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MappedSessionStore(file, 2048)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MappedSessionStore(file, 4096)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //세션 값으로 쓰지 않는 클래스는 파일에 있어도 역직렬화하지 않는다
+    @Test
+    void rejectUnexpectedClass() throws Exception {
+        MappedSessionStore store = new MappedSessionStore(tempDir.resolve("sessions.dat"), 64 * 1024);
+        store.put("session-a", BigInteger.TEN);
+
+        assertThatThrownBy(() -> store.get("session-a")).isInstanceOf(IllegalStateException.class);
+        store.close();
+    }
+
+    //최대 세션 수보다 많이 남아있으면 오래된 것부터 밀어낸다
+    @Test
+    void restoreAtMostMaxSessions() throws Exception {
+        Path file = tempDir.resolve("sessions.dat");
+        MappedSessionStore store = new MappedSessionStore(file, 64 * 1024);
+        store.put("session-a", createMember("memberA"));
+        store.put("session-b", createMember("memberB"));
+        store.put("session-c", createMember("memberC"));
+        store.close();
+
+        MappedSessionStore reopened = new MappedSessionStore(file, 64 * 1024);
+        SessionManager sessionManager = new SessionManager(reopened, new IdGenerator(), 1800, 2);
+
+        assertThat(sessionManager.size()).isEqualTo(2);
+        assertThat(sessionManager.getEvictedCount()).isEqualTo(1);
+        assertThat(reopened.sessionIds()).containsExactly("session-b", "session-c");
+        reopened.close();
+    }
+
+    private Member createMember(String loginId) {
+        Member member = new Member();
+        member.setId(1L);
+        member.setLoginId(loginId);
+        member.setName(loginId);
+        member.setPassword("test!");
+        return member;
+    }
+}
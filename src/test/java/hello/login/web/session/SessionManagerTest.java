@@ -7,6 +7,8 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -45,4 +47,164 @@ class SessionManagerTest {
         //값이 없는지 확인
         assertThat(expired).isNull();
     }
+
+    //Cookie 헤더가 여러 줄로 오면 뒤 줄의 세션 쿠키도 찾는다
+    @Test
+    void multipleCookieHeaders() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Member member = new Member();
+        sessionManager.createSession(member, response);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Cookie", "theme=dark; lang=ko");
+        request.addHeader("Cookie", SessionManager.SESSION_COOKIE_NAME + "="
+                + response.getCookie(SessionManager.SESSION_COOKIE_NAME).getValue());
+
+        assertThat(sessionManager.getSession(request)).isEqualTo(member);
+    }
+
+    @Test
+    void sessionTimeout() {
+        //시간을 직접 움직이는 세션 관리자, 타임아웃 60초
+        AtomicLong now = new AtomicLong(0);
+        SessionManager sessionManager = new SessionManager(Duration.ofSeconds(60), SessionManager.DEFAULT_MAX_SESSIONS, now::get);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Member member = new Member();
+        sessionManager.createSession(member, response);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+
+        //50초 뒤에 요청하면 만료 시간이 다시 늘어난다
+        now.set(50_000);
+        assertThat(sessionManager.getSession(request)).isEqualTo(member);
+
+        //처음 만료 시각이 지나도 리퍼가 지우지 않아야 함
+        now.set(70_000);
+        sessionManager.removeExpiredSessions();
+        assertThat(sessionManager.size()).isEqualTo(1);
+
+        //마지막 요청 이후 60초가 지나면 리퍼가 지운다
+        now.set(112_000);
+        sessionManager.removeExpiredSessions();
+        assertThat(sessionManager.size()).isEqualTo(0);
+        assertThat(sessionManager.getSession(request)).isNull();
+    }
+
+    @Test
+    void expiredSessionIsNotReturnedBeforeReaper() {
+        AtomicLong now = new AtomicLong(0);
+        SessionManager sessionManager = new SessionManager(Duration.ofSeconds(60), SessionManager.DEFAULT_MAX_SESSIONS, now::get);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(new Member(), response);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+
+        now.set(60_000);
+        assertThat(sessionManager.getSession(request)).isNull();
+        assertThat(sessionManager.size()).isEqualTo(0);
+    }
+
+    @Test
+    void evictLeastRecentlyUsedSession() {
+        //최대 세션 2개
+        AtomicLong now = new AtomicLong(0);
+        SessionManager sessionManager = new SessionManager(Duration.ofSeconds(60), 2, now::get);
+
+        MockHttpServletRequest requestA = createSessionRequest(sessionManager, "memberA");
+        now.set(5_000);
+        MockHttpServletRequest requestB = createSessionRequest(sessionManager, "memberB");
+
+        //A가 다시 요청해서 B가 가장 오래 사용하지 않은 세션이 됨
+        now.set(10_000);
+        assertThat(sessionManager.getSession(requestA)).isNotNull();
+
+        //세 번째 세션을 만들면 B가 밀려난다
+        now.set(15_000);
+        MockHttpServletRequest requestC = createSessionRequest(sessionManager, "memberC");
+
+        assertThat(sessionManager.size()).isEqualTo(2);
+        assertThat(sessionManager.getEvictedCount()).isEqualTo(1);
+        assertThat(sessionManager.getSession(requestA)).isNotNull();
+        assertThat(sessionManager.getSession(requestB)).isNull();
+        assertThat(sessionManager.getSession(requestC)).isNotNull();
+    }
+
+    //로그아웃한 세션은 아직 로그아웃을 받지 못한 노드가 가지고 있어도 타임아웃 동안 되살아나지 않는다
+    @Test
+    void loggedOutSessionIsNotReplicatedBack() {
+        AtomicLong now = new AtomicLong(0);
+        SessionManager sessionManager = new SessionManager(Duration.ofSeconds(60), SessionManager.DEFAULT_MAX_SESSIONS, now::get);
+        Member member = new Member();
+        //다른 노드는 항상 세션을 가지고 있다
+        sessionManager.setReplication(new SessionReplication() {
+            @Override
+            public void sessionCreated(String sessionId, Object value) {
+            }
+
+            @Override
+            public void sessionExpired(String sessionId) {
+            }
+
+            @Override
+            public Object fetch(String sessionId) {
+                return member;
+            }
+        });
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(member, response);
+        String sessionId = response.getCookie(SessionManager.SESSION_COOKIE_NAME).getValue();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+
+        sessionManager.expire(request);
+        assertThat(sessionManager.getSession(request)).isNull();
+        //늦게 온 생성도 받지 않는다
+        sessionManager.putReplica(sessionId, member);
+        assertThat(sessionManager.size()).isZero();
+
+        //다른 노드에서 로그아웃한 세션도 같다
+        sessionManager.removeReplica("otherNodeSession");
+        sessionManager.putReplica("otherNodeSession", member);
+        assertThat(sessionManager.size()).isZero();
+
+        //타임아웃이 지나면 리퍼가 지우고 다시 받는다
+        now.set(61_000);
+        sessionManager.removeExpiredSessions();
+        assertThat(sessionManager.getSession(request)).isEqualTo(member);
+        sessionManager.putReplica("otherNodeSession", member);
+        assertThat(sessionManager.size()).isEqualTo(2);
+    }
+
+    private MockHttpServletRequest createSessionRequest(SessionManager sessionManager, String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(member, response);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+        return request;
+    }
+
+    //Cookie 헤더에서 바로 세션 id 찾기
+    @Test
+    void findCookieValue() {
+        assertThat(SessionManager.findCookieValue("mySessionId=abc", "mySessionId")).isEqualTo("abc");
+        assertThat(SessionManager.findCookieValue("a=1; mySessionId=abc; b=2", "mySessionId")).isEqualTo("abc");
+        assertThat(SessionManager.findCookieValue("a=1;mySessionId = \"abc\" ", "mySessionId")).isEqualTo("abc");
+        assertThat(SessionManager.findCookieValue("mySessionId=abc; mySessionId=def", "mySessionId")).isEqualTo("abc");
+        assertThat(SessionManager.findCookieValue("mySessionId=", "mySessionId")).isEmpty();
+
+        assertThat(SessionManager.findCookieValue(null, "mySessionId")).isNull();
+        assertThat(SessionManager.findCookieValue("", "mySessionId")).isNull();
+        assertThat(SessionManager.findCookieValue("xmySessionId=abc; mySessionIdx=def", "mySessionId")).isNull();
+        assertThat(SessionManager.findCookieValue("a=mySessionId=abc", "mySessionId")).isNull();
+        assertThat(SessionManager.findCookieValue("mySessionId", "mySessionId")).isNull();
+    }
 }
@@ -0,0 +1,321 @@
+package hello.login.web.session.replication;
+
+import hello.login.domain.member.LoginMember;
+import hello.login.web.session.SessionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+//한 JVM 안에서 포트만 다르게 노드 여러 개
+class SessionReplicatorTest {
+
+    List<SessionReplicator> replicators = new ArrayList<>();
+    LoginMember member = new LoginMember(1L, "test", "tester");
+
+    @AfterEach
+    void stop() throws IOException {
+        for (SessionReplicator replicator : replicators) {
+            replicator.stop();
+        }
+    }
+
+    @Test
+    void createAndExpire() throws Exception {
+        int[] ports = freePorts(2);
+        SessionManager nodeA = new SessionManager();
+        SessionManager nodeB = new SessionManager();
+        start(nodeA, ports[0], ports[1]);
+        start(nodeB, ports[1], ports[0]);
+
+        MockHttpServletRequest request = login(nodeA);
+
+        //B 는 묶음으로 받는다
+        await(() -> nodeB.size() == 1);
+        assertThat(nodeB.getSession(request)).isEqualTo(member);
+
+        //A 에서 로그아웃하면 B 에서도
+        nodeA.expire(request);
+        await(() -> nodeB.size() == 0);
+        assertThat(nodeB.getSession(request)).isNull();
+    }
+
+    //나중에 띄운 노드는 앞서 만든 세션을 받지 못했다, 요청이 오면 다른 노드에 물어서 가져온다
+    @Test
+    void readThrough() throws Exception {
+        int[] ports = freePorts(2);
+        SessionManager nodeA = new SessionManager();
+        start(nodeA, ports[0]);
+        MockHttpServletRequest request = login(nodeA);
+
+        SessionManager nodeC = new SessionManager();
+        SessionReplicator replicatorC = start(nodeC, ports[1], ports[0]);
+        assertThat(nodeC.size()).isZero();
+
+        assertThat(nodeC.getSession(request)).isEqualTo(member);
+        assertThat(nodeC.size()).isEqualTo(1);
+        assertThat(replicatorC.getFetchedCount()).isEqualTo(1);
+
+        //한 번 가져온 세션은 이제 C 에 있다
+        assertThat(nodeC.getSession(request)).isEqualTo(member);
+        assertThat(replicatorC.getFetchedCount()).isEqualTo(1);
+
+        //어느 노드에도 없는 세션
+        MockHttpServletRequest unknown = new MockHttpServletRequest();
+        unknown.addHeader("Cookie", SessionManager.SESSION_COOKIE_NAME + "=unknown");
+        assertThat(nodeC.getSession(unknown)).isNull();
+    }
+
+    //죽은 노드가 있어도 세션 생성, 조회는 그대로
+    @Test
+    void deadPeer() throws Exception {
+        int[] ports = freePorts(2);
+        SessionManager nodeA = new SessionManager();
+        SessionReplicator replicatorA = start(nodeA, ports[0], ports[1]);
+
+        MockHttpServletRequest request = login(nodeA);
+
+        assertThat(nodeA.getSession(request)).isEqualTo(member);
+        await(() -> replicatorA.getSentBatches() == 1);
+    }
+
+    //로그아웃을 받지 못한 노드에는 다시 보낸다
+    @Test
+    void expireRetriedUntilPeerReceives() throws Exception {
+        int[] ports = freePorts(2);
+        SessionManager nodeA = new SessionManager();
+        SessionManager nodeB = new SessionManager();
+        start(nodeA, ports[0], ports[1]);
+        SessionReplicator replicatorB = start(nodeB, ports[1], ports[0]);
+
+        MockHttpServletRequest request = login(nodeA);
+        await(() -> nodeB.size() == 1);
+
+        //B 가 잠깐 내려간 사이에 로그아웃
+        replicatorB.stop();
+        nodeA.expire(request);
+        Thread.sleep(200);
+        assertThat(nodeB.size()).isEqualTo(1);
+
+        start(nodeB, ports[1], ports[0]);
+        await(() -> nodeB.size() == 0);
+    }
+
+    //키가 다른 노드의 프레임은 버린다
+    @Test
+    void rejectWrongSecret() throws Exception {
+        int[] ports = freePorts(2);
+        SessionManager nodeA = new SessionManager();
+        SessionManager nodeB = new SessionManager();
+        SessionReplicator replicatorA = start(nodeA, ports[0], secret('a'), ports[1]);
+        start(nodeB, ports[1], secret('b'), ports[0]);
+
+        MockHttpServletRequest request = login(nodeA);
+        Thread.sleep(200);
+        assertThat(nodeB.size()).isZero();
+        assertThat(replicatorA.getSentBatches()).isEqualTo(1);
+
+        //물어봐도 답을 받지 못한다
+        assertThat(nodeB.getSession(request)).isNull();
+    }
+
+    //127.0.0.1 이라도 키 없이는 띄우지 않는다
+    @Test
+    void secretRequired() {
+        List<InetSocketAddress> noPeers = List.of();
+        InetSocketAddress loopback = new InetSocketAddress("127.0.0.1", 0);
+        assertThatThrownBy(() -> new SocketReplicationTransport(loopback, noPeers, 100, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SocketReplicationTransport(loopback, noPeers, 100, new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SocketReplicationTransport(loopback, noPeers, 100, new byte[16]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //큐가 차서 생성은 버려도 로그아웃은 나중에라도 보낸다
+    @Test
+    void expireNotDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> expired = new CopyOnWriteArrayList<>();
+        ReplicationTransport transport = new ReplicationTransport() {
+            @Override
+            public void start(Receiver receiver) {
+            }
+
+            @Override
+            public boolean publish(byte[] batch) {
+                publishing.countDown();
+                try {
+                    release.await();
+                    expired.addAll(expiredIds(batch));
+                } catch (InterruptedException | IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return true;
+            }
+
+            @Override
+            public byte[] fetch(byte[] request) {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SessionManager sessionManager = new SessionManager();
+        SessionReplicator replicator = new SessionReplicator(sessionManager, transport, 1, 1, 1);
+        replicator.start();
+        replicators.add(replicator);
+
+        //첫 묶음을 보내는 동안 큐(1개)를 채운다
+        login(sessionManager);
+        publishing.await();
+        login(sessionManager);
+        MockHttpServletRequest request = login(sessionManager);
+        assertThat(replicator.getDroppedCount()).isEqualTo(1);
+
+        sessionManager.expire(request);
+        assertThat(replicator.getDroppedCount()).isEqualTo(1);
+
+        release.countDown();
+        String sessionId = SessionManager.findRequestCookie(request, SessionManager.SESSION_COOKIE_NAME);
+        await(() -> expired.contains(sessionId));
+    }
+
+    //세션 id 형식이 아니면 묻지 않고, 동시에 묻는 요청 수를 넘으면 기다리지 않고 없는 세션으로
+    @Test
+    void boundFetches() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReplicationTransport transport = new ReplicationTransport() {
+            @Override
+            public void start(Receiver receiver) {
+            }
+
+            @Override
+            public boolean publish(byte[] batch) {
+                return true;
+            }
+
+            @Override
+            public byte[] fetch(byte[] request) {
+                fetches.incrementAndGet();
+                fetching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SessionReplicator replicator = new SessionReplicator(new SessionManager(), transport, 100, 16, 1);
+        replicator.start();
+        replicators.add(replicator);
+
+        assertThat(replicator.fetch("unknown")).isNull();
+        assertThat(replicator.fetch("../../etc/passwd")).isNull();
+        assertThat(fetches.get()).isZero();
+
+        Thread waiting = new Thread(() -> replicator.fetch("AAAAAAAAAAAAAAAAAAAAAA"));
+        waiting.start();
+        fetching.await();
+        assertThat(replicator.fetch("BBBBBBBBBBBBBBBBBBBBBB")).isNull();
+        assertThat(replicator.getSkippedFetchCount()).isEqualTo(1);
+        release.countDown();
+        waiting.join();
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    SessionReplicator start(SessionManager sessionManager, int port, int... peers) throws IOException {
+        return start(sessionManager, port, secret('s'), peers);
+    }
+
+    SessionReplicator start(SessionManager sessionManager, int port, byte[] secret, int... peers) throws IOException {
+        List<InetSocketAddress> peerAddresses = new ArrayList<>();
+        for (int peer : peers) {
+            peerAddresses.add(new InetSocketAddress("127.0.0.1", peer));
+        }
+        SocketReplicationTransport transport =
+                new SocketReplicationTransport(new InetSocketAddress("127.0.0.1", port), peerAddresses, 1000, secret);
+        SessionReplicator replicator = new SessionReplicator(sessionManager, transport, 100, 16, 8);
+        replicator.start();
+        replicators.add(replicator);
+        return replicator;
+    }
+
+    static byte[] secret(char seed) {
+        return String.valueOf(seed).repeat(32).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    //묶음에서 로그아웃한 세션 id 만
+    static List<String> expiredIds(byte[] batch) throws IOException {
+        List<String> ids = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            String sessionId = in.readUTF();
+            if (type == 1) {
+                in.readFully(new byte[in.readInt()]);
+            } else {
+                ids.add(sessionId);
+            }
+        }
+        return ids;
+    }
+
+    MockHttpServletRequest login(SessionManager sessionManager) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(member, response);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Cookie", SessionManager.SESSION_COOKIE_NAME + "="
+                + response.getCookie(SessionManager.SESSION_COOKIE_NAME).getValue());
+        return request;
+    }
+
+    static int[] freePorts(int count) throws IOException {
+        int[] ports = new int[count];
+        ServerSocket[] sockets = new ServerSocket[count];
+        for (int i = 0; i < count; i++) {
+            sockets[i] = new ServerSocket(0);
+            ports[i] = sockets[i].getLocalPort();
+        }
+        for (ServerSocket socket : sockets) {
+            socket.close();
+        }
+        return ports;
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met in 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package hello.login.web.token;
+
+import hello.login.domain.member.LoginMember;
+import hello.login.web.SessionConst;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginTokenServiceTest {
+
+    AtomicLong clock = new AtomicLong(1_000_000);
+    LoginTokenService service = service(Map.of(1, key(1)), 1);
+    LoginMember member = new LoginMember(1L, "test", "테스터");
+
+    @Test
+    void issueAndVerify() {
+        String token = service.issue(member);
+
+        assertThat(service.verify(token)).isEqualTo(member);
+        //발급할 때마다 토큰 id 가 달라서 같은 회원이어도 토큰이 다르다
+        assertThat(service.issue(member)).isNotEqualTo(token);
+    }
+
+    @Test
+    void tampered() {
+        String token = service.issue(member);
+        int dot = token.indexOf('.');
+
+        //내용 한 글자, 서명 한 글자
+        assertThat(service.verify(flip(token, 5))).isNull();
+        assertThat(service.verify(flip(token, dot + 5))).isNull();
+        //다른 키로 서명한 토큰
+        assertThat(service.verify(service(Map.of(1, key(9)), 1).issue(member))).isNull();
+    }
+
+    @Test
+    void malformed() {
+        String token = service.issue(member);
+
+        assertThat(service.verify(null)).isNull();
+        assertThat(service.verify("")).isNull();
+        assertThat(service.verify("abc")).isNull();
+        assertThat(service.verify(".abc")).isNull();
+        assertThat(service.verify(token.replace('.', '!'))).isNull();
+        assertThat(service.verify(token + "A")).isNull();
+        assertThat(service.verify("A".repeat(2000) + token)).isNull();
+    }
+
+    @Test
+    void expired() {
+        String token = service.issue(member);
+
+        clock.addAndGet(Duration.ofMinutes(30).toMillis() - 1);
+        assertThat(service.verify(token)).isEqualTo(member);
+        clock.incrementAndGet();
+        assertThat(service.verify(token)).isNull();
+    }
+
+    @Test
+    void keyRotation() {
+        String oldToken = service.issue(member);
+
+        //새 키 2를 추가하고 바꾼다, 예전 키로 발급한 토큰도 계속 쓸 수 있다
+        LoginTokenService rotated = service(Map.of(1, key(1), 2, key(2)), 2);
+        String newToken = rotated.issue(member);
+        assertThat(rotated.verify(oldToken)).isEqualTo(member);
+        assertThat(rotated.verify(newToken)).isEqualTo(member);
+        //키 2를 모르는 노드는 새 토큰을 거절
+        assertThat(service.verify(newToken)).isNull();
+
+        //예전 키를 빼면 그 키로 발급한 토큰은 거절
+        LoginTokenService retired = service(Map.of(2, key(2)), 2);
+        assertThat(retired.verify(oldToken)).isNull();
+        assertThat(retired.verify(newToken)).isEqualTo(member);
+    }
+
+    @Test
+    void revoke() {
+        String token = service.issue(member);
+        String other = service.issue(member);
+
+        service.revoke(token);
+
+        assertThat(service.verify(token)).isNull();
+        assertThat(service.verify(other)).isEqualTo(member);
+    }
+
+    @Test
+    void authenticateCachesInRequest() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.addCookie(member, response);
+        assertThat(response.getCookie(LoginTokenService.TOKEN_COOKIE_NAME).isHttpOnly()).isTrue();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Cookie", "other=1; " + LoginTokenService.TOKEN_COOKIE_NAME + "="
+                + response.getCookie(LoginTokenService.TOKEN_COOKIE_NAME).getValue());
+
+        assertThat(service.authenticate(request)).isEqualTo(member);
+        assertThat(request.getAttribute(SessionConst.LOGIN_MEMBER)).isEqualTo(member);
+        //세션은 만들지 않는다
+        assertThat(request.getSession(false)).isNull();
+
+        //로그아웃하면 같은 쿠키로 다시 들어올 수 없다
+        MockHttpServletResponse logout = new MockHttpServletResponse();
+        service.expireCookie(request, logout);
+        assertThat(logout.getCookie(LoginTokenService.TOKEN_COOKIE_NAME).getMaxAge()).isZero();
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.addHeader("Cookie", request.getHeader("Cookie"));
+        assertThat(service.authenticate(next)).isNull();
+    }
+
+    @Test
+    void invalidConfig() {
+        assertThatThrownBy(() -> service(Map.of(1, key(1)), 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service(Map.of(1, new byte[16]), 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service(Map.of(256, key(1)), 256)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    LoginTokenService service(Map<Integer, byte[]> keys, int activeKeyId) {
+        return new LoginTokenService(true, keys, activeKeyId, Duration.ofMinutes(30), 100, clock::get);
+    }
+
+    static byte[] key(int seed) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) seed);
+        return key;
+    }
+
+    static String flip(String token, int index) {
+        char c = token.charAt(index);
+        return token.substring(0, index) + (c == 'A' ? 'B' : 'A') + token.substring(index + 1);
+    }
+}
@@ -0,0 +1,46 @@
+package hello.login.web.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RevocationFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        RevocationFilter filter = new RevocationFilter(1000, 60_000, 0);
+        SplittableRandom random = new SplittableRandom(1);
+        long[] ids = new long[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextLong();
+            filter.add(ids[i], 0);
+        }
+
+        for (long id : ids) {
+            assertThat(filter.mightContain(id, 0)).isTrue();
+        }
+
+        //예상 개수만큼 넣었을 때 오탐 1% 안팎
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(random.nextLong(), 0)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2000);
+    }
+
+    @Test
+    void generations() {
+        RevocationFilter filter = new RevocationFilter(100, 1000, 0);
+        filter.add(1, 999);
+
+        //한 세대가 지나도 이전 세대로 남아있다
+        assertThat(filter.mightContain(1, 1000)).isTrue();
+        assertThat(filter.mightContain(1, 1999)).isTrue();
+        //두 세대가 지나면 버린다, 그 토큰은 이미 만료
+        assertThat(filter.mightContain(1, 2000)).isFalse();
+    }
+}